@@ -0,0 +1,44 @@
+package es.iesjandula.guardias.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Configuración de las cachés en memoria del backend
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /**
+     * Instantánea de ausencias de un día agrupadas por hora (clave: LocalDate)
+     */
+    public static final String AUSENCIAS_POR_FECHA = "ausenciasPorFecha";
+
+    /**
+     * Claims de tokens de Supabase ya verificados (clave: SHA-256 del token)
+     */
+    public static final String TOKENS_VERIFICADOS = "tokensVerificados";
+
+    @Value("${app.cache.ausencias-por-fecha.max-entradas:60}")
+    private int maxEntradasAusenciasPorFecha;
+
+    @Value("${app.cache.tokens-verificados.max-entradas:2000}")
+    private int maxEntradasTokensVerificados;
+
+    @Bean
+    public CacheManager cacheManager() {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(
+                new LruCache(AUSENCIAS_POR_FECHA, maxEntradasAusenciasPorFecha),
+                new LruCache(TOKENS_VERIFICADOS, maxEntradasTokensVerificados)
+        ));
+        return cacheManager;
+    }
+}
@@ -0,0 +1,199 @@
+package es.iesjandula.guardias.config;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché en memoria de tamaño acotado con expulsión LRU (la entrada usada hace más tiempo
+ * sale primero). Lleva la cuenta de aciertos y fallos para poder dimensionarla.
+ *
+ * {@link #get(Object, Callable)} carga cada clave una sola vez aunque lleguen varios
+ * fallos a la vez (lo que pide {@code @Cacheable(sync = true)}): el primero carga y el
+ * resto espera su resultado. Invalidar una clave (evict, o clear para todas) descarta
+ * su carga en curso, que no se guarda porque pudo leerse antes de la escritura que
+ * provocó la invalidación; las cargas de otras claves no se ven afectadas.
+ */
+public class LruCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final int maxEntries;
+    private final Map<Object, Object> store;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Carga en curso de cada clave. Protegido por el monitor de store */
+    private final Map<Object, CompletableFuture<Object>> cargas = new HashMap<>();
+
+    public LruCache(String name, int maxEntries) {
+        super(false);
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo de la caché debe ser positivo: " + maxEntries);
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+        // accessOrder=true: cada lectura mueve la entrada al final de la lista
+        this.store = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                boolean expulsar = size() > LruCache.this.maxEntries;
+                if (expulsar) {
+                    evictions.incrementAndGet();
+                }
+                return expulsar;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return store;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value;
+        synchronized (store) {
+            value = store.get(key);
+        }
+        if (value != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if (value != null) {
+            return (T) fromStoreValue(value);
+        }
+
+        CompletableFuture<Object> carga = new CompletableFuture<>();
+        CompletableFuture<Object> enCurso;
+        synchronized (store) {
+            // Otro hilo pudo terminar su carga entre lookup y este bloque
+            value = store.get(key);
+            if (value != null) {
+                return (T) fromStoreValue(value);
+            }
+            enCurso = cargas.putIfAbsent(key, carga);
+        }
+        if (enCurso != null) {
+            return esperar(key, valueLoader, enCurso);
+        }
+
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            synchronized (store) {
+                cargas.remove(key, carga);
+            }
+            carga.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        synchronized (store) {
+            // Si se invalidó la clave durante la carga ya no es la carga en curso
+            if (cargas.remove(key, carga) && loaded != null) {
+                store.put(key, toStoreValue(loaded));
+            }
+        }
+        carga.complete(loaded);
+        return loaded;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T esperar(Object key, Callable<T> valueLoader, CompletableFuture<Object> carga) {
+        try {
+            return (T) carga.get();
+        } catch (ExecutionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            return;
+        }
+        synchronized (store) {
+            store.put(key, toStoreValue(value));
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        synchronized (store) {
+            store.remove(key);
+            cargas.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (store) {
+            store.clear();
+            cargas.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (store) {
+            return store.size();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Resumen de uso de la caché para los endpoints de diagnóstico
+     */
+    public Map<String, Object> getEstadisticas() {
+        long aciertos = hits.get();
+        long fallos = misses.get();
+        long total = aciertos + fallos;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entradas", size());
+        stats.put("maxEntradas", maxEntries);
+        stats.put("aciertos", aciertos);
+        stats.put("fallos", fallos);
+        stats.put("expulsiones", evictions.get());
+        stats.put("tasaAciertos", total == 0 ? 0.0 : (double) aciertos / total);
+        return stats;
+    }
+}
@@ -0,0 +1,74 @@
+package es.iesjandula.guardias.config;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.Timeout;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool de conexiones HTTP hacia el backend de horarios.
+ * Además de la ocupación del pool, mide cuánto esperan las peticiones a que
+ * quede una conexión libre, para poder dimensionarlo en las horas punta.
+ */
+public class PoolConexionesHorarios extends PoolingHttpClientConnectionManager {
+
+    private final LongAdder solicitudes = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest solicitud = super.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                long inicio = System.nanoTime();
+                try {
+                    return solicitud.get(timeout);
+                } finally {
+                    registrarEspera(System.nanoTime() - inicio);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return solicitud.cancel();
+            }
+        };
+    }
+
+    private void registrarEspera(long nanos) {
+        solicitudes.increment();
+        esperaTotalNanos.add(nanos);
+        esperaMaximaNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Ocupación actual del pool y tiempos de espera acumulados desde el arranque
+     */
+    public Map<String, Object> getEstadisticas() {
+        PoolStats stats = getTotalStats();
+        long total = solicitudes.sum();
+
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("maximoConexiones", stats.getMax());
+        estadisticas.put("maximoPorRuta", getDefaultMaxPerRoute());
+        estadisticas.put("enUso", stats.getLeased());
+        estadisticas.put("libres", stats.getAvailable());
+        estadisticas.put("peticionesEsperando", stats.getPending());
+        estadisticas.put("conexionesSolicitadas", total);
+        estadisticas.put("esperaMediaMs", total == 0 ? 0.0 : esperaTotalNanos.sum() / 1_000_000.0 / total);
+        estadisticas.put("esperaMaximaMs", esperaMaximaNanos.get() / 1_000_000.0);
+        return estadisticas;
+    }
+}
@@ -1,13 +1,21 @@
 package es.iesjandula.guardias.config;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 /**
- * Configuración para el cliente HTTP que se comunica con el backend de horarios
+ * Configuración para el cliente HTTP que se comunica con el backend de horarios.
+ * Usa un pool de conexiones HTTP/1.1 persistentes (keep-alive) para no pagar
+ * el establecimiento de conexión en cada petición del proxy.
  */
 @Configuration
 public class RestTemplateConfig {
@@ -18,12 +26,53 @@ public class RestTemplateConfig {
     @Value("${app.horarios.api.read-timeout:10000}")
     private int readTimeout;
 
+    @Value("${app.horarios.api.pool.max-total:50}")
+    private int maxTotal;
+
+    @Value("${app.horarios.api.pool.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${app.horarios.api.pool.lease-timeout:2000}")
+    private int leaseTimeout;
+
+    @Value("${app.horarios.api.pool.idle-eviction-seconds:30}")
+    private int idleEvictionSeconds;
+
+    @Value("${app.horarios.api.pool.keep-alive-seconds:60}")
+    private int keepAliveSeconds;
+
+    @Bean(destroyMethod = "close")
+    public PoolConexionesHorarios poolConexionesHorarios() {
+        PoolConexionesHorarios pool = new PoolConexionesHorarios();
+        pool.setMaxTotal(maxTotal);
+        pool.setDefaultMaxPerRoute(maxPerRoute);
+        pool.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectionTimeout))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                // Revalida conexiones que llevan un rato ociosas antes de reutilizarlas
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build());
+        return pool;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient horariosHttpClient(PoolConexionesHorarios poolConexionesHorarios) {
+        return HttpClients.custom()
+                .setConnectionManager(poolConexionesHorarios)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(leaseTimeout))
+                        // Duración por defecto si horarios no envía cabecera Keep-Alive
+                        .setConnectionKeepAlive(TimeValue.ofSeconds(keepAliveSeconds))
+                        .build())
+                // El proxy reenvía el cuerpo tal cual: no se descomprime aquí, viaja comprimido al cliente
+                .disableContentCompression()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictionSeconds))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(connectionTimeout);
-        factory.setReadTimeout(readTimeout);
-        
-        return new RestTemplate(factory);
+    public RestTemplate restTemplate(CloseableHttpClient horariosHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(horariosHttpClient));
     }
 }
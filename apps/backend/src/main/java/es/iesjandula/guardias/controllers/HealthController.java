@@ -1,16 +1,24 @@
 package es.iesjandula.guardias.controllers;
 
+import es.iesjandula.guardias.config.LruCache;
+import es.iesjandula.guardias.config.PoolConexionesHorarios;
+import es.iesjandula.guardias.integration.CacheRespuestasProxy;
+import es.iesjandula.guardias.integration.HorarioIntegrationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -18,6 +26,19 @@ import java.util.Map;
 @Tag(name = "Sistema", description = "Endpoints públicos del sistema")
 public class HealthController {
 
+    private final CacheManager cacheManager;
+    private final HorarioIntegrationService horarioIntegrationService;
+    private final PoolConexionesHorarios poolConexionesHorarios;
+    private final CacheRespuestasProxy cacheRespuestasProxy;
+
+    public HealthController(CacheManager cacheManager, HorarioIntegrationService horarioIntegrationService,
+                            PoolConexionesHorarios poolConexionesHorarios, CacheRespuestasProxy cacheRespuestasProxy) {
+        this.cacheManager = cacheManager;
+        this.horarioIntegrationService = horarioIntegrationService;
+        this.poolConexionesHorarios = poolConexionesHorarios;
+        this.cacheRespuestasProxy = cacheRespuestasProxy;
+    }
+
     @GetMapping("/health")
     @Operation(summary = "Estado del sistema", description = "Verifica el estado de salud del servicio")
     @ApiResponses(value = {
@@ -55,4 +76,38 @@ public class HealthController {
         response.put("swagger", "http://localhost:8081/swagger-ui.html");
         return response;
     }
+
+    @GetMapping("/cache")
+    @Operation(summary = "Estadísticas de cachés", description = "Aciertos, fallos y ocupación de las cachés en memoria")
+    public Map<String, Object> cacheStats() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        for (String nombre : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (cache instanceof LruCache lruCache) {
+                response.put(nombre, lruCache.getEstadisticas());
+            }
+        }
+        response.put("matrizGuardias", horarioIntegrationService.getEstadoMatrizGuardias());
+        response.put("proxyHorarios", cacheRespuestasProxy.getEstadisticas());
+        return response;
+    }
+
+    @GetMapping("/proxy/pool")
+    @Operation(summary = "Estadísticas del pool del proxy", description = "Ocupación del pool de conexiones hacia horarios y tiempo de espera para obtener conexión")
+    public Map<String, Object> proxyPoolStats() {
+        return poolConexionesHorarios.getEstadisticas();
+    }
+
+    @PostMapping("/cache/guardias/refrescar")
+    @Operation(summary = "Recargar matriz de guardias", description = "Vuelve a cargar los profesores de guardia de toda la semana desde horarios y vacía la caché de respuestas del proxy. Lo invoca horarios al terminar una importación")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Matriz recargada"),
+        @ApiResponse(responseCode = "503", description = "Horarios no disponible, se mantiene la matriz anterior")
+    })
+    public ResponseEntity<Map<String, Object>> refrescarMatrizGuardias() {
+        cacheRespuestasProxy.invalidar();
+        boolean recargada = horarioIntegrationService.refrescarMatrizGuardias();
+        Map<String, Object> estado = horarioIntegrationService.getEstadoMatrizGuardias();
+        return recargada ? ResponseEntity.ok(estado) : ResponseEntity.status(503).body(estado);
+    }
 }
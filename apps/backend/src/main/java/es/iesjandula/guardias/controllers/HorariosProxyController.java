@@ -1,39 +1,57 @@
 package es.iesjandula.guardias.controllers;
 
+import es.iesjandula.guardias.integration.CacheRespuestasProxy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
 
-import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Controlador proxy para centralizar llamadas al backend de horarios
  * Permite que el frontend solo trabaje con un endpoint (8081)
+ *
+ * Las respuestas se reenvían en streaming: los bytes de horarios se copian tal cual
+ * a la respuesta con un buffer fijo, sin deserializar ni volver a serializar el JSON.
+ * Si el cliente acepta gzip y horarios comprime, el cuerpo viaja comprimido de extremo a extremo.
+ * Los datos de referencia (aulas, grupos, asignaturas y tramos) se sirven desde {@link CacheRespuestasProxy}.
  */
 @RestController("Horarios Proxy")
 @RequestMapping("/api/horarios")
 public class HorariosProxyController {
 
+    private static final Logger logger = LoggerFactory.getLogger(HorariosProxyController.class);
+
+    /** Cabeceras de la petición del cliente que se reenvían a horarios */
+    private static final List<String> CABECERAS_PETICION = List.of(
+            HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.IF_NONE_MATCH);
+
+    /** Cabeceras de la respuesta de horarios que se devuelven al cliente */
+    private static final List<String> CABECERAS_RESPUESTA = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_ENCODING,
+            HttpHeaders.ETAG, HttpHeaders.CACHE_CONTROL, HttpHeaders.LAST_MODIFIED, HttpHeaders.VARY);
+
     @Value("${app.horarios.api.url:http://localhost:8082}")
     private String horariosApiUrl;
 
     private final RestTemplate restTemplate;
+    private final CacheRespuestasProxy cacheRespuestasProxy;
 
-    public HorariosProxyController(RestTemplate restTemplate) {
+    public HorariosProxyController(RestTemplate restTemplate, CacheRespuestasProxy cacheRespuestasProxy) {
         this.restTemplate = restTemplate;
-        System.out.println("=== DEBUG: HorariosProxyController inicializado");
-        System.out.println("=== DEBUG: RestTemplate: " + (restTemplate != null ? "OK" : "NULL"));
-        System.out.println("=== DEBUG: horariosApiUrl será: " + horariosApiUrl);
-    }
-
-    @PostConstruct
-    public void init() {
-        System.out.println("=== DEBUG: PostConstruct ejecutado");
-        System.out.println("=== DEBUG: horariosApiUrl final: " + horariosApiUrl);
+        this.cacheRespuestasProxy = cacheRespuestasProxy;
     }
 
     /**
@@ -41,21 +59,8 @@ public class HorariosProxyController {
      * GET /api/horarios/actividades
      */
     @GetMapping("/actividades")
-    public ResponseEntity<?> getActividades() {
-        try {
-            String url = horariosApiUrl + "/actividades";
-            System.out.println("=== DEBUG: Proxy llamando a: " + url);
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            System.out.println("=== DEBUG: Respuesta exitosa del backend horarios");
-            return ResponseEntity.ok(response.getBody());
-        } catch (Exception e) {
-            System.out.println("=== DEBUG: Error en proxy: " + e.getClass().getSimpleName() + " - " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(Map.of("error", "Error conectando con servicio de horarios", 
-                            "details", e.getMessage(),
-                            "type", e.getClass().getSimpleName()));
-        }
+    public ResponseEntity<?> getActividades(HttpServletRequest request, HttpServletResponse response) {
+        return reenviar(request, response, "/actividades");
     }
 
     /**
@@ -63,15 +68,8 @@ public class HorariosProxyController {
      * GET /api/horarios/asignaturas
      */
     @GetMapping("/asignaturas")
-    public ResponseEntity<?> getAsignaturas() {
-        try {
-            String url = horariosApiUrl + "/asignaturas";
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            return ResponseEntity.ok(response.getBody());
-        } catch (RestClientException e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
-        }
+    public ResponseEntity<?> getAsignaturas(HttpServletRequest request, HttpServletResponse response) {
+        return reenviarCacheado(request, response, "/asignaturas");
     }
 
     /**
@@ -79,15 +77,8 @@ public class HorariosProxyController {
      * GET /api/horarios/aulas
      */
     @GetMapping("/aulas")
-    public ResponseEntity<?> getAulas() {
-        try {
-            String url = horariosApiUrl + "/aulas";
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            return ResponseEntity.ok(response.getBody());
-        } catch (RestClientException e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
-        }
+    public ResponseEntity<?> getAulas(HttpServletRequest request, HttpServletResponse response) {
+        return reenviarCacheado(request, response, "/aulas");
     }
 
     /**
@@ -95,15 +86,8 @@ public class HorariosProxyController {
      * GET /api/horarios/grupos
      */
     @GetMapping("/grupos")
-    public ResponseEntity<?> getGrupos() {
-        try {
-            String url = horariosApiUrl + "/grupos";
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            return ResponseEntity.ok(response.getBody());
-        } catch (RestClientException e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
-        }
+    public ResponseEntity<?> getGrupos(HttpServletRequest request, HttpServletResponse response) {
+        return reenviarCacheado(request, response, "/grupos");
     }
 
     /**
@@ -111,15 +95,9 @@ public class HorariosProxyController {
      * GET /api/horarios/horario/{id}
      */
     @GetMapping("/horario/{id}")
-    public ResponseEntity<?> getHorarioByIdProfesor(@PathVariable String id) {
-        try {
-            String url = horariosApiUrl + "/horario/" + id;
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            return ResponseEntity.ok(response.getBody());
-        } catch (RestClientException e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
-        }
+    public ResponseEntity<?> getHorarioByIdProfesor(@PathVariable String id,
+                                                    HttpServletRequest request, HttpServletResponse response) {
+        return reenviar(request, response, "/horario/{id}", id);
     }
 
     /**
@@ -127,15 +105,8 @@ public class HorariosProxyController {
      * GET /api/horarios/tramohorarios
      */
     @GetMapping("/tramohorarios")
-    public ResponseEntity<?> getTramosHorario() {
-        try {
-            String url = horariosApiUrl + "/tramohorarios";
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            return ResponseEntity.ok(response.getBody());
-        } catch (RestClientException e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
-        }
+    public ResponseEntity<?> getTramosHorario(HttpServletRequest request, HttpServletResponse response) {
+        return reenviarCacheado(request, response, "/tramohorarios");
     }
 
     /**
@@ -144,16 +115,10 @@ public class HorariosProxyController {
      */
     @GetMapping("/horario/profesor/{id}/dia/{diaSemana}")
     public ResponseEntity<?> getHorarioProfesorPorDia(
-            @PathVariable String id, 
-            @PathVariable String diaSemana) {
-        try {
-            String url = horariosApiUrl + "/horario/profesor/" + id + "/dia/" + diaSemana;
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            return ResponseEntity.ok(response.getBody());
-        } catch (RestClientException e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
-        }
+            @PathVariable String id,
+            @PathVariable String diaSemana,
+            HttpServletRequest request, HttpServletResponse response) {
+        return reenviar(request, response, "/horario/profesor/{id}/dia/{dia}", id, diaSemana);
     }
 
     /**
@@ -162,16 +127,10 @@ public class HorariosProxyController {
      */
     @GetMapping("/horario/guardia/dia/{diaSemana}/hora/{hora}")
     public ResponseEntity<?> getGuardiasPorDiaYHora(
-            @PathVariable String diaSemana, 
-            @PathVariable String hora) {
-        try {
-            String url = horariosApiUrl + "/horario/guardia/dia/" + diaSemana + "/hora/" + hora;
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            return ResponseEntity.ok(response.getBody());
-        } catch (RestClientException e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
-        }
+            @PathVariable String diaSemana,
+            @PathVariable String hora,
+            HttpServletRequest request, HttpServletResponse response) {
+        return reenviar(request, response, "/horario/guardia/dia/{dia}/hora/{hora}", diaSemana, hora);
     }
 
     /**
@@ -179,15 +138,9 @@ public class HorariosProxyController {
      * GET /api/horarios/horario/profesor/email?email={email}
      */
     @GetMapping("/horario/profesor/email")
-    public ResponseEntity<?> getProfesorPorEmail(@RequestParam String email) {
-        try {
-            String url = horariosApiUrl + "/horario/profesor/email?email=" + email;
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            return ResponseEntity.ok(response.getBody());
-        } catch (RestClientException e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
-        }
+    public ResponseEntity<?> getProfesorPorEmail(@RequestParam String email,
+                                                 HttpServletRequest request, HttpServletResponse response) {
+        return reenviar(request, response, "/horario/profesor/email?email={email}", email);
     }
 
     /**
@@ -211,9 +164,9 @@ public class HorariosProxyController {
     @GetMapping("/health")
     public ResponseEntity<?> healthCheck() {
         try {
-            // Probamos con un endpoint que sí existe (actividades)
-            String url = horariosApiUrl + "/actividades";
-            restTemplate.getForEntity(url, List.class);
+            // Probamos con un endpoint ligero que sí existe; el cuerpo se descarta
+            String url = horariosApiUrl + "/tramohorarios";
+            restTemplate.execute(url, HttpMethod.GET, null, respuesta -> null);
             return ResponseEntity.ok(Map.of(
                 "status", "UP",
                 "horariosService", "UP",
@@ -231,4 +184,99 @@ public class HorariosProxyController {
                 ));
         }
     }
+
+    /**
+     * Reenvía una petición GET a horarios copiando estado, cabeceras de contenido y
+     * cuerpo directamente a la respuesta del servlet.
+     *
+     * @param ruta Ruta en horarios, admite variables de plantilla ({id}, ...)
+     * @param variables Valores de las variables de la ruta (se codifican en la URL)
+     * @return null si la respuesta ya se ha escrito; 503 si no se pudo contactar con horarios
+     */
+    private ResponseEntity<?> reenviar(HttpServletRequest request, HttpServletResponse response,
+                                       String ruta, Object... variables) {
+        try {
+            restTemplate.execute(horariosApiUrl + ruta, HttpMethod.GET,
+                    peticion -> {
+                        for (String cabecera : CABECERAS_PETICION) {
+                            String valor = request.getHeader(cabecera);
+                            if (valor != null) {
+                                peticion.getHeaders().set(cabecera, valor);
+                            }
+                        }
+                    },
+                    respuesta -> {
+                        copiarRespuesta(respuesta.getStatusCode().value(), respuesta.getHeaders(),
+                                respuesta.getBody(), response);
+                        return null;
+                    },
+                    variables);
+            return null;
+        } catch (HttpStatusCodeException e) {
+            // Errores 4xx/5xx de horarios: se devuelven al cliente con su estado original
+            return ResponseEntity.status(e.getStatusCode())
+                    .headers(cabecerasDeContenido(e.getResponseHeaders()))
+                    .body(e.getResponseBodyAsByteArray());
+        } catch (RestClientException e) {
+            logger.warn("Error en proxy hacia horarios {}: {}", ruta, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
+        }
+    }
+
+    /**
+     * Sirve una ruta de datos de referencia desde la caché del proxy. Responde 304 si el
+     * ETag cacheado coincide con el If-None-Match del cliente.
+     */
+    private ResponseEntity<?> reenviarCacheado(HttpServletRequest request, HttpServletResponse response, String ruta) {
+        String aceptaCodificacion = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = aceptaCodificacion != null && aceptaCodificacion.contains("gzip");
+        try {
+            CacheRespuestasProxy.Respuesta cacheada = cacheRespuestasProxy.obtener(ruta, gzip);
+            HttpHeaders cabeceras = new HttpHeaders();
+            cabeceras.putAll(cacheada.cabeceras());
+            cabeceras.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+            String etag = cacheada.cabeceras().getETag();
+            if (etag != null && etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+                cabeceras.remove(HttpHeaders.CONTENT_TYPE);
+                cabeceras.remove(HttpHeaders.CONTENT_ENCODING);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(cabeceras).build();
+            }
+            return ResponseEntity.ok().headers(cabeceras).body(cacheada.cuerpo());
+        } catch (HttpStatusCodeException e) {
+            return ResponseEntity.status(e.getStatusCode())
+                    .headers(cabecerasDeContenido(e.getResponseHeaders()))
+                    .body(e.getResponseBodyAsByteArray());
+        } catch (RestClientException e) {
+            logger.warn("Error en proxy hacia horarios {}: {}", ruta, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", "Error conectando con servicio de horarios", "details", e.getMessage()));
+        }
+    }
+
+    private void copiarRespuesta(int estado, HttpHeaders cabeceras, InputStream cuerpo,
+                                 HttpServletResponse response) throws IOException {
+        response.setStatus(estado);
+        cabecerasDeContenido(cabeceras).forEach((nombre, valores) -> valores.forEach(valor -> response.addHeader(nombre, valor)));
+        if (cuerpo != null) {
+            OutputStream salida = response.getOutputStream();
+            // StreamUtils copia con un buffer fijo: la memoria no depende del tamaño de la respuesta
+            StreamUtils.copy(cuerpo, salida);
+            salida.flush();
+        }
+    }
+
+    private static HttpHeaders cabecerasDeContenido(HttpHeaders origen) {
+        HttpHeaders destino = new HttpHeaders();
+        if (origen != null) {
+            for (String cabecera : CABECERAS_RESPUESTA) {
+                List<String> valores = origen.get(cabecera);
+                if (valores != null) {
+                    destino.put(cabecera, valores);
+                }
+            }
+        }
+        return destino;
+    }
 }
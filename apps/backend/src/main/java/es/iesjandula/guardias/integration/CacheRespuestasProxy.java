@@ -0,0 +1,250 @@
+package es.iesjandula.guardias.integration;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de respuestas del proxy de horarios para los datos de referencia
+ * (aulas, grupos, asignaturas y tramos), que solo cambian al importar un XML.
+ *
+ * Cada ruta tiene su TTL. Pasado el TTL la entrada se sirve obsoleta durante una
+ * ventana adicional mientras se revalida en segundo plano con If-None-Match /
+ * If-Modified-Since; fuera de esa ventana se revalida antes de responder. Si
+ * horarios falla se sigue sirviendo la última copia. El tamaño total está acotado
+ * en bytes y se expulsa la entrada usada hace más tiempo (LRU).
+ *
+ * Una descarga que empezó antes de {@link #invalidar()} no se guarda al terminar:
+ * pudo traer los datos de antes de la importación.
+ */
+@Component
+public class CacheRespuestasProxy {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheRespuestasProxy.class);
+
+    /** Cabeceras de horarios que se guardan junto al cuerpo */
+    private static final List<String> CABECERAS_GUARDADAS = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_ENCODING, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED);
+
+    private final RestTemplate restTemplate;
+    private final String horariosApiUrl;
+    private final Map<String, Long> ttlPorRutaMs;
+    private final long ventanaObsoletaMs;
+    private final long maxBytes;
+
+    /** Entradas en orden de acceso; protegido por el monitor de esta instancia */
+    private final LinkedHashMap<String, Respuesta> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesOcupados;
+    /** Número de invalidaciones; protegido por el monitor de esta instancia */
+    private long generacion;
+
+    private final Set<String> revalidando = ConcurrentHashMap.newKeySet();
+    private final ExecutorService revalidador = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder obsoletas = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder revalidacionesSinCambios = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+
+    public CacheRespuestasProxy(RestTemplate restTemplate,
+                                @Value("${app.horarios.api.url:http://localhost:8082}") String horariosApiUrl,
+                                @Value("${app.horarios.proxy.cache.ttl.aulas:3600}") long ttlAulas,
+                                @Value("${app.horarios.proxy.cache.ttl.grupos:3600}") long ttlGrupos,
+                                @Value("${app.horarios.proxy.cache.ttl.asignaturas:3600}") long ttlAsignaturas,
+                                @Value("${app.horarios.proxy.cache.ttl.tramohorarios:86400}") long ttlTramos,
+                                @Value("${app.horarios.proxy.cache.stale-seconds:300}") long ventanaObsoleta,
+                                @Value("${app.horarios.proxy.cache.max-bytes:4194304}") long maxBytes) {
+        this.restTemplate = restTemplate;
+        this.horariosApiUrl = horariosApiUrl;
+        this.ttlPorRutaMs = Map.of(
+                "/aulas", ttlAulas * 1000,
+                "/grupos", ttlGrupos * 1000,
+                "/asignaturas", ttlAsignaturas * 1000,
+                "/tramohorarios", ttlTramos * 1000);
+        this.ventanaObsoletaMs = ventanaObsoleta * 1000;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Respuesta cacheada de horarios
+     *
+     * @param cabeceras Cabeceras de contenido de horarios (tipo, codificación, ETag, Last-Modified)
+     * @param cuerpo Cuerpo tal cual lo envió horarios (comprimido si se pidió gzip)
+     * @param obtenidaEn Momento de la última descarga o revalidación (ms)
+     */
+    public record Respuesta(HttpHeaders cabeceras, byte[] cuerpo, long obtenidaEn) {
+    }
+
+    /**
+     * Obtiene la respuesta de una ruta de referencia, desde caché si es posible.
+     *
+     * @param ruta Ruta en horarios (una de las rutas cacheables)
+     * @param gzip Si el cliente acepta gzip; se cachea una variante por codificación
+     * @return Respuesta 200 de horarios (fresca, revalidada u obsoleta)
+     * @throws RestClientException Si horarios falla y no hay copia que servir
+     */
+    public Respuesta obtener(String ruta, boolean gzip) {
+        String clave = gzip ? ruta + "|gzip" : ruta;
+        Respuesta entrada;
+        synchronized (this) {
+            entrada = entradas.get(clave);
+        }
+
+        if (entrada != null) {
+            long edad = System.currentTimeMillis() - entrada.obtenidaEn();
+            long ttl = ttlPorRutaMs.get(ruta);
+            if (edad < ttl) {
+                aciertos.increment();
+                return entrada;
+            }
+            if (edad < ttl + ventanaObsoletaMs) {
+                obsoletas.increment();
+                revalidarEnSegundoPlano(clave, ruta, gzip, entrada);
+                return entrada;
+            }
+        }
+
+        fallos.increment();
+        try {
+            return descargar(clave, ruta, gzip, entrada);
+        } catch (RestClientException e) {
+            if (entrada != null) {
+                logger.warn("Horarios no responde para {}, se sirve la copia cacheada: {}", ruta, e.getMessage());
+                return entrada;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Descarta todas las entradas (tras una importación de horarios)
+     */
+    public synchronized void invalidar() {
+        entradas.clear();
+        bytesOcupados = 0;
+        generacion++;
+        logger.info("Caché de respuestas del proxy de horarios invalidada");
+    }
+
+    /**
+     * Estadísticas de uso de la caché
+     */
+    public synchronized Map<String, Object> getEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("entradas", entradas.size());
+        estadisticas.put("bytes", bytesOcupados);
+        estadisticas.put("maxBytes", maxBytes);
+        estadisticas.put("aciertos", aciertos.sum());
+        estadisticas.put("servidasObsoletas", obsoletas.sum());
+        estadisticas.put("fallos", fallos.sum());
+        estadisticas.put("revalidacionesSinCambios", revalidacionesSinCambios.sum());
+        estadisticas.put("expulsiones", expulsiones.sum());
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        revalidador.shutdownNow();
+    }
+
+    private void revalidarEnSegundoPlano(String clave, String ruta, boolean gzip, Respuesta entrada) {
+        // Una sola revalidación en curso por clave
+        if (!revalidando.add(clave)) {
+            return;
+        }
+        revalidador.execute(() -> {
+            try {
+                descargar(clave, ruta, gzip, entrada);
+            } catch (RestClientException e) {
+                logger.warn("No se pudo revalidar {} en segundo plano: {}", ruta, e.getMessage());
+            } finally {
+                revalidando.remove(clave);
+            }
+        });
+    }
+
+    /**
+     * Pide la ruta a horarios, condicionada a la copia actual si existe, y actualiza la caché
+     */
+    private Respuesta descargar(String clave, String ruta, boolean gzip, Respuesta actual) {
+        long generacionInicial;
+        synchronized (this) {
+            generacionInicial = generacion;
+        }
+        Respuesta nueva = restTemplate.execute(horariosApiUrl + ruta, HttpMethod.GET,
+                peticion -> {
+                    HttpHeaders cabeceras = peticion.getHeaders();
+                    if (gzip) {
+                        cabeceras.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+                    }
+                    if (actual != null) {
+                        String etag = actual.cabeceras().getETag();
+                        if (etag != null) {
+                            cabeceras.setIfNoneMatch(etag);
+                        }
+                        String ultimaModificacion = actual.cabeceras().getFirst(HttpHeaders.LAST_MODIFIED);
+                        if (ultimaModificacion != null) {
+                            cabeceras.set(HttpHeaders.IF_MODIFIED_SINCE, ultimaModificacion);
+                        }
+                    }
+                },
+                respuesta -> {
+                    long ahora = System.currentTimeMillis();
+                    if (respuesta.getStatusCode() == HttpStatus.NOT_MODIFIED && actual != null) {
+                        revalidacionesSinCambios.increment();
+                        return new Respuesta(actual.cabeceras(), actual.cuerpo(), ahora);
+                    }
+                    HttpHeaders cabeceras = new HttpHeaders();
+                    for (String cabecera : CABECERAS_GUARDADAS) {
+                        List<String> valores = respuesta.getHeaders().get(cabecera);
+                        if (valores != null) {
+                            cabeceras.put(cabecera, valores);
+                        }
+                    }
+                    return new Respuesta(HttpHeaders.readOnlyHttpHeaders(cabeceras),
+                            StreamUtils.copyToByteArray(respuesta.getBody()), ahora);
+                });
+
+        guardar(clave, nueva, generacionInicial);
+        return nueva;
+    }
+
+    private synchronized void guardar(String clave, Respuesta respuesta, long generacionInicial) {
+        if (generacion != generacionInicial) {
+            logger.debug("Descarga de {} anterior a la última invalidación, no se guarda", clave);
+            return;
+        }
+        Respuesta anterior = entradas.remove(clave);
+        if (anterior != null) {
+            bytesOcupados -= anterior.cuerpo().length;
+        }
+        if (respuesta.cuerpo().length > maxBytes) {
+            return;
+        }
+        entradas.put(clave, respuesta);
+        bytesOcupados += respuesta.cuerpo().length;
+
+        Iterator<Map.Entry<String, Respuesta>> iterador = entradas.entrySet().iterator();
+        while (bytesOcupados > maxBytes && iterador.hasNext()) {
+            Map.Entry<String, Respuesta> masAntigua = iterador.next();
+            bytesOcupados -= masAntigua.getValue().cuerpo().length;
+            iterador.remove();
+            expulsiones.increment();
+        }
+    }
+}
@@ -1,43 +1,202 @@
 package es.iesjandula.guardias.integration;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Servicio de integración con el backend de horarios.
  * Permite consultar profesores de guardia y validar horarios.
+ * Mantiene en memoria la matriz semanal de guardias (día x hora), los grupos
+ * problemáticos y las horas de cada tramo, que solo cambian al importar un XML de
+ * horarios. El reparto de coberturas lee solo de memoria.
  */
 @Service
 public class HorarioIntegrationService {
 
     private static final Logger logger = LoggerFactory.getLogger(HorarioIntegrationService.class);
     
+    private static final int DIAS_LECTIVOS = 5;
+
     private final WebClient webClient;
     private final String horariosBaseUrl;
+    private final int horasPorDia;
+
+    /** Profesores de guardia por tramo (clave dia * 10 + hora). Se sustituye entera en cada recarga */
+    private volatile Map<Integer, List<Map<String, Object>>> matrizGuardias;
+    private volatile LocalDateTime ultimaCargaMatriz;
+    private volatile String etagMatriz;
+
+    /** Nombres y abreviaturas (en minúsculas) de los grupos problemáticos. Null hasta la primera carga */
+    private volatile Set<String> gruposProblematicos;
+    /** Inicio y fin de cada tramo (clave dia * 10 + hora). Null hasta la primera carga */
+    private volatile Map<Integer, HorasTramo> horasTramos;
+
+    /**
+     * Hora de inicio y de fin de un tramo horario
+     */
+    public record HorasTramo(LocalTime inicio, LocalTime fin) {
+    }
 
     public HorarioIntegrationService(WebClient.Builder webClientBuilder,
-                                   @Value("${horarios.service.url:http://localhost:8082}") String horariosBaseUrl) {
+                                   @Value("${horarios.service.url:http://localhost:8082}") String horariosBaseUrl,
+                                   @Value("${app.cache.guardias.horas-por-dia:8}") int horasPorDia) {
         this.webClient = webClientBuilder.baseUrl(horariosBaseUrl).build();
         this.horariosBaseUrl = horariosBaseUrl;
+        this.horasPorDia = horasPorDia;
+    }
+
+    /**
+     * Carga la matriz de guardias al arrancar la aplicación
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarMatrizAlArrancar() {
+        refrescarMatrizGuardias();
+    }
+
+    /**
+     * Recarga la matriz de guardias completa con una sola petición a horarios. Se invoca
+     * periódicamente (TTL) y cuando horarios avisa de que ha terminado una importación.
+     * Envía el último ETag recibido, de modo que si nada ha cambiado horarios responde 304
+     * y se conserva la matriz. Si la petición falla también se conserva la anterior.
+     * Con ella se recargan los grupos problemáticos y las horas de los tramos; cada uno
+     * conserva su copia anterior si su petición falla.
+     *
+     * @return true si la matriz se ha recargado
+     */
+    @SuppressWarnings("unchecked")
+    @Scheduled(initialDelayString = "${app.cache.guardias.ttl-ms:3600000}",
+               fixedDelayString = "${app.cache.guardias.ttl-ms:3600000}")
+    public boolean refrescarMatrizGuardias() {
+        refrescarGruposProblematicos();
+        refrescarHorasTramos();
+        try {
+            String etagAnterior = matrizGuardias != null ? etagMatriz : null;
+            ResponseEntity<List<Map<String, Object>>> respuesta = webClient.get()
+                    .uri("/horario/guardia/semana")
+                    .headers(headers -> {
+                        if (etagAnterior != null) {
+                            headers.setIfNoneMatch(etagAnterior);
+                        }
+                    })
+                    .retrieve()
+                    .toEntity(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                    .block();
+
+            if (respuesta != null && respuesta.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                ultimaCargaMatriz = LocalDateTime.now();
+                logger.debug("Matriz de guardias sin cambios (ETag {})", etagAnterior);
+                return true;
+            }
+
+            // Todos los tramos quedan en la matriz, vacíos si nadie tiene guardia en ellos
+            Map<Integer, List<Map<String, Object>>> nueva = new HashMap<>();
+            for (int dia = 1; dia <= DIAS_LECTIVOS; dia++) {
+                for (int hora = 1; hora <= horasPorDia; hora++) {
+                    nueva.put(clave(dia, hora), List.of());
+                }
+            }
+            for (Map<String, Object> tramo : respuesta.getBody()) {
+                int dia = ((Number) tramo.get("diaSemana")).intValue();
+                int hora = ((Number) tramo.get("horaDia")).intValue();
+                List<Map<String, Object>> profesores = (List<Map<String, Object>>) tramo.get("profesores");
+                nueva.put(clave(dia, hora), profesores != null ? List.copyOf(profesores) : List.of());
+            }
+
+            matrizGuardias = Map.copyOf(nueva);
+            etagMatriz = respuesta.getHeaders().getETag();
+            ultimaCargaMatriz = LocalDateTime.now();
+            logger.info("Matriz de guardias cargada: {} tramos", nueva.size());
+            return true;
+        } catch (Exception e) {
+            logger.error("No se pudo recargar la matriz de guardias, se mantiene la anterior: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Estado de la matriz de guardias en memoria
+     */
+    public Map<String, Object> getEstadoMatrizGuardias() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        Map<Integer, List<Map<String, Object>>> matriz = matrizGuardias;
+        estado.put("cargada", matriz != null);
+        estado.put("tramos", matriz != null ? matriz.size() : 0);
+        estado.put("ultimaCarga", ultimaCargaMatriz);
+        estado.put("gruposCargados", gruposProblematicos != null);
+        estado.put("tramosCargados", horasTramos != null);
+        return estado;
+    }
+
+    private static int clave(int diaSemana, int hora) {
+        return diaSemana * 10 + hora;
+    }
+
+    /**
+     * Profesores de guardia de un tramo según la matriz en memoria, sin consultar a horarios.
+     *
+     * @return null si la matriz aún no se ha cargado o el tramo queda fuera de ella
+     */
+    public List<Map<String, Object>> getProfesoresGuardiaEnMemoria(int diaSemana, int hora) {
+        Map<Integer, List<Map<String, Object>>> matriz = matrizGuardias;
+        return matriz != null ? matriz.get(clave(diaSemana, hora)) : null;
+    }
+
+    /**
+     * Inicio y fin de un tramo según la copia en memoria
+     *
+     * @return null si los tramos aún no se han cargado o el tramo no existe
+     */
+    public HorasTramo getHorasTramo(int diaSemana, int hora) {
+        Map<Integer, HorasTramo> tramos = horasTramos;
+        return tramos != null ? tramos.get(clave(diaSemana, hora)) : null;
     }
 
     /**
      * Obtiene la lista de profesores de guardia para un día y hora específicos.
+     * Se resuelve desde la matriz en memoria; solo consulta a horarios si aún no
+     * se ha podido cargar o el tramo queda fuera de ella.
      * 
      * @param diaSemana Día de la semana (1=Lunes, ..., 5=Viernes)
      * @param hora Hora del día
      * @return Lista de profesores de guardia o vacía si hay error
      */
-    @SuppressWarnings("unchecked")
     public Mono<List<Map<String, Object>>> getProfesoresGuardia(int diaSemana, int hora) {
+        Map<Integer, List<Map<String, Object>>> matriz = matrizGuardias;
+        if (matriz != null) {
+            List<Map<String, Object>> profesores = matriz.get(clave(diaSemana, hora));
+            if (profesores != null) {
+                return Mono.just(profesores);
+            }
+        }
+
+        return consultarProfesoresGuardia(diaSemana, hora)
+                .doOnError(error -> 
+                    logger.error("Error consultando profesores de guardia: {}", error.getMessage())
+                )
+                .onErrorReturn(List.<Map<String, Object>>of());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<List<Map<String, Object>>> consultarProfesoresGuardia(int diaSemana, int hora) {
         logger.debug("Consultando profesores de guardia para día {} hora {}", diaSemana, hora);
         
         return webClient.get()
@@ -47,14 +206,10 @@ public class HorarioIntegrationService {
                 .map(response -> {
                     Object profesoresObj = response.get("profesores");
                     List<Map<String, Object>> profesores = (List<Map<String, Object>>) profesoresObj;
-                    logger.info("Encontrados {} profesores de guardia para día {} hora {}", 
+                    logger.debug("Encontrados {} profesores de guardia para día {} hora {}", 
                               profesores != null ? profesores.size() : 0, diaSemana, hora);
                     return profesores != null ? profesores : List.<Map<String, Object>>of();
-                })
-                .doOnError(error -> 
-                    logger.error("Error consultando profesores de guardia: {}", error.getMessage())
-                )
-                .onErrorReturn(List.<Map<String, Object>>of());
+                });
     }
 
     /**
@@ -109,4 +264,60 @@ public class HorarioIntegrationService {
                 )
                 .onErrorReturn(List.<Map<String, Object>>of());
     }
+
+    /**
+     * Nombres y abreviaturas (en minúsculas) de los grupos marcados como problemáticos
+     * en el sistema de horarios, según la copia en memoria.
+     *
+     * @return null si aún no se han podido cargar
+     */
+    public Set<String> getGruposProblematicos() {
+        return gruposProblematicos;
+    }
+
+    private void refrescarGruposProblematicos() {
+        try {
+            List<Map<String, Object>> grupos = webClient.get()
+                    .uri("/grupos")
+                    .retrieve()
+                    .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                    .block();
+            Set<String> problematicos = grupos.stream()
+                    .filter(grupo -> Boolean.TRUE.equals(grupo.get("esProblematico")))
+                    .flatMap(grupo -> java.util.stream.Stream.of(grupo.get("nombre"), grupo.get("abreviatura")))
+                    .filter(valor -> valor != null)
+                    .map(valor -> valor.toString().trim().toLowerCase())
+                    .collect(Collectors.toUnmodifiableSet());
+            gruposProblematicos = problematicos;
+            logger.debug("Cargados {} identificadores de grupos problemáticos", problematicos.size());
+        } catch (Exception e) {
+            logger.error("No se pudieron recargar los grupos problemáticos, se mantienen los anteriores: {}", e.getMessage());
+        }
+    }
+
+    private void refrescarHorasTramos() {
+        try {
+            List<Map<String, Object>> tramos = webClient.get()
+                    .uri("/tramohorarios")
+                    .retrieve()
+                    .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                    .block();
+            Map<Integer, HorasTramo> nuevos = new HashMap<>();
+            for (Map<String, Object> tramo : tramos) {
+                Object inicio = tramo.get("horaInicio");
+                Object fin = tramo.get("horaFin");
+                if (inicio == null || fin == null) {
+                    continue;
+                }
+                int dia = ((Number) tramo.get("diaSemana")).intValue();
+                int hora = ((Number) tramo.get("horaDia")).intValue();
+                nuevos.put(clave(dia, hora),
+                        new HorasTramo(LocalTime.parse(inicio.toString()), LocalTime.parse(fin.toString())));
+            }
+            horasTramos = Map.copyOf(nuevos);
+            logger.debug("Cargadas las horas de {} tramos", nuevos.size());
+        } catch (Exception e) {
+            logger.error("No se pudieron recargar las horas de los tramos, se mantienen las anteriores: {}", e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,123 @@
+package es.iesjandula.guardias.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Claves públicas de firma de Supabase Auth (JWKS) cacheadas en memoria.
+ * Se descargan de {supabase.url}/auth/v1/.well-known/jwks.json y se recargan al
+ * vencer el TTL o cuando llega un token firmado con un kid desconocido (como
+ * mucho una vez por intervalo mínimo, para no amplificar tokens inventados).
+ */
+@Component
+@SuppressWarnings("unchecked")
+public class JwksSupabase {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwksSupabase.class);
+
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final String jwksUrl;
+    private final long ttlMs;
+    private final long intervaloMinimoMs;
+
+    private volatile Map<String, PublicKey> claves = Map.of();
+    private volatile long ultimaCarga;
+
+    public JwksSupabase(@Value("${supabase.url:}") String supabaseUrl,
+                        @Value("${supabase.jwks.ttl-seconds:3600}") long ttlSegundos,
+                        @Value("${supabase.jwks.min-refresh-seconds:60}") long intervaloMinimoSegundos) {
+        this.jwksUrl = supabaseUrl.isBlank() ? null
+                : supabaseUrl.replaceAll("/+$", "") + "/auth/v1/.well-known/jwks.json";
+        this.ttlMs = ttlSegundos * 1000;
+        this.intervaloMinimoMs = intervaloMinimoSegundos * 1000;
+    }
+
+    /**
+     * Obtiene la clave pública de un kid, recargando el JWKS si hace falta
+     *
+     * @param kid Identificador de clave de la cabecera del token
+     * @return Clave pública o null si no existe
+     */
+    public PublicKey getClave(String kid) {
+        if (kid == null || jwksUrl == null) {
+            return null;
+        }
+        long edad = System.currentTimeMillis() - ultimaCarga;
+        PublicKey clave = claves.get(kid);
+        if ((clave == null && edad > intervaloMinimoMs) || edad > ttlMs) {
+            recargar();
+            clave = claves.get(kid);
+        }
+        return clave;
+    }
+
+    private synchronized void recargar() {
+        // Otro hilo puede haber recargado mientras se esperaba el monitor
+        if (System.currentTimeMillis() - ultimaCarga <= intervaloMinimoMs) {
+            return;
+        }
+        try {
+            Map<String, Object> jwks = restTemplate.getForObject(jwksUrl, Map.class);
+            Map<String, PublicKey> nuevas = new HashMap<>();
+            for (Map<String, Object> jwk : (List<Map<String, Object>>) jwks.getOrDefault("keys", List.of())) {
+                // Sin kid no hay token que pueda elegirla, y una clave null haría fallar Map.copyOf
+                if (!(jwk.get("kid") instanceof String kid)) {
+                    logger.debug("Clave JWKS sin kid ignorada");
+                    continue;
+                }
+                PublicKey clave = convertir(jwk);
+                if (clave != null) {
+                    nuevas.put(kid, clave);
+                }
+            }
+            claves = Map.copyOf(nuevas);
+            logger.info("JWKS de Supabase cargado: {} claves", nuevas.size());
+        } catch (Exception e) {
+            logger.warn("No se pudo cargar el JWKS de Supabase, se mantienen las claves anteriores: {}", e.getMessage());
+        } finally {
+            ultimaCarga = System.currentTimeMillis();
+        }
+    }
+
+    private PublicKey convertir(Map<String, Object> jwk) {
+        try {
+            String tipo = (String) jwk.get("kty");
+            if ("RSA".equals(tipo)) {
+                return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+                        entero(jwk.get("n")), entero(jwk.get("e"))));
+            }
+            if ("EC".equals(tipo) && "P-256".equals(jwk.get("crv"))) {
+                AlgorithmParameters parametros = AlgorithmParameters.getInstance("EC");
+                parametros.init(new ECGenParameterSpec("secp256r1"));
+                ECPoint punto = new ECPoint(entero(jwk.get("x")), entero(jwk.get("y")));
+                return KeyFactory.getInstance("EC").generatePublic(
+                        new ECPublicKeySpec(punto, parametros.getParameterSpec(ECParameterSpec.class)));
+            }
+            logger.debug("Clave JWKS ignorada (tipo no soportado): {}", jwk.get("kid"));
+        } catch (Exception e) {
+            logger.warn("Clave JWKS {} no válida: {}", jwk.get("kid"), e.getMessage());
+        }
+        return null;
+    }
+
+    private static BigInteger entero(Object base64Url) {
+        return new BigInteger(1, Base64.getUrlDecoder().decode((String) base64Url));
+    }
+}
@@ -0,0 +1,26 @@
+package es.iesjandula.guardias.models;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Fila de bloqueo por fecha. Las transacciones que crean o eliminan ausencias y
+ * replanifican las coberturas de un día bloquean la fila de esa fecha, de modo que
+ * dos replanificaciones del mismo día se ejecutan una detrás de otra.
+ */
+@Entity
+@Table(name = "bloqueo_dia")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BloqueoDia {
+
+    @Id
+    private LocalDate fecha;
+}
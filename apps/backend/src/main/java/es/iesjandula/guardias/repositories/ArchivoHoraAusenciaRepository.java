@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -21,6 +22,13 @@ public interface ArchivoHoraAusenciaRepository extends JpaRepository<ArchivoHora
     @Query("SELECT a FROM ArchivoHoraAusencia a WHERE a.horaAusencia.id = :horaAusenciaId")
     List<ArchivoHoraAusencia> findByHoraAusenciaId(@Param("horaAusenciaId") Long horaAusenciaId);
 
+    /**
+     * Obtiene los metadatos de todos los archivos de las horas de ausencia de una fecha
+     */
+    @Query("SELECT ar FROM ArchivoHoraAusencia ar JOIN ar.horaAusencia ha JOIN ha.ausencia a " +
+           "WHERE a.fecha = :fecha ORDER BY ar.id ASC")
+    List<ArchivoHoraAusencia> findByFecha(@Param("fecha") LocalDate fecha);
+
     /**
      * Cuenta cuántos archivos tiene una hora de ausencia específica
      */
@@ -0,0 +1,24 @@
+package es.iesjandula.guardias.repositories;
+
+import es.iesjandula.guardias.models.BloqueoDia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface BloqueoDiaRepository extends JpaRepository<BloqueoDia, LocalDate> {
+
+    /**
+     * Bloquea la fila de una fecha hasta el final de la transacción actual, creándola si no existe.
+     * A diferencia de un SELECT ... FOR UPDATE sobre las horas de ausencia, funciona aunque
+     * el día aún no tenga ninguna y no bloquea huecos del índice.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO bloqueo_dia (fecha) VALUES (:fecha) ON DUPLICATE KEY UPDATE fecha = fecha",
+           nativeQuery = true)
+    void bloquear(@Param("fecha") LocalDate fecha);
+}
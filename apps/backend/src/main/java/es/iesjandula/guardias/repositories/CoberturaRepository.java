@@ -58,4 +58,14 @@ public interface CoberturaRepository extends JpaRepository<Cobertura, Long> {
     @Query("SELECT c FROM Cobertura c JOIN c.horaAusencia ha JOIN ha.ausencia a WHERE a.fecha = :fecha")
     List<Cobertura> findByFecha(@Param("fecha") LocalDate fecha);
 
+    /**
+     * Coberturas no canceladas de días anteriores a una fecha, agrupadas por profesor
+     * (en minúsculas), fecha, hora y tipo de guardia: [email, fecha, hora, tipo, total]
+     */
+    @Query("SELECT LOWER(c.profesorCubreEmail), a.fecha, ha.hora, c.tipoGuardia, COUNT(c) " +
+           "FROM Cobertura c JOIN c.horaAusencia ha JOIN ha.ausencia a " +
+           "WHERE a.fecha < :fecha AND c.estado <> es.iesjandula.guardias.models.EstadoCobertura.CANCELADA " +
+           "AND c.profesorCubreEmail IS NOT NULL " +
+           "GROUP BY LOWER(c.profesorCubreEmail), a.fecha, ha.hora, c.tipoGuardia")
+    List<Object[]> contarCoberturasAnteriores(@Param("fecha") LocalDate fecha);
 }
@@ -30,6 +30,11 @@ public interface ContadorGuardiasRepository extends JpaRepository<ContadorGuardi
      */
     List<ContadorGuardias> findByDiaSemanaAndHoraOrderByProfesorEmailAsc(DiaSemana diaSemana, Integer hora);
 
+    /**
+     * Obtiene todos los contadores de un día (todas las horas) en una sola consulta
+     */
+    List<ContadorGuardias> findByDiaSemana(DiaSemana diaSemana);
+
     /**
      * Encuentra el profesor con menos guardias normales para un día y hora específicos
      */
@@ -23,4 +23,16 @@ public interface HoraAusenciaRepository extends JpaRepository<HoraAusencia, Long
      */
     @Query("SELECT ha FROM HoraAusencia ha JOIN ha.ausencia a WHERE a.fecha = :fecha ORDER BY ha.hora ASC")
     List<HoraAusencia> findByFecha(@Param("fecha") LocalDate fecha);
+
+    /**
+     * Carga en una sola consulta todas las horas de ausencia de una fecha junto con
+     * su ausencia y su cobertura (si existe). Evita el N+1 de la relación inversa
+     * OneToOne con Cobertura, que Hibernate no puede cargar de forma perezosa.
+     */
+    @Query("SELECT ha FROM HoraAusencia ha " +
+           "JOIN FETCH ha.ausencia a " +
+           "LEFT JOIN FETCH ha.cobertura " +
+           "WHERE a.fecha = :fecha " +
+           "ORDER BY a.id ASC, ha.id ASC")
+    List<HoraAusencia> findByFechaConAusenciaYCobertura(@Param("fecha") LocalDate fecha);
 }
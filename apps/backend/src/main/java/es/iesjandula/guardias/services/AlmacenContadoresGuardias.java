@@ -0,0 +1,183 @@
+package es.iesjandula.guardias.services;
+
+import es.iesjandula.guardias.models.ContadorGuardias;
+import es.iesjandula.guardias.models.DiaSemana;
+import es.iesjandula.guardias.models.TipoGuardia;
+import es.iesjandula.guardias.repositories.CoberturaRepository;
+import es.iesjandula.guardias.repositories.ContadorGuardiasRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contadores de guardias en memoria para el reparto de coberturas.
+ * Se guardan en un array de enteros indexado por (profesor, día, hora, tipo de guardia),
+ * de modo que leer un contador no crea objetos ni consulta la base de datos.
+ *
+ * Cada contador es el valor de contador_guardias (base, p. ej. guardias de cursos anteriores)
+ * más las coberturas no canceladas de días ya pasados. Nada escribe hoy contador_guardias,
+ * así que son las coberturas que asigna {@link AsignacionCoberturasService} las que hacen
+ * avanzar los contadores. Las de hoy y días futuros aún pueden reasignarse y no se cuentan.
+ *
+ * Es de solo lectura: este servicio no escribe contadores. Todo se vuelve a cargar cada
+ * ttl-ms (y con {@link #recargar()}) y se sustituye de una vez, así que los cambios se ven
+ * como mucho un ttl después. Quien reparte un día toma una {@link Instantanea} y lee de
+ * ella, sin mezclar dos cargas.
+ */
+@Service
+public class AlmacenContadoresGuardias {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlmacenContadoresGuardias.class);
+
+    private static final int DIAS = DiaSemana.values().length;
+    /** ContadorGuardias valida la hora entre 1 y 8 */
+    private static final int HORAS = 8;
+    private static final int TIPOS = TipoGuardia.values().length;
+    private static final int POR_PROFESOR = DIAS * HORAS * TIPOS;
+
+    @Autowired
+    private ContadorGuardiasRepository contadorGuardiasRepository;
+
+    @Autowired
+    private CoberturaRepository coberturaRepository;
+
+    /** Null hasta la primera carga; cada recarga la sustituye entera */
+    private volatile Instantanea instantanea;
+
+    /**
+     * Contadores de la última carga, cargándolos si aún no se ha hecho
+     */
+    public Instantanea instantanea() {
+        Instantanea actual = instantanea;
+        if (actual == null) {
+            synchronized (this) {
+                if (instantanea == null) {
+                    recargar();
+                }
+                actual = instantanea;
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Vuelve a leer todos los contadores y las coberturas de días pasados de la base de datos
+     */
+    @Scheduled(initialDelayString = "${app.cache.contadores-guardias.ttl-ms:300000}",
+               fixedDelayString = "${app.cache.contadores-guardias.ttl-ms:300000}")
+    public void recargar() {
+        cargar(contadorGuardiasRepository.findAll(),
+               coberturaRepository.contarCoberturasAnteriores(LocalDate.now()));
+    }
+
+    /**
+     * Sustituye la instantánea por la construida a partir de las filas indicadas
+     *
+     * @param coberturas Filas de {@link CoberturaRepository#contarCoberturasAnteriores}
+     */
+    void cargar(List<ContadorGuardias> filas, List<Object[]> coberturas) {
+        Map<String, Integer> indices = new HashMap<>();
+        List<String> emails = new ArrayList<>();
+        for (ContadorGuardias fila : filas) {
+            indice(indices, emails, fila.getProfesorEmail().toLowerCase());
+        }
+        for (Object[] cobertura : coberturas) {
+            indice(indices, emails, (String) cobertura[0]);
+        }
+
+        int[] contadores = new int[emails.size() * POR_PROFESOR];
+        for (ContadorGuardias fila : filas) {
+            if (fila.getHora() == null || fila.getHora() < 1 || fila.getHora() > HORAS) {
+                logger.warn("Contador de {} con hora fuera de rango ignorado: {}", fila.getProfesorEmail(), fila.getHora());
+                continue;
+            }
+            int profesor = indices.get(fila.getProfesorEmail().toLowerCase());
+            contadores[posicion(profesor, fila.getDiaSemana(), fila.getHora(), TipoGuardia.NORMAL)] =
+                    valor(fila.getGuardiasNormales());
+            contadores[posicion(profesor, fila.getDiaSemana(), fila.getHora(), TipoGuardia.PROBLEMATICA)] =
+                    valor(fila.getGuardiasProblematicas());
+            contadores[posicion(profesor, fila.getDiaSemana(), fila.getHora(), TipoGuardia.CONVIVENCIA)] =
+                    valor(fila.getGuardiasConvivencia());
+        }
+
+        int contadas = 0;
+        for (Object[] cobertura : coberturas) {
+            DiaSemana dia;
+            try {
+                dia = DiaSemana.fromLocalDate((LocalDate) cobertura[1]);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            Integer hora = (Integer) cobertura[2];
+            if (hora == null || hora < 1 || hora > HORAS || cobertura[3] == null) {
+                continue;
+            }
+            int total = ((Number) cobertura[4]).intValue();
+            contadores[posicion(indices.get((String) cobertura[0]), dia, hora, (TipoGuardia) cobertura[3])] += total;
+            contadas += total;
+        }
+
+        instantanea = new Instantanea(Map.copyOf(indices), contadores);
+        logger.info("Contadores de guardias cargados: {} profesores, {} filas, {} coberturas",
+                emails.size(), filas.size(), contadas);
+    }
+
+    private static void indice(Map<String, Integer> indices, List<String> emails, String email) {
+        indices.computeIfAbsent(email, clave -> {
+            emails.add(clave);
+            return emails.size() - 1;
+        });
+    }
+
+    private static int posicion(int profesor, DiaSemana dia, int hora, TipoGuardia tipo) {
+        return ((profesor * DIAS + dia.getNumero() - 1) * HORAS + hora - 1) * TIPOS + tipo.ordinal();
+    }
+
+    private static int valor(Integer contador) {
+        return contador != null ? contador : 0;
+    }
+
+    /**
+     * Índices y contadores de una carga. No se modifica después de publicarse
+     */
+    public static final class Instantanea {
+        private final Map<String, Integer> indices;
+        private final int[] contadores;
+
+        private Instantanea(Map<String, Integer> indices, int[] contadores) {
+            this.indices = indices;
+            this.contadores = contadores;
+        }
+
+        /**
+         * Índice de un profesor en esta carga
+         *
+         * @param email Email ya en minúsculas
+         * @return -1 si el profesor no tiene contadores
+         */
+        public int indice(String email) {
+            Integer indice = indices.get(email);
+            return indice != null ? indice : -1;
+        }
+
+        /**
+         * Contador de un profesor (índice de {@link #indice}) en un tramo. Sin crear objetos.
+         *
+         * @return 0 si el profesor no tiene contadores o la hora está fuera de rango
+         */
+        public int valor(int profesor, DiaSemana dia, int hora, TipoGuardia tipo) {
+            if (profesor < 0 || hora < 1 || hora > HORAS) {
+                return 0;
+            }
+            return contadores[posicion(profesor, dia, hora, tipo)];
+        }
+    }
+}
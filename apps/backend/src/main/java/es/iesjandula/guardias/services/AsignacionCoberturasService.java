@@ -0,0 +1,210 @@
+package es.iesjandula.guardias.services;
+
+import es.iesjandula.guardias.integration.HorarioIntegrationService;
+import es.iesjandula.guardias.models.*;
+import es.iesjandula.guardias.repositories.BloqueoDiaRepository;
+import es.iesjandula.guardias.repositories.HoraAusenciaRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Asigna y reequilibra automáticamente las coberturas de un día.
+ * Carga de una vez las horas y coberturas de la fecha, reparte cada tramo con
+ * {@link MotorAsignacionGuardias} sobre los contadores en memoria de
+ * {@link AlmacenContadoresGuardias} y escribe solo las filas que cambian mediante lotes JDBC.
+ * Las guardias que se van asignando en el día (y las coberturas que no se tocan) se llevan
+ * en un {@link MotorAsignacionGuardias.Reparto}, para equilibrarlas entre los tramos.
+ * Los datos de horarios (guardias, grupos problemáticos y horas de los tramos) se leen de la
+ * copia en memoria de {@link HorarioIntegrationService}: no hay peticiones HTTP dentro de la
+ * transacción.
+ */
+@Service
+public class AsignacionCoberturasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsignacionCoberturasService.class);
+
+    private static final String SQL_INSERTAR =
+            "INSERT INTO cobertura (hora_ausencia_id, profesor_cubre_email, grupo, aula, tipo_guardia, estado, validada_por_admin) " +
+            "VALUES (?, ?, ?, ?, ?, 'ASIGNADA', false)";
+
+    // El filtro por estado evita pisar una cobertura validada entre la lectura y la escritura
+    private static final String SQL_ACTUALIZAR =
+            "UPDATE cobertura SET profesor_cubre_email = ?, tipo_guardia = ? WHERE id = ? AND estado = 'ASIGNADA'";
+
+    private static final String SQL_ELIMINAR =
+            "DELETE FROM cobertura WHERE id = ? AND estado = 'ASIGNADA'";
+
+    @Autowired
+    private HoraAusenciaRepository horaAusenciaRepository;
+
+    @Autowired
+    private BloqueoDiaRepository bloqueoDiaRepository;
+
+    @Autowired
+    private AlmacenContadoresGuardias almacenContadoresGuardias;
+
+    @Autowired
+    private HorarioIntegrationService horarioIntegrationService;
+
+    @Autowired
+    private MotorAsignacionGuardias motorAsignacionGuardias;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Recalcula el reparto de todas las coberturas reasignables (ASIGNADA) y las horas
+     * sin cubrir de una fecha. Las coberturas validadas o canceladas no se tocan y sus
+     * profesores se consideran ocupados en su tramo.
+     * Los días pasados no se replanifican. Hoy, los tramos ya terminados no se tocan y en
+     * los que están en curso solo se cubren las horas sin cobertura.
+     * Se une a la transacción del llamador y bloquea la fecha hasta su final, así que dos
+     * replanificaciones del mismo día no se solapan.
+     *
+     * @param fecha Fecha a replanificar
+     * @return Asignaciones vigentes tras el reparto (cambiadas o no)
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<MotorAsignacionGuardias.Asignacion> replanificarDia(LocalDate fecha) {
+        DiaSemana diaSemana;
+        try {
+            diaSemana = DiaSemana.fromLocalDate(fecha);
+        } catch (IllegalArgumentException e) {
+            logger.warn("No se asignan coberturas en día no lectivo: {}", fecha);
+            return List.of();
+        }
+        LocalDate hoy = LocalDate.now();
+        if (fecha.isBefore(hoy)) {
+            logger.info("No se replanifican las coberturas de un día pasado: {}", fecha);
+            return List.of();
+        }
+
+        // Sin grupos problemáticos el tipo de guardia saldría NORMAL en todas: se mantiene el reparto
+        Set<String> gruposProblematicos = horarioIntegrationService.getGruposProblematicos();
+        if (gruposProblematicos == null) {
+            logger.warn("Grupos problemáticos no disponibles, no se replanifica {}", fecha);
+            return List.of();
+        }
+
+        bloqueoDiaRepository.bloquear(fecha);
+
+        // 1. Horas del día con su ausencia y cobertura (una consulta)
+        List<HoraAusencia> horas = horaAusenciaRepository.findByFechaConAusenciaYCobertura(fecha);
+        boolean esHoy = fecha.equals(hoy);
+        LocalTime ahora = LocalTime.now();
+        Set<String> ausentes = new HashSet<>();
+        Map<Integer, List<HoraAusencia>> reasignablesPorHora = new TreeMap<>();
+        Map<Integer, Set<String>> ocupadosPorHora = new HashMap<>();
+        MotorAsignacionGuardias.Reparto reparto = new MotorAsignacionGuardias.Reparto();
+        for (HoraAusencia hora : horas) {
+            ausentes.add(hora.getAusencia().getProfesorAusenteEmail().toLowerCase());
+            Cobertura cobertura = hora.getCobertura();
+            boolean enCurso = false;
+            if (esHoy) {
+                HorarioIntegrationService.HorasTramo tramo =
+                        horarioIntegrationService.getHorasTramo(diaSemana.getNumero(), hora.getHora());
+                if (tramo == null) {
+                    logger.warn("Tramo {} hora {}: horas del tramo no disponibles, no se toca", fecha, hora.getHora());
+                    continue;
+                }
+                if (!ahora.isBefore(tramo.fin())) {
+                    continue;
+                }
+                enCurso = !ahora.isBefore(tramo.inicio());
+            }
+
+            if (cobertura == null || (cobertura.getEstado().puedeReasignarse() && !enCurso)) {
+                reasignablesPorHora.computeIfAbsent(hora.getHora(), k -> new ArrayList<>()).add(hora);
+            } else if (cobertura.getEstado() != EstadoCobertura.CANCELADA) {
+                // Validada, o asignada en un tramo que ya ha empezado: ocupa al profesor y cuenta en el día
+                String profesor = cobertura.getProfesorCubreEmail().toLowerCase();
+                ocupadosPorHora.computeIfAbsent(hora.getHora(), k -> new HashSet<>()).add(profesor);
+                reparto.sumar(profesor, cobertura.getTipoGuardia() != null ? cobertura.getTipoGuardia() : TipoGuardia.NORMAL);
+            }
+        }
+        if (reasignablesPorHora.isEmpty()) {
+            return List.of();
+        }
+
+        // 2. Reparto de cada tramo y cálculo de diferencias
+        List<MotorAsignacionGuardias.Asignacion> vigentes = new ArrayList<>();
+        List<Object[]> inserciones = new ArrayList<>();
+        List<Object[]> actualizaciones = new ArrayList<>();
+        List<Object[]> eliminaciones = new ArrayList<>();
+        AlmacenContadoresGuardias.Instantanea contadores = almacenContadoresGuardias.instantanea();
+
+        for (Map.Entry<Integer, List<HoraAusencia>> tramo : reasignablesPorHora.entrySet()) {
+            int hora = tramo.getKey();
+            // Profesores de guardia del tramo desde la matriz en memoria
+            List<Map<String, Object>> deGuardia =
+                    horarioIntegrationService.getProfesoresGuardiaEnMemoria(diaSemana.getNumero(), hora);
+            if (deGuardia == null || deGuardia.isEmpty()) {
+                // Sin datos de horarios no se deshacen las coberturas existentes
+                logger.warn("Tramo {} hora {}: sin profesores de guardia, se mantiene el reparto actual", fecha, hora);
+                continue;
+            }
+
+            Set<String> ocupados = ocupadosPorHora.getOrDefault(hora, Set.of());
+            List<String> disponibles = new ArrayList<>();
+            for (Map<String, Object> profesor : deGuardia) {
+                Object email = profesor.get("email");
+                if (email != null) {
+                    String clave = email.toString().toLowerCase();
+                    if (!ausentes.contains(clave) && !ocupados.contains(clave)) {
+                        disponibles.add(clave);
+                    }
+                }
+            }
+
+            MotorAsignacionGuardias.PlanTramo plan = motorAsignacionGuardias.planificar(
+                    tramo.getValue(), disponibles, contadores, reparto, diaSemana, hora, gruposProblematicos);
+
+            for (MotorAsignacionGuardias.Asignacion asignacion : plan.getAsignaciones()) {
+                HoraAusencia horaAusencia = asignacion.getHoraAusencia();
+                Cobertura actual = horaAusencia.getCobertura();
+                if (actual == null) {
+                    inserciones.add(new Object[]{horaAusencia.getId(), asignacion.getProfesorEmail(),
+                            horaAusencia.getGrupo(), horaAusencia.getAula(), asignacion.getTipoGuardia().name()});
+                } else if (!asignacion.getProfesorEmail().equalsIgnoreCase(actual.getProfesorCubreEmail())
+                        || asignacion.getTipoGuardia() != actual.getTipoGuardia()) {
+                    actualizaciones.add(new Object[]{asignacion.getProfesorEmail(),
+                            asignacion.getTipoGuardia().name(), actual.getId()});
+                }
+                vigentes.add(asignacion);
+            }
+            for (HoraAusencia horaAusencia : plan.getSinCubrir()) {
+                if (horaAusencia.getCobertura() != null) {
+                    eliminaciones.add(new Object[]{horaAusencia.getCobertura().getId()});
+                }
+            }
+
+            logger.debug("Tramo {} hora {}: convivencia para {}, {} horas sin cubrir",
+                    fecha, hora, plan.getProfesorConvivencia(), plan.getSinCubrir().size());
+        }
+
+        // 3. Escritura por lotes solo de las filas que cambian
+        if (!actualizaciones.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_ACTUALIZAR, actualizaciones);
+        }
+        if (!inserciones.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_INSERTAR, inserciones);
+        }
+        if (!eliminaciones.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_ELIMINAR, eliminaciones);
+        }
+
+        logger.info("Día {} replanificado: {} coberturas nuevas, {} reasignadas, {} liberadas",
+                fecha, inserciones.size(), actualizaciones.size(), eliminaciones.size());
+        return vigentes;
+    }
+}
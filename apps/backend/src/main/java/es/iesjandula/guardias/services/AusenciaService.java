@@ -1,5 +1,6 @@
 package es.iesjandula.guardias.services;
 
+import es.iesjandula.guardias.config.CacheConfig;
 import es.iesjandula.guardias.dto.AusenciaConGuardiasDTO;
 import es.iesjandula.guardias.dto.AusenciaResponseDTO;
 import es.iesjandula.guardias.dto.ArchivoDTO;
@@ -12,11 +13,20 @@ import es.iesjandula.guardias.exception.BusinessException;
 import es.iesjandula.guardias.exception.ResourceNotFoundException;
 import es.iesjandula.guardias.models.*;
 import es.iesjandula.guardias.repositories.AusenciaRepository;
+import es.iesjandula.guardias.repositories.BloqueoDiaRepository;
 import es.iesjandula.guardias.repositories.CoberturaRepository;
+import es.iesjandula.guardias.repositories.HoraAusenciaRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,12 +46,24 @@ public class AusenciaService {
     @Autowired
     private CoberturaRepository coberturaRepository;
 
+    @Autowired
+    private HoraAusenciaRepository horaAusenciaRepository;
+
     @Autowired
     private FileStorageService fileStorageService;
 
     @Autowired
     private es.iesjandula.guardias.repositories.ArchivoHoraAusenciaRepository archivoRepository;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private AsignacionCoberturasService asignacionCoberturasService;
+
+    @Autowired
+    private BloqueoDiaRepository bloqueoDiaRepository;
+
     // Métodos del modelo viejo comentados temporalmente - serán migrados después
     // public AusenciaConGuardiasDTO guardarYAsignarCobertura(CrearAusenciaDTO crearDto) {...}
     // public List<AusenciaConGuardiasDTO> guardarYAsignarCoberturaMultiple(CrearAusenciaMultipleDTO crearDto) {...}
@@ -51,14 +73,46 @@ public class AusenciaService {
     // public Map<LocalDate, Map<String, List<AusenciaConGuardiasDTO>>> historicoFaltasPorProfesor(String emailProfesor) {...}
     // public List<AusenciaConGuardiasDTO> obtenerAusenciasPorProfesor(String email) {...}
 
+    /**
+     * Elimina una ausencia y replanifica su día en la misma transacción, con la fecha bloqueada.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public void eliminarPorId(Long id) {
-        if (!ausenciaRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Ausencia", "id", id);
-        }
-        ausenciaRepository.deleteById(id);
+        Ausencia ausencia = ausenciaRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Ausencia", "id", id));
+        bloqueoDiaRepository.bloquear(ausencia.getFecha());
+        ausenciaRepository.delete(ausencia);
+        // Las coberturas aún no validadas del día se reequilibran sin este profesor
+        asignacionCoberturasService.replanificarDia(ausencia.getFecha());
+        invalidarAusenciasDelDia(ausencia.getFecha());
         logger.info("Ausencia con ID {} eliminada correctamente", id);
     }
 
+    /**
+     * Descarta la instantánea cacheada de las ausencias de un día.
+     * Debe llamarse tras cualquier escritura de ausencias o coberturas de esa fecha.
+     * Dentro de una transacción se descarta también tras el commit: una lectura que
+     * empiece antes no puede dejar en caché el día sin la escritura.
+     *
+     * @param fecha Fecha cuya instantánea deja de ser válida
+     */
+    public void invalidarAusenciasDelDia(LocalDate fecha) {
+        Cache cache = cacheManager.getCache(CacheConfig.AUSENCIAS_POR_FECHA);
+        if (cache == null || fecha == null) {
+            return;
+        }
+        cache.evict(fecha);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.evict(fecha);
+                }
+            });
+        }
+        logger.debug("Caché de ausencias invalidada para fecha {}", fecha);
+    }
+
     /**
      * Crea una ausencia con múltiples horas.
      * Este método maneja el nuevo formato donde una ausencia representa un día completo
@@ -66,10 +120,14 @@ public class AusenciaService {
      *
      * @param crearDto DTO con los datos de la ausencia y las horas afectadas.
      * @return AusenciaResponseDTO con la ausencia creada y sus horas.
+     * La ausencia y la replanificación del día van en una transacción, con la fecha bloqueada.
      * @throws BusinessException Si ya existe una ausencia para el profesor en la fecha especificada.
      */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public AusenciaResponseDTO crearAusenciaConCoberturas(CrearAusenciaDTO crearDto) {
         logger.debug("Creando ausencia: {}", crearDto);
+        bloqueoDiaRepository.bloquear(crearDto.getFecha());
+        invalidarAusenciasDelDia(crearDto.getFecha());
 
         // Verificar que no exista ya una ausencia para este profesor en esta fecha
         if (ausenciaRepository.existsByProfesorAusenteEmailAndFecha(
@@ -108,7 +166,6 @@ public class AusenciaService {
             horaConCoberturaDto.setGrupo(horaAusencia.getGrupo());
             horaConCoberturaDto.setAula(horaAusencia.getAula());
             horaConCoberturaDto.setTarea(horaAusencia.getTarea());
-            horaConCoberturaDto.setCobertura(null); // Por ahora sin cobertura automática
 
             horasConCobertura.add(horaConCoberturaDto);
         }
@@ -117,9 +174,14 @@ public class AusenciaService {
         ausencia = ausenciaRepository.save(ausencia);
         logger.info("Ausencia creada con ID: {} y {} horas", ausencia.getId(), ausencia.getHoras().size());
 
-        // Actualizar los IDs en los DTOs
+        // Asignar cobertura automática a los tramos afectados
+        Map<Long, CoberturaDTO> coberturas = asignarCoberturas(ausencia);
+
+        // Actualizar los IDs y coberturas en los DTOs
         for (int i = 0; i < ausencia.getHoras().size(); i++) {
-            horasConCobertura.get(i).setId(ausencia.getHoras().get(i).getId());
+            Long horaId = ausencia.getHoras().get(i).getId();
+            horasConCobertura.get(i).setId(horaId);
+            horasConCobertura.get(i).setCobertura(coberturas.get(horaId));
         }
 
         // Crear DTO de respuesta
@@ -136,10 +198,14 @@ public class AusenciaService {
     /**
      * Crea una ausencia con múltiples horas Y archivos asociados
      * 
+     * La ausencia, sus archivos y la replanificación del día van en una transacción, con la
+     * fecha bloqueada. Si la transacción no se confirma se borran los archivos ya guardados.
+     *
      * @param crearDto DTO con los datos de la ausencia
      * @param archivos Mapa con archivos por hora: key=índice_hora (0,1,2...), value=array de archivos
      * @return AusenciaResponseDTO con la ausencia creada, sus horas y archivos
      */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public AusenciaResponseDTO crearAusenciaConArchivos(CrearAusenciaDTO crearDto, 
                                                          Map<Integer, MultipartFile[]> archivos) {
         logger.debug("Creando ausencia con archivos: {}", crearDto);
@@ -155,6 +221,9 @@ public class AusenciaService {
             }
         }
 
+        bloqueoDiaRepository.bloquear(crearDto.getFecha());
+        invalidarAusenciasDelDia(crearDto.getFecha());
+
         // Verificar que no exista ya una ausencia para este profesor en esta fecha
         if (ausenciaRepository.existsByProfesorAusenteEmailAndFecha(
                 crearDto.getProfesorAusenteEmail(), crearDto.getFecha())) {
@@ -194,7 +263,19 @@ public class AusenciaService {
         // Guardar la ausencia con todas sus horas
         ausencia = ausenciaRepository.save(ausencia);
         
+        // Asignar cobertura automática a los tramos afectados
+        Map<Long, CoberturaDTO> coberturas = asignarCoberturas(ausencia);
+        
         // Ahora procesar archivos para cada hora
+        List<String> rutasGuardadas = new ArrayList<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    rutasGuardadas.forEach(fileStorageService::deleteFile);
+                }
+            }
+        });
         for (int i = 0; i < ausencia.getHoras().size(); i++) {
             HoraAusencia horaAusencia = ausencia.getHoras().get(i);
             List<ArchivoDTO> archivosDto = new ArrayList<>();
@@ -208,6 +289,7 @@ public class AusenciaService {
                         String[] archivoInfo = fileStorageService.storeFile(
                             archivo, ausencia.getId(), horaAusencia.getId()
                         );
+                        rutasGuardadas.add(archivoInfo[0]);
                         
                         // Crear registro en BD
                         ArchivoHoraAusencia archivoEntity = new ArchivoHoraAusencia(
@@ -244,7 +326,7 @@ public class AusenciaService {
             horaConCoberturaDto.setGrupo(horaAusencia.getGrupo());
             horaConCoberturaDto.setAula(horaAusencia.getAula());
             horaConCoberturaDto.setTarea(horaAusencia.getTarea());
-            horaConCoberturaDto.setCobertura(null);
+            horaConCoberturaDto.setCobertura(coberturas.get(horaAusencia.getId()));
             horaConCoberturaDto.setArchivos(archivosDto);
             
             horasConCobertura.add(horaConCoberturaDto);
@@ -262,76 +344,129 @@ public class AusenciaService {
     }
 
     /**
-     * Obtiene todas las ausencias de una fecha específica, agrupadas por hora
+     * Obtiene todas las ausencias de una fecha específica, agrupadas por hora.
+     * Carga el día completo en dos consultas (horas con ausencia y cobertura, y
+     * metadatos de archivos) y monta la respuesta en memoria. El resultado se
+     * cachea por fecha hasta que se escribe una ausencia o cobertura de ese día
+     * y se devuelve como colecciones de solo lectura.
      * 
      * @param fecha Fecha de las ausencias a buscar
      * @return Map con las ausencias agrupadas por hora (key=hora, value=lista de ausencias)
      */
+    @Cacheable(cacheNames = CacheConfig.AUSENCIAS_POR_FECHA, key = "#fecha", sync = true)
+    @Transactional(readOnly = true)
     public Map<String, List<AusenciaResponseDTO>> obtenerAusenciasPorFecha(LocalDate fecha) {
         logger.debug("Obteniendo ausencias para fecha: {}", fecha);
         
-        List<Ausencia> ausencias = ausenciaRepository.findByFecha(fecha);
+        List<HoraAusencia> horas = horaAusenciaRepository.findByFechaConAusenciaYCobertura(fecha);
+        
+        // Archivos de todo el día agrupados por hora de ausencia
+        Map<Long, List<ArchivoDTO>> archivosPorHora = new HashMap<>();
+        for (ArchivoHoraAusencia archivo : archivoRepository.findByFecha(fecha)) {
+            archivosPorHora.computeIfAbsent(archivo.getHoraAusencia().getId(), k -> new ArrayList<>())
+                    .add(convertirArchivoADto(archivo));
+        }
+        
         Map<String, List<AusenciaResponseDTO>> ausenciasPorHora = new HashMap<>();
+        Set<Long> ausenciaIds = new HashSet<>();
         
-        for (Ausencia ausencia : ausencias) {
-            // Convertir cada Ausencia a AusenciaResponseDTO
-            for (HoraAusencia horaAusencia : ausencia.getHoras()) {
-                String horaKey = String.valueOf(horaAusencia.getHora());
-                
-                // Crear DTO para esta hora específica
-                AusenciaResponseDTO ausenciaDto = new AusenciaResponseDTO();
-                ausenciaDto.setId(ausencia.getId());
-                ausenciaDto.setProfesorAusenteEmail(ausencia.getProfesorAusenteEmail());
-                ausenciaDto.setFecha(ausencia.getFecha());
-                
-                // Crear HoraAusenciaConCoberturaDTO con archivos
-                HoraAusenciaConCoberturaDTO horaDto = new HoraAusenciaConCoberturaDTO();
-                horaDto.setId(horaAusencia.getId());
-                horaDto.setHora(horaAusencia.getHora());
-                horaDto.setGrupo(horaAusencia.getGrupo());
-                horaDto.setAula(horaAusencia.getAula());
-                horaDto.setTarea(horaAusencia.getTarea());
-                
-                // Obtener cobertura si existe
-                Optional<Cobertura> coberturaOpt = coberturaRepository.findByHoraAusenciaId(horaAusencia.getId());
-                if (coberturaOpt.isPresent()) {
-                    Cobertura cobertura = coberturaOpt.get();
-                    CoberturaDTO coberturaDto = new CoberturaDTO();
-                    coberturaDto.setProfesorCubreEmail(cobertura.getProfesorCubreEmail());
-                    coberturaDto.setProfesorAusenteEmail(ausencia.getProfesorAusenteEmail());
-                    coberturaDto.setGrupo(horaAusencia.getGrupo());
-                    coberturaDto.setAula(horaAusencia.getAula());
-                    coberturaDto.setHora(horaAusencia.getHora());
-                    coberturaDto.setFecha(ausencia.getFecha());
-                    coberturaDto.setTarea(horaAusencia.getTarea());
-                    horaDto.setCobertura(coberturaDto);
-                }
-                
-                // Obtener archivos asociados
-                List<ArchivoDTO> archivosDto = new ArrayList<>();
-                for (ArchivoHoraAusencia archivo : horaAusencia.getArchivos()) {
-                    ArchivoDTO archivoDto = new ArchivoDTO();
-                    archivoDto.setId(archivo.getId());
-                    archivoDto.setNombreArchivo(archivo.getNombreArchivo());
-                    archivoDto.setTamanio(archivo.getTamanio());
-                    archivoDto.setTamanioFormateado(ArchivoDTO.formatFileSize(archivo.getTamanio()));
-                    archivoDto.setTipoMime(archivo.getTipoMime());
-                    archivoDto.setFechaSubida(archivo.getFechaSubida());
-                    archivoDto.setUrlDescarga("/api/ausencias/archivos/" + archivo.getId() + "/download");
-                    archivosDto.add(archivoDto);
-                }
-                horaDto.setArchivos(archivosDto);
-                
-                ausenciaDto.setHoras(Collections.singletonList(horaDto));
-                
-                // Agregar al mapa agrupado por hora
-                ausenciasPorHora.computeIfAbsent(horaKey, k -> new ArrayList<>()).add(ausenciaDto);
+        for (HoraAusencia horaAusencia : horas) {
+            Ausencia ausencia = horaAusencia.getAusencia();
+            ausenciaIds.add(ausencia.getId());
+            String horaKey = String.valueOf(horaAusencia.getHora());
+            
+            // Crear DTO para esta hora específica
+            AusenciaResponseDTO ausenciaDto = new AusenciaResponseDTO();
+            ausenciaDto.setId(ausencia.getId());
+            ausenciaDto.setProfesorAusenteEmail(ausencia.getProfesorAusenteEmail());
+            ausenciaDto.setFecha(ausencia.getFecha());
+            
+            // Crear HoraAusenciaConCoberturaDTO con archivos
+            HoraAusenciaConCoberturaDTO horaDto = new HoraAusenciaConCoberturaDTO();
+            horaDto.setId(horaAusencia.getId());
+            horaDto.setHora(horaAusencia.getHora());
+            horaDto.setGrupo(horaAusencia.getGrupo());
+            horaDto.setAula(horaAusencia.getAula());
+            horaDto.setTarea(horaAusencia.getTarea());
+            
+            // Cobertura ya cargada por la consulta (LEFT JOIN FETCH)
+            Cobertura cobertura = horaAusencia.getCobertura();
+            if (cobertura != null) {
+                CoberturaDTO coberturaDto = new CoberturaDTO();
+                coberturaDto.setProfesorCubreEmail(cobertura.getProfesorCubreEmail());
+                coberturaDto.setProfesorAusenteEmail(ausencia.getProfesorAusenteEmail());
+                coberturaDto.setGrupo(horaAusencia.getGrupo());
+                coberturaDto.setAula(horaAusencia.getAula());
+                coberturaDto.setHora(horaAusencia.getHora());
+                coberturaDto.setFecha(ausencia.getFecha());
+                coberturaDto.setTarea(horaAusencia.getTarea());
+                horaDto.setCobertura(coberturaDto);
             }
+            
+            horaDto.setArchivos(Collections.unmodifiableList(
+                    archivosPorHora.getOrDefault(horaAusencia.getId(), List.of())));
+            
+            ausenciaDto.setHoras(Collections.singletonList(horaDto));
+            
+            // Agregar al mapa agrupado por hora
+            ausenciasPorHora.computeIfAbsent(horaKey, k -> new ArrayList<>()).add(ausenciaDto);
         }
         
         logger.info("Encontradas {} ausencias en {} horas diferentes para fecha {}", 
-                    ausencias.size(), ausenciasPorHora.size(), fecha);
-        return ausenciasPorHora;
+                    ausenciaIds.size(), ausenciasPorHora.size(), fecha);
+        // El mismo objeto se devuelve desde la caché a todas las peticiones: no debe poder modificarse
+        ausenciasPorHora.replaceAll((hora, ausencias) -> Collections.unmodifiableList(ausencias));
+        return Collections.unmodifiableMap(ausenciasPorHora);
+    }
+
+    /**
+     * Replanifica el día de la ausencia (incluye sus horas nuevas y reequilibra
+     * las coberturas aún no validadas del resto de ausencias).
+     *
+     * @return Coberturas de esta ausencia indexadas por ID de hora de ausencia
+     */
+    private Map<Long, CoberturaDTO> asignarCoberturas(Ausencia ausencia) {
+        Map<Long, CoberturaDTO> coberturas = new HashMap<>();
+        for (MotorAsignacionGuardias.Asignacion asignacion : asignacionCoberturasService.replanificarDia(ausencia.getFecha())) {
+            HoraAusencia horaAusencia = asignacion.getHoraAusencia();
+            if (horaAusencia.getAusencia().getId().equals(ausencia.getId())) {
+                coberturas.put(horaAusencia.getId(), convertirCoberturaADto(asignacion));
+            }
+        }
+        return coberturas;
+    }
+
+    /**
+     * Convierte una asignación de cobertura a su DTO de respuesta
+     */
+    private CoberturaDTO convertirCoberturaADto(MotorAsignacionGuardias.Asignacion asignacion) {
+        HoraAusencia horaAusencia = asignacion.getHoraAusencia();
+        Ausencia ausencia = horaAusencia.getAusencia();
+        CoberturaDTO coberturaDto = new CoberturaDTO();
+        coberturaDto.setAusenciaId(ausencia.getId());
+        coberturaDto.setProfesorCubreEmail(asignacion.getProfesorEmail());
+        coberturaDto.setProfesorAusenteEmail(ausencia.getProfesorAusenteEmail());
+        coberturaDto.setGrupo(horaAusencia.getGrupo());
+        coberturaDto.setAula(horaAusencia.getAula());
+        coberturaDto.setHora(horaAusencia.getHora());
+        coberturaDto.setFecha(ausencia.getFecha());
+        coberturaDto.setTarea(horaAusencia.getTarea());
+        return coberturaDto;
+    }
+
+    /**
+     * Convierte los metadatos de un archivo a su DTO de respuesta
+     */
+    private ArchivoDTO convertirArchivoADto(ArchivoHoraAusencia archivo) {
+        ArchivoDTO archivoDto = new ArchivoDTO();
+        archivoDto.setId(archivo.getId());
+        archivoDto.setNombreArchivo(archivo.getNombreArchivo());
+        archivoDto.setTamanio(archivo.getTamanio());
+        archivoDto.setTamanioFormateado(ArchivoDTO.formatFileSize(archivo.getTamanio()));
+        archivoDto.setTipoMime(archivo.getTipoMime());
+        archivoDto.setFechaSubida(archivo.getFechaSubida());
+        archivoDto.setUrlDescarga("/api/ausencias/archivos/" + archivo.getId() + "/download");
+        return archivoDto;
     }
 
     /**
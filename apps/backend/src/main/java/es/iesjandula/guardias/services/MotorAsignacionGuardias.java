@@ -0,0 +1,199 @@
+package es.iesjandula.guardias.services;
+
+import es.iesjandula.guardias.models.DiaSemana;
+import es.iesjandula.guardias.models.HoraAusencia;
+import es.iesjandula.guardias.models.TipoGuardia;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Motor en memoria que reparte las horas sin cubrir de un tramo (fecha, hora)
+ * entre los profesores de guardia, siguiendo el orden de prioridades:
+ * 1) aula de convivencia, 2) grupos problemáticos, 3) grupos normales.
+ *
+ * Para cada hora se elige, entre los profesores aún libres, el que tiene menos guardias
+ * de ese tipo: las del tramo en la instantánea de {@link AlmacenContadoresGuardias} más
+ * las que ya lleva en el {@link Reparto} del día (empate: email ascendente). Así las
+ * guardias de un mismo día se reparten entre los profesores en lugar de recaer siempre
+ * en el mismo. Con los pocos profesores de guardia de un tramo basta un recorrido lineal
+ * sin crear objetos.
+ * No accede a base de datos: recibe todo lo necesario ya cargado.
+ */
+@Service
+public class MotorAsignacionGuardias {
+
+    /**
+     * Calcula el reparto de un tramo.
+     *
+     * @param horasSinCobertura Horas de ausencia del tramo que aún no tienen cobertura
+     * @param profesoresDisponibles Emails (en minúsculas) de los profesores de guardia libres en el tramo
+     * @param contadores Contadores de guardias en memoria
+     * @param reparto Guardias ya repartidas en el día; se le suman las de este tramo
+     * @param dia Día del tramo
+     * @param hora Hora del tramo
+     * @param gruposProblematicos Nombres o abreviaturas de grupos problemáticos en minúsculas
+     * @return Plan con el profesor de convivencia, las asignaciones y las horas que quedan sin cubrir
+     */
+    public PlanTramo planificar(List<HoraAusencia> horasSinCobertura,
+                                List<String> profesoresDisponibles,
+                                AlmacenContadoresGuardias.Instantanea contadores,
+                                Reparto reparto,
+                                DiaSemana dia,
+                                int hora,
+                                Set<String> gruposProblematicos) {
+        Tramo tramo = new Tramo(profesoresDisponibles, contadores, reparto, dia, hora);
+        PlanTramo plan = new PlanTramo(null, new ArrayList<>(), new ArrayList<>());
+
+        // 1. Aula de convivencia (obligatoria en cada tramo)
+        int profesorConvivencia = tramo.elegir(TipoGuardia.CONVIVENCIA);
+        if (profesorConvivencia >= 0) {
+            plan.setProfesorConvivencia(profesoresDisponibles.get(profesorConvivencia));
+        }
+
+        // Separar por tipo manteniendo el orden de entrada
+        List<HoraAusencia> horasProblematicas = new ArrayList<>();
+        List<HoraAusencia> horasNormales = new ArrayList<>();
+        for (HoraAusencia horaAusencia : horasSinCobertura) {
+            if (esGrupoProblematico(horaAusencia, gruposProblematicos)) {
+                horasProblematicas.add(horaAusencia);
+            } else {
+                horasNormales.add(horaAusencia);
+            }
+        }
+
+        // 2. Grupos problemáticos
+        repartir(horasProblematicas, TipoGuardia.PROBLEMATICA, tramo, plan);
+
+        // 3. Grupos normales
+        repartir(horasNormales, TipoGuardia.NORMAL, tramo, plan);
+
+        return plan;
+    }
+
+    /**
+     * Determina si la hora corresponde a un grupo marcado como problemático en horarios
+     */
+    public boolean esGrupoProblematico(HoraAusencia hora, Set<String> gruposProblematicos) {
+        return hora.getGrupo() != null && gruposProblematicos.contains(hora.getGrupo().trim().toLowerCase());
+    }
+
+    private void repartir(List<HoraAusencia> horas, TipoGuardia tipo, Tramo tramo, PlanTramo plan) {
+        for (HoraAusencia hora : horas) {
+            int profesor = tramo.elegir(tipo);
+            if (profesor < 0) {
+                plan.getSinCubrir().add(hora);
+            } else {
+                plan.getAsignaciones().add(new Asignacion(hora, tramo.emails.get(profesor), tipo));
+            }
+        }
+    }
+
+    /**
+     * Guardias repartidas a cada profesor (email en minúsculas) por tipo durante una
+     * replanificación. Se crea una por día replanificado.
+     */
+    public static final class Reparto {
+        private final Map<String, int[]> asignadas = new HashMap<>();
+
+        /**
+         * Cuenta una guardia ya asignada (p. ej. una cobertura validada del mismo día)
+         */
+        public void sumar(String email, TipoGuardia tipo) {
+            de(email)[tipo.ordinal()]++;
+        }
+
+        public int valor(String email, TipoGuardia tipo) {
+            int[] contadores = asignadas.get(email);
+            return contadores != null ? contadores[tipo.ordinal()] : 0;
+        }
+
+        private int[] de(String email) {
+            return asignadas.computeIfAbsent(email, clave -> new int[TipoGuardia.values().length]);
+        }
+    }
+
+    /**
+     * Profesores de guardia de un tramo con su índice en el almacén de contadores
+     */
+    private static final class Tramo {
+        private final List<String> emails;
+        private final int[] profesores;
+        private final int[][] repartidas;
+        private final boolean[] ocupado;
+        private final AlmacenContadoresGuardias.Instantanea contadores;
+        private final DiaSemana dia;
+        private final int hora;
+
+        Tramo(List<String> emails, AlmacenContadoresGuardias.Instantanea contadores, Reparto reparto,
+              DiaSemana dia, int hora) {
+            this.emails = emails;
+            this.profesores = new int[emails.size()];
+            this.repartidas = new int[emails.size()][];
+            this.ocupado = new boolean[emails.size()];
+            this.contadores = contadores;
+            this.dia = dia;
+            this.hora = hora;
+            for (int i = 0; i < profesores.length; i++) {
+                profesores[i] = contadores.indice(emails.get(i));
+                repartidas[i] = reparto.de(emails.get(i));
+            }
+        }
+
+        /**
+         * Elige el profesor libre con menos guardias del tipo (tramo más día) y lo marca como
+         * ocupado, sumándole la guardia en el reparto
+         *
+         * @return Posición del profesor en la lista de disponibles o -1 si no queda ninguno
+         */
+        int elegir(TipoGuardia tipo) {
+            int elegido = -1;
+            int minimo = 0;
+            for (int i = 0; i < profesores.length; i++) {
+                if (ocupado[i]) {
+                    continue;
+                }
+                int valor = contadores.valor(profesores[i], dia, hora, tipo) + repartidas[i][tipo.ordinal()];
+                if (elegido < 0 || valor < minimo
+                        || (valor == minimo && emails.get(i).compareTo(emails.get(elegido)) < 0)) {
+                    elegido = i;
+                    minimo = valor;
+                }
+            }
+            if (elegido >= 0) {
+                ocupado[elegido] = true;
+                repartidas[elegido][tipo.ordinal()]++;
+            }
+            return elegido;
+        }
+    }
+
+    /**
+     * Resultado del reparto de un tramo
+     */
+    @Data
+    @AllArgsConstructor
+    public static class PlanTramo {
+        /** Profesor reservado para el aula de convivencia (null si no hay profesores) */
+        private String profesorConvivencia;
+        private List<Asignacion> asignaciones;
+        private List<HoraAusencia> sinCubrir;
+    }
+
+    /**
+     * Asignación de un profesor a una hora de ausencia
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Asignacion {
+        private HoraAusencia horaAusencia;
+        private String profesorEmail;
+        private TipoGuardia tipoGuardia;
+    }
+}
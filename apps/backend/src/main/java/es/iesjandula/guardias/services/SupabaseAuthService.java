@@ -1,93 +1,97 @@
 package es.iesjandula.guardias.services;
 
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwt.interfaces.ECDSAKeyProvider;
+import com.auth0.jwt.interfaces.RSAKeyProvider;
+import es.iesjandula.guardias.config.CacheConfig;
+import es.iesjandula.guardias.integration.JwksSupabase;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
 
 /**
- * Servicio para integración con Supabase Auth
+ * Servicio para integración con Supabase Auth.
+ * Los tokens se verifican localmente (firma, expiración, emisor, audiencia
+ * "authenticated" y sujeto) sin llamar a Supabase: HS256 con el secreto JWT del proyecto,
+ * o RS256/ES256 con las claves publicadas en su JWKS. Sin supabase.url no hay emisor
+ * con el que comparar y se rechazan todos los tokens. Los claims de los tokens ya
+ * verificados se guardan en una caché acotada indexada por el hash del token hasta que expiran.
  */
 @Service
-@SuppressWarnings({"unchecked", "rawtypes"})
 public class SupabaseAuthService {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(SupabaseAuthService.class);
-    
-    @Value("${supabase.url:}")
-    private String supabaseUrl;
-    
-    @Value("${supabase.key:}")
-    private String supabaseKey;
-    
-    private final RestTemplate restTemplate = new RestTemplate();
-    
+
+    /** Audiencia de los tokens de usuarios con sesión; las claves anon y service_role no la llevan */
+    private static final String AUDIENCIA = "authenticated";
+
+    private final JwksSupabase jwksSupabase;
+    private final Cache tokensVerificados;
+    /** Null si supabase.url no está configurada */
+    private final String emisor;
+    private final String jwtSecret;
+
+    public SupabaseAuthService(JwksSupabase jwksSupabase, CacheManager cacheManager,
+                               @Value("${supabase.url:}") String supabaseUrl,
+                               @Value("${supabase.jwt-secret:}") String jwtSecret) {
+        this.jwksSupabase = jwksSupabase;
+        this.tokensVerificados = cacheManager.getCache(CacheConfig.TOKENS_VERIFICADOS);
+        this.jwtSecret = jwtSecret;
+        if (supabaseUrl == null || supabaseUrl.isBlank()) {
+            this.emisor = null;
+            logger.error("supabase.url no está configurada: se rechazarán todos los tokens");
+        } else {
+            this.emisor = supabaseUrl.replaceAll("/+$", "") + "/auth/v1";
+        }
+    }
+
+    /**
+     * Claims de un token ya verificado y el instante en que deja de ser válido
+     */
+    private record TokenVerificado(Map<String, Object> claims, Instant expira) {
+    }
+
     /**
      * Valida un token de Supabase
      */
     public boolean validarToken(String token) {
-        if (token == null || token.trim().isEmpty()) {
-            return false;
-        }
-        
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(token);
-            headers.set("apikey", supabaseKey);
-            
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-            
-            ResponseEntity<Map> response = restTemplate.exchange(
-                supabaseUrl + "/auth/v1/user",
-                HttpMethod.GET,
-                entity,
-                Map.class
-            );
-            
-            return response.getStatusCode() == HttpStatus.OK;
-            
-        } catch (Exception e) {
-            logger.warn("Error validando token de Supabase: {}", e.getMessage());
-            return false;
-        }
+        return verificar(token) != null;
     }
-    
+
     /**
-     * Obtiene información del usuario desde Supabase
+     * Obtiene información del usuario a partir de los claims del token
+     * (id = sub, email, role, user_metadata...)
      */
     public Map<String, Object> obtenerUsuario(String token) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(token);
-            headers.set("apikey", supabaseKey);
-            
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-            
-            ResponseEntity<Map> response = restTemplate.exchange(
-                supabaseUrl + "/auth/v1/user",
-                HttpMethod.GET,
-                entity,
-                Map.class
-            );
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return response.getBody();
-            }
-            
-        } catch (Exception e) {
-            logger.error("Error obteniendo usuario de Supabase: {}", e.getMessage());
+        TokenVerificado verificado = verificar(token);
+        if (verificado == null) {
+            return new HashMap<>();
         }
-        
-        return new HashMap<>();
+        Map<String, Object> usuario = new HashMap<>(verificado.claims());
+        usuario.put("id", verificado.claims().get("sub"));
+        return usuario;
     }
-    
+
     /**
      * Extrae el email del usuario desde el token
      */
@@ -95,7 +99,7 @@ public class SupabaseAuthService {
         Map<String, Object> usuario = obtenerUsuario(token);
         return (String) usuario.get("email");
     }
-    
+
     /**
      * Verifica si un usuario es administrador
      */
@@ -104,4 +108,117 @@ public class SupabaseAuthService {
         // En una implementación real, esto debería consultar una base de datos
         return email != null && email.toLowerCase().contains("admin");
     }
+
+    /**
+     * Verifica el token localmente, consultando antes la caché de tokens verificados
+     *
+     * @return Token verificado o null si no es válido
+     */
+    private TokenVerificado verificar(String token) {
+        if (token == null || token.trim().isEmpty() || emisor == null) {
+            return null;
+        }
+
+        String clave = hash(token);
+        TokenVerificado cacheado = tokensVerificados.get(clave, TokenVerificado.class);
+        if (cacheado != null) {
+            if (cacheado.expira().isAfter(Instant.now())) {
+                return cacheado;
+            }
+            tokensVerificados.evict(clave);
+            return null;
+        }
+
+        try {
+            DecodedJWT decodificado = JWT.decode(token);
+            Algorithm algoritmo = algoritmoPara(decodificado.getAlgorithm());
+            if (algoritmo == null) {
+                logger.warn("Token con algoritmo no soportado o sin clave configurada: {}", decodificado.getAlgorithm());
+                return null;
+            }
+
+            DecodedJWT jwt = JWT.require(algoritmo)
+                    .acceptLeeway(5)
+                    .withIssuer(emisor)
+                    .withAudience(AUDIENCIA)
+                    .build()
+                    .verify(decodificado);
+            if (jwt.getExpiresAtAsInstant() == null) {
+                logger.warn("Token de Supabase sin fecha de expiración");
+                return null;
+            }
+            if (jwt.getSubject() == null || jwt.getSubject().isBlank()) {
+                logger.warn("Token de Supabase sin sujeto");
+                return null;
+            }
+
+            Map<String, Object> claims = new HashMap<>();
+            for (Map.Entry<String, Claim> claim : jwt.getClaims().entrySet()) {
+                claims.put(claim.getKey(), claim.getValue().as(Object.class));
+            }
+            TokenVerificado verificado = new TokenVerificado(Collections.unmodifiableMap(claims), jwt.getExpiresAtAsInstant());
+            tokensVerificados.put(clave, verificado);
+            return verificado;
+
+        } catch (JWTVerificationException e) {
+            logger.warn("Token de Supabase no válido: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Algorithm algoritmoPara(String nombre) {
+        if (nombre == null) {
+            return null;
+        }
+        switch (nombre) {
+            case "HS256":
+                return jwtSecret == null || jwtSecret.isBlank()
+                        ? null : Algorithm.HMAC256(jwtSecret.getBytes(StandardCharsets.UTF_8));
+            case "RS256":
+                return Algorithm.RSA256(new RSAKeyProvider() {
+                    @Override
+                    public RSAPublicKey getPublicKeyById(String kid) {
+                        return jwksSupabase.getClave(kid) instanceof RSAPublicKey rsa ? rsa : null;
+                    }
+
+                    @Override
+                    public RSAPrivateKey getPrivateKey() {
+                        return null;
+                    }
+
+                    @Override
+                    public String getPrivateKeyId() {
+                        return null;
+                    }
+                });
+            case "ES256":
+                return Algorithm.ECDSA256(new ECDSAKeyProvider() {
+                    @Override
+                    public ECPublicKey getPublicKeyById(String kid) {
+                        return jwksSupabase.getClave(kid) instanceof ECPublicKey ec ? ec : null;
+                    }
+
+                    @Override
+                    public ECPrivateKey getPrivateKey() {
+                        return null;
+                    }
+
+                    @Override
+                    public String getPrivateKeyId() {
+                        return null;
+                    }
+                });
+            default:
+                return null;
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
 }
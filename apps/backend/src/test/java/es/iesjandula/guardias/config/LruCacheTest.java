@@ -0,0 +1,89 @@
+package es.iesjandula.guardias.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LruCacheTest {
+
+    @Test
+    void cargaInvalidadaDuranteLaLecturaNoSeGuarda() {
+        LruCache cache = new LruCache("prueba", 10);
+
+        // La escritura confirma e invalida mientras la lectura aún está cargando
+        String cargado = cache.get("dia", () -> {
+            cache.evict("dia");
+            return "antiguo";
+        });
+
+        assertEquals("antiguo", cargado);
+        assertNull(cache.get("dia"));
+        assertEquals("nuevo", cache.get("dia", () -> "nuevo"));
+        assertEquals("nuevo", cache.get("dia").get());
+    }
+
+    @Test
+    void invalidarOtraClaveNoDescartaLaCarga() {
+        LruCache cache = new LruCache("prueba", 10);
+
+        cache.get("lunes", () -> {
+            cache.evict("martes");
+            return "lunes";
+        });
+
+        assertEquals("lunes", cache.get("lunes").get());
+    }
+
+    @Test
+    void fallosConcurrentesCarganUnaVez() throws Exception {
+        LruCache cache = new LruCache("prueba", 10);
+        AtomicInteger cargas = new AtomicInteger();
+        CountDownLatch cargando = new CountDownLatch(1);
+        CountDownLatch seguir = new CountDownLatch(1);
+
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> primero = hilos.submit(() -> cache.get("dia", () -> {
+                cargas.incrementAndGet();
+                cargando.countDown();
+                seguir.await();
+                return "valor";
+            }));
+            cargando.await();
+            Future<String> segundo = hilos.submit(() -> cache.get("dia", () -> {
+                cargas.incrementAndGet();
+                return "otro";
+            }));
+            // El segundo hilo queda esperando la carga del primero
+            Thread.sleep(100);
+            seguir.countDown();
+
+            assertEquals("valor", primero.get(5, TimeUnit.SECONDS));
+            assertEquals("valor", segundo.get(5, TimeUnit.SECONDS));
+            assertEquals(1, cargas.get());
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    @Test
+    void expulsaLaEntradaMenosUsada() {
+        LruCache cache = new LruCache("prueba", 2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a").get());
+        assertEquals(1, cache.getEvictions());
+    }
+}
@@ -0,0 +1,169 @@
+package es.iesjandula.guardias.services;
+
+import es.iesjandula.guardias.models.ContadorGuardias;
+import es.iesjandula.guardias.models.DiaSemana;
+import es.iesjandula.guardias.models.HoraAusencia;
+import es.iesjandula.guardias.models.TipoGuardia;
+import es.iesjandula.guardias.repositories.ContadorGuardiasRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reparto de un tramo leyendo los contadores del almacén en memoria, frente a la
+ * lectura anterior: una consulta ORDER BY de ContadorGuardiasRepository por tipo de
+ * guardia, contra los mismos contadores en una base de datos H2 en memoria.
+ * Se ejecuta con el método main desde el IDE o con:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=es.iesjandula.guardias.services.AlmacenContadoresGuardiasBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlmacenContadoresGuardiasBenchmark {
+
+    private static final int DE_GUARDIA = 10;
+    private static final int HORA = 3;
+
+    /** Profesores con contadores en la tabla */
+    @Param({"60", "600"})
+    private int profesores;
+
+    private final MotorAsignacionGuardias motor = new MotorAsignacionGuardias();
+    private AlmacenContadoresGuardias.Instantanea contadores;
+    private List<String> disponibles;
+    private List<HoraAusencia> horas;
+    private Set<String> gruposProblematicos;
+    private LocalContainerEntityManagerFactoryBean fabrica;
+    private ContadorGuardiasRepository contadorRepository;
+
+    @Setup
+    public void preparar() {
+        Random aleatorio = new Random(42);
+        List<ContadorGuardias> filas = new ArrayList<>();
+        for (int profesor = 0; profesor < profesores; profesor++) {
+            for (DiaSemana dia : DiaSemana.values()) {
+                for (int hora = 1; hora <= 8; hora++) {
+                    ContadorGuardias fila = new ContadorGuardias();
+                    fila.setProfesorEmail("Profesor" + profesor + "@instituto.edu");
+                    fila.setDiaSemana(dia);
+                    fila.setHora(hora);
+                    fila.setGuardiasNormales(aleatorio.nextInt(20));
+                    fila.setGuardiasProblematicas(aleatorio.nextInt(10));
+                    fila.setGuardiasConvivencia(aleatorio.nextInt(10));
+                    filas.add(fila);
+                }
+            }
+        }
+        AlmacenContadoresGuardias almacen = new AlmacenContadoresGuardias();
+        almacen.cargar(filas, List.of());
+        contadores = almacen.instantanea();
+
+        disponibles = new ArrayList<>();
+        for (int i = 0; i < DE_GUARDIA; i++) {
+            disponibles.add("profesor" + (i * profesores / DE_GUARDIA) + "@instituto.edu");
+        }
+        horas = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            HoraAusencia hora = new HoraAusencia();
+            hora.setHora(HORA);
+            hora.setGrupo(i % 3 == 0 ? "2ESO-C" : "1BACH-" + i);
+            hora.setAula("A" + i);
+            horas.add(hora);
+        }
+        gruposProblematicos = Set.of("2eso-c");
+        prepararBaseDeDatos(filas);
+    }
+
+    /**
+     * Repositorio de Spring Data sobre H2 (modo MySQL) con las mismas filas que el almacén
+     */
+    private void prepararBaseDeDatos(List<ContadorGuardias> filas) {
+        fabrica = new LocalContainerEntityManagerFactoryBean();
+        fabrica.setDataSource(new DriverManagerDataSource(
+                "jdbc:h2:mem:contadores" + profesores + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        fabrica.setPackagesToScan(ContadorGuardias.class.getPackageName());
+        fabrica.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        fabrica.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "create-drop"));
+        fabrica.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = fabrica.getObject();
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        filas.forEach(entityManager::persist);
+        entityManager.getTransaction().commit();
+        entityManager.close();
+
+        contadorRepository = new JpaRepositoryFactory(
+                SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory))
+                .getRepository(ContadorGuardiasRepository.class);
+    }
+
+    @TearDown
+    public void cerrar() {
+        fabrica.destroy();
+    }
+
+    @Benchmark
+    public MotorAsignacionGuardias.PlanTramo planificarTramo() {
+        return motor.planificar(horas, disponibles, contadores, new MotorAsignacionGuardias.Reparto(),
+                DiaSemana.MIERCOLES, HORA, gruposProblematicos);
+    }
+
+    @Benchmark
+    public int leerContadoresDelTramo() {
+        int suma = 0;
+        for (String email : disponibles) {
+            int profesor = contadores.indice(email);
+            for (TipoGuardia tipo : TipoGuardia.values()) {
+                suma += contadores.valor(profesor, DiaSemana.MIERCOLES, HORA, tipo);
+            }
+        }
+        return suma;
+    }
+
+    /**
+     * Lo que leía antes cada tramo: los profesores ordenados por cada contador
+     */
+    @Benchmark
+    public int consultarContadoresDelTramo() {
+        return contadorRepository.findProfesoresConMenosGuardiasNormalesEmails(DiaSemana.MIERCOLES, HORA).size()
+                + contadorRepository.findProfesoresConMenosGuardiasProblematicasEmails(DiaSemana.MIERCOLES, HORA).size()
+                + contadorRepository.findProfesoresConMenosGuardiasConvivenciaEmails(DiaSemana.MIERCOLES, HORA).size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AlmacenContadoresGuardiasBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
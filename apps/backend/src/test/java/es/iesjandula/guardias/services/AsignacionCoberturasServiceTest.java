@@ -0,0 +1,122 @@
+package es.iesjandula.guardias.services;
+
+import es.iesjandula.guardias.integration.HorarioIntegrationService;
+import es.iesjandula.guardias.models.Ausencia;
+import es.iesjandula.guardias.models.Cobertura;
+import es.iesjandula.guardias.models.EstadoCobertura;
+import es.iesjandula.guardias.models.HoraAusencia;
+import es.iesjandula.guardias.models.TipoGuardia;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replanificación de un día: las guardias se equilibran entre los tramos contando las
+ * que ya se han asignado en el mismo día, y las coberturas validadas no se tocan.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replanificacion;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({AsignacionCoberturasService.class, AlmacenContadoresGuardias.class, MotorAsignacionGuardias.class})
+class AsignacionCoberturasServiceTest {
+
+    /** Un miércoles futuro: se replanifica entero */
+    private static final LocalDate FECHA = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.WEDNESDAY));
+
+    @Autowired
+    private AsignacionCoberturasService asignacionCoberturasService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private HorarioIntegrationService horarioIntegrationService;
+
+    @BeforeEach
+    void preparar() {
+        Ausencia ausencia = new Ausencia();
+        ausencia.setProfesorAusenteEmail("ausente@instituto.edu");
+        ausencia.setFecha(FECHA);
+        entityManager.persist(ausencia);
+        for (int hora = 1; hora <= 3; hora++) {
+            HoraAusencia horaAusencia = new HoraAusencia();
+            horaAusencia.setAusencia(ausencia);
+            horaAusencia.setHora(hora);
+            horaAusencia.setGrupo("1ESO-A");
+            horaAusencia.setAula("A1");
+            entityManager.persist(horaAusencia);
+            if (hora == 3) {
+                Cobertura validada = new Cobertura();
+                validada.setHoraAusencia(horaAusencia);
+                validada.setProfesorCubreEmail("carmen@instituto.edu");
+                validada.setTipoGuardia(TipoGuardia.NORMAL);
+                validada.setEstado(EstadoCobertura.VALIDADA);
+                entityManager.persist(validada);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        when(horarioIntegrationService.getGruposProblematicos()).thenReturn(Set.of());
+        when(horarioIntegrationService.getProfesoresGuardiaEnMemoria(eq(3), anyInt())).thenReturn(List.of(
+                Map.of("email", "ana@instituto.edu"),
+                Map.of("email", "blas@instituto.edu"),
+                Map.of("email", "Carmen@instituto.edu")));
+    }
+
+    @Test
+    void equilibraLasGuardiasDelDia() {
+        List<MotorAsignacionGuardias.Asignacion> asignaciones = asignacionCoberturasService.replanificarDia(FECHA);
+
+        // 1ª: convivencia Ana, normal Blas (Carmen ya lleva la validada de 3ª).
+        // 2ª: convivencia Blas (Ana ya la hizo), normal Ana (Carmen sigue con una más)
+        assertEquals(2, asignaciones.size());
+        List<Map<String, Object>> coberturas = jdbcTemplate.queryForList(
+                "SELECT ha.hora, c.profesor_cubre_email, c.estado FROM cobertura c " +
+                "JOIN horas_ausencia ha ON ha.id = c.hora_ausencia_id ORDER BY ha.hora");
+        assertEquals(3, coberturas.size());
+        assertEquals("blas@instituto.edu", coberturas.get(0).get("PROFESOR_CUBRE_EMAIL"));
+        assertEquals("ana@instituto.edu", coberturas.get(1).get("PROFESOR_CUBRE_EMAIL"));
+        assertEquals("carmen@instituto.edu", coberturas.get(2).get("PROFESOR_CUBRE_EMAIL"));
+        assertEquals("VALIDADA", coberturas.get(2).get("ESTADO"));
+    }
+
+    @Test
+    void replanificarDeNuevoNoCambiaNada() {
+        asignacionCoberturasService.replanificarDia(FECHA);
+        List<Map<String, Object>> antes = jdbcTemplate.queryForList(
+                "SELECT id, profesor_cubre_email FROM cobertura ORDER BY id");
+        entityManager.clear();
+
+        asignacionCoberturasService.replanificarDia(FECHA);
+
+        assertEquals(antes, jdbcTemplate.queryForList("SELECT id, profesor_cubre_email FROM cobertura ORDER BY id"));
+    }
+}
@@ -0,0 +1,139 @@
+package es.iesjandula.guardias.services;
+
+import es.iesjandula.guardias.config.CacheConfig;
+import es.iesjandula.guardias.dto.AusenciaResponseDTO;
+import es.iesjandula.guardias.dto.HoraAusenciaConCoberturaDTO;
+import es.iesjandula.guardias.models.ArchivoHoraAusencia;
+import es.iesjandula.guardias.models.Ausencia;
+import es.iesjandula.guardias.models.Cobertura;
+import es.iesjandula.guardias.models.HoraAusencia;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Comprueba que las ausencias de un día se leen con dos sentencias (horas con su ausencia
+ * y cobertura, y archivos del día), sea cual sea el número de ausencias, horas y archivos.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({AusenciaService.class, CacheConfig.class})
+class AusenciaServiceConsultasTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2025, 3, 12);
+
+    @Autowired
+    private AusenciaService ausenciaService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockBean
+    private AsignacionCoberturasService asignacionCoberturasService;
+
+    @MockBean
+    private FileStorageService fileStorageService;
+
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void preparar() {
+        // La caché vive en el contexto compartido: otro test pudo dejar FECHA con datos ya deshechos
+        cacheManager.getCache(CacheConfig.AUSENCIAS_POR_FECHA).clear();
+
+        for (int profesor = 1; profesor <= 4; profesor++) {
+            Ausencia ausencia = new Ausencia();
+            ausencia.setProfesorAusenteEmail("profesor" + profesor + "@instituto.edu");
+            ausencia.setFecha(FECHA);
+            entityManager.persist(ausencia);
+
+            for (int hora = 1; hora <= 3; hora++) {
+                HoraAusencia horaAusencia = new HoraAusencia();
+                horaAusencia.setAusencia(ausencia);
+                horaAusencia.setHora(hora);
+                horaAusencia.setGrupo(profesor + "ESO");
+                horaAusencia.setAula("A" + profesor);
+                horaAusencia.setTarea("Tarea " + hora);
+                entityManager.persist(horaAusencia);
+
+                if (hora != 3) {
+                    Cobertura cobertura = new Cobertura();
+                    cobertura.setHoraAusencia(horaAusencia);
+                    cobertura.setProfesorCubreEmail("guardia" + hora + "@instituto.edu");
+                    entityManager.persist(cobertura);
+                }
+                for (int archivo = 1; archivo <= hora - 1; archivo++) {
+                    entityManager.persist(new ArchivoHoraAusencia(horaAusencia, "tarea" + archivo + ".pdf",
+                            "almacenado" + archivo + ".pdf", "2025/03/12/almacenado" + archivo + ".pdf",
+                            "application/pdf", 1024L));
+                }
+            }
+        }
+
+        // Otro día que no debe aparecer
+        Ausencia otroDia = new Ausencia();
+        otroDia.setProfesorAusenteEmail("profesor1@instituto.edu");
+        otroDia.setFecha(FECHA.plusDays(1));
+        entityManager.persist(otroDia);
+
+        entityManager.flush();
+        entityManager.clear();
+
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+    }
+
+    @Test
+    void ausenciasDelDiaEnDosConsultas() {
+        Map<String, List<AusenciaResponseDTO>> ausencias = ausenciaService.obtenerAusenciasPorFecha(FECHA);
+
+        assertEquals(2, estadisticas.getPrepareStatementCount());
+        assertEquals(3, ausencias.size());
+        assertEquals(4, ausencias.get("1").size());
+
+        HoraAusenciaConCoberturaDTO primera = ausencias.get("1").get(0).getHoras().get(0);
+        assertNotNull(primera.getCobertura());
+        assertEquals("guardia1@instituto.edu", primera.getCobertura().getProfesorCubreEmail());
+        assertEquals(0, primera.getArchivos().size());
+
+        HoraAusenciaConCoberturaDTO tercera = ausencias.get("3").get(0).getHoras().get(0);
+        assertNull(tercera.getCobertura());
+        assertEquals(2, tercera.getArchivos().size());
+        assertEquals("tarea1.pdf", tercera.getArchivos().get(0).getNombreArchivo());
+    }
+
+    @Test
+    void segundaLecturaDesdeLaCache() {
+        ausenciaService.obtenerAusenciasPorFecha(FECHA);
+        estadisticas.clear();
+
+        Map<String, List<AusenciaResponseDTO>> ausencias = ausenciaService.obtenerAusenciasPorFecha(FECHA);
+
+        assertEquals(0, estadisticas.getPrepareStatementCount());
+        assertEquals(3, ausencias.size());
+    }
+}
@@ -0,0 +1,141 @@
+package es.iesjandula.guardias.services;
+
+import es.iesjandula.guardias.models.ContadorGuardias;
+import es.iesjandula.guardias.models.DiaSemana;
+import es.iesjandula.guardias.models.HoraAusencia;
+import es.iesjandula.guardias.models.TipoGuardia;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Reparto de un tramo: orden de prioridades (convivencia, problemáticas, normales),
+ * elección del profesor con menos guardias y desempate por email.
+ */
+class MotorAsignacionGuardiasTest {
+
+    private static final int HORA = 3;
+    private static final Set<String> PROBLEMATICOS = Set.of("2eso-c");
+
+    private final MotorAsignacionGuardias motor = new MotorAsignacionGuardias();
+
+    @Test
+    void convivenciaDespuesProblematicasDespuesNormales() {
+        // La hora normal llega antes que la problemática
+        List<HoraAusencia> horas = List.of(hora("1ESO-A"), hora("2ESO-C"));
+
+        MotorAsignacionGuardias.PlanTramo plan = motor.planificar(horas,
+                List.of("ana@instituto.edu", "blas@instituto.edu", "carmen@instituto.edu"),
+                contadores(List.of(), List.of()), new MotorAsignacionGuardias.Reparto(), DiaSemana.MIERCOLES, HORA, PROBLEMATICOS);
+
+        assertEquals("ana@instituto.edu", plan.getProfesorConvivencia());
+        assertEquals(2, plan.getAsignaciones().size());
+        assertEquals("2ESO-C", plan.getAsignaciones().get(0).getHoraAusencia().getGrupo());
+        assertEquals(TipoGuardia.PROBLEMATICA, plan.getAsignaciones().get(0).getTipoGuardia());
+        assertEquals("blas@instituto.edu", plan.getAsignaciones().get(0).getProfesorEmail());
+        assertEquals(TipoGuardia.NORMAL, plan.getAsignaciones().get(1).getTipoGuardia());
+        assertEquals("carmen@instituto.edu", plan.getAsignaciones().get(1).getProfesorEmail());
+    }
+
+    @Test
+    void eligeElDeMenosGuardiasDelTipoYDesempataPorEmail() {
+        // Ana lleva dos de convivencia en el tramo; Blas y Carmen empatan en normales
+        List<ContadorGuardias> filas = List.of(
+                contador("ana@instituto.edu", 0, 0, 2),
+                contador("blas@instituto.edu", 1, 0, 0),
+                contador("carmen@instituto.edu", 1, 0, 0));
+
+        MotorAsignacionGuardias.PlanTramo plan = motor.planificar(List.of(hora("1ESO-A")),
+                List.of("carmen@instituto.edu", "blas@instituto.edu", "ana@instituto.edu"),
+                contadores(filas, List.of()), new MotorAsignacionGuardias.Reparto(), DiaSemana.MIERCOLES, HORA, PROBLEMATICOS);
+
+        assertEquals("blas@instituto.edu", plan.getProfesorConvivencia());
+        assertEquals("ana@instituto.edu", plan.getAsignaciones().get(0).getProfesorEmail());
+    }
+
+    @Test
+    void lasCoberturasPasadasCuentanComoGuardias() {
+        // Un miércoles anterior Ana ya cubrió una guardia normal a tercera hora
+        LocalDate miercoles = LocalDate.of(2025, 3, 12);
+        List<Object[]> coberturas = new ArrayList<>();
+        coberturas.add(new Object[]{"ana@instituto.edu", miercoles, HORA, TipoGuardia.NORMAL, 1L});
+
+        MotorAsignacionGuardias.PlanTramo plan = motor.planificar(List.of(hora("1ESO-A")),
+                List.of("ana@instituto.edu", "blas@instituto.edu", "carmen@instituto.edu"),
+                contadores(List.of(), coberturas), new MotorAsignacionGuardias.Reparto(), DiaSemana.MIERCOLES, HORA, PROBLEMATICOS);
+
+        assertEquals("ana@instituto.edu", plan.getProfesorConvivencia());
+        assertEquals("blas@instituto.edu", plan.getAsignaciones().get(0).getProfesorEmail());
+    }
+
+    @Test
+    void elRepartoDelDiaEquilibraLosTramos() {
+        List<String> deGuardia = List.of("ana@instituto.edu", "blas@instituto.edu", "carmen@instituto.edu");
+        AlmacenContadoresGuardias.Instantanea contadores = contadores(List.of(), List.of());
+        MotorAsignacionGuardias.Reparto reparto = new MotorAsignacionGuardias.Reparto();
+
+        MotorAsignacionGuardias.PlanTramo primera = motor.planificar(List.of(hora("1ESO-A")), deGuardia,
+                contadores, reparto, DiaSemana.MIERCOLES, 1, PROBLEMATICOS);
+        MotorAsignacionGuardias.PlanTramo segunda = motor.planificar(List.of(hora("1ESO-A")), deGuardia,
+                contadores, reparto, DiaSemana.MIERCOLES, 2, PROBLEMATICOS);
+        MotorAsignacionGuardias.PlanTramo tercera = motor.planificar(List.of(hora("1ESO-A")), deGuardia,
+                contadores, reparto, DiaSemana.MIERCOLES, 3, PROBLEMATICOS);
+
+        // Con los contadores a cero, cada tramo pasa la convivencia al siguiente profesor
+        assertEquals("ana@instituto.edu", primera.getProfesorConvivencia());
+        assertEquals("blas@instituto.edu", segunda.getProfesorConvivencia());
+        assertEquals("carmen@instituto.edu", tercera.getProfesorConvivencia());
+        assertEquals("blas@instituto.edu", primera.getAsignaciones().get(0).getProfesorEmail());
+        assertEquals("ana@instituto.edu", segunda.getAsignaciones().get(0).getProfesorEmail());
+        assertEquals("ana@instituto.edu", tercera.getAsignaciones().get(0).getProfesorEmail());
+        assertEquals(1, reparto.valor("carmen@instituto.edu", TipoGuardia.CONVIVENCIA));
+        assertEquals(2, reparto.valor("ana@instituto.edu", TipoGuardia.NORMAL));
+    }
+
+    @Test
+    void sinProfesoresLibresLasHorasQuedanSinCubrir() {
+        MotorAsignacionGuardias.PlanTramo plan = motor.planificar(List.of(hora("1ESO-A"), hora("2ESO-C")),
+                List.of("ana@instituto.edu"), contadores(List.of(), List.of()), new MotorAsignacionGuardias.Reparto(),
+                DiaSemana.MIERCOLES, HORA, PROBLEMATICOS);
+
+        assertEquals("ana@instituto.edu", plan.getProfesorConvivencia());
+        assertEquals(0, plan.getAsignaciones().size());
+        assertEquals(2, plan.getSinCubrir().size());
+
+        MotorAsignacionGuardias.PlanTramo vacio = motor.planificar(List.of(hora("1ESO-A")), List.of(),
+                contadores(List.of(), List.of()), new MotorAsignacionGuardias.Reparto(), DiaSemana.MIERCOLES, HORA, PROBLEMATICOS);
+        assertNull(vacio.getProfesorConvivencia());
+        assertEquals(1, vacio.getSinCubrir().size());
+    }
+
+    private static AlmacenContadoresGuardias.Instantanea contadores(List<ContadorGuardias> filas,
+                                                                   List<Object[]> coberturas) {
+        AlmacenContadoresGuardias almacen = new AlmacenContadoresGuardias();
+        almacen.cargar(filas, coberturas);
+        return almacen.instantanea();
+    }
+
+    private static ContadorGuardias contador(String email, int normales, int problematicas, int convivencia) {
+        ContadorGuardias contador = new ContadorGuardias();
+        contador.setProfesorEmail(email);
+        contador.setDiaSemana(DiaSemana.MIERCOLES);
+        contador.setHora(HORA);
+        contador.setGuardiasNormales(normales);
+        contador.setGuardiasProblematicas(problematicas);
+        contador.setGuardiasConvivencia(convivencia);
+        return contador;
+    }
+
+    private static HoraAusencia hora(String grupo) {
+        HoraAusencia hora = new HoraAusencia();
+        hora.setHora(HORA);
+        hora.setGrupo(grupo);
+        return hora;
+    }
+}
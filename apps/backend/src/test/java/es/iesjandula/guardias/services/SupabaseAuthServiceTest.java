@@ -0,0 +1,153 @@
+package es.iesjandula.guardias.services;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import es.iesjandula.guardias.config.CacheConfig;
+import es.iesjandula.guardias.integration.JwksSupabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verificación local de tokens de Supabase: firma HS256 y RS256 (JWKS simulado),
+ * expiración, emisor, audiencia y sujeto.
+ */
+class SupabaseAuthServiceTest {
+
+    private static final String URL = "https://proyecto.supabase.co";
+    private static final String EMISOR = URL + "/auth/v1";
+    private static final String SECRETO = "secreto-jwt-de-pruebas-con-longitud-suficiente";
+    private static final String KID = "clave-1";
+
+    private static KeyPair claves;
+
+    @BeforeAll
+    static void generarClaves() throws Exception {
+        KeyPairGenerator generador = KeyPairGenerator.getInstance("RSA");
+        generador.initialize(2048);
+        claves = generador.generateKeyPair();
+    }
+
+    @Test
+    void hs256Valido() {
+        SupabaseAuthService servicio = servicio(URL);
+        String token = token().sign(Algorithm.HMAC256(SECRETO));
+
+        assertTrue(servicio.validarToken(token));
+        assertEquals("usuario-1", servicio.obtenerUsuario(token).get("id"));
+        assertEquals("profesor@instituto.edu", servicio.extraerEmailDeToken(token));
+    }
+
+    @Test
+    void hs256Caducado() {
+        String token = token()
+                .withExpiresAt(Instant.now().minusSeconds(60))
+                .sign(Algorithm.HMAC256(SECRETO));
+
+        assertFalse(servicio(URL).validarToken(token));
+    }
+
+    @Test
+    void hs256ConOtroSecreto() {
+        String token = token().sign(Algorithm.HMAC256("otro-secreto-de-pruebas-con-longitud-suficiente"));
+
+        assertFalse(servicio(URL).validarToken(token));
+    }
+
+    @Test
+    void rs256ConClaveDelJwks() {
+        String token = token()
+                .withKeyId(KID)
+                .sign(Algorithm.RSA256((RSAPublicKey) claves.getPublic(), (RSAPrivateKey) claves.getPrivate()));
+
+        assertTrue(servicio(URL).validarToken(token));
+    }
+
+    @Test
+    void rs256ConKidDesconocido() {
+        String token = token()
+                .withKeyId("clave-retirada")
+                .sign(Algorithm.RSA256((RSAPublicKey) claves.getPublic(), (RSAPrivateKey) claves.getPrivate()));
+
+        assertFalse(servicio(URL).validarToken(token));
+    }
+
+    @Test
+    void emisorDistinto() {
+        String token = token()
+                .withIssuer("https://otro-proyecto.supabase.co/auth/v1")
+                .sign(Algorithm.HMAC256(SECRETO));
+
+        assertFalse(servicio(URL).validarToken(token));
+    }
+
+    @Test
+    void audienciaDistinta() {
+        String token = token()
+                .withAudience("anon")
+                .sign(Algorithm.HMAC256(SECRETO));
+
+        assertFalse(servicio(URL).validarToken(token));
+    }
+
+    @Test
+    void claveAnonSinAudienciaNiSujeto() {
+        String token = JWT.create()
+                .withIssuer(EMISOR)
+                .withClaim("role", "anon")
+                .withExpiresAt(Instant.now().plusSeconds(3600))
+                .sign(Algorithm.HMAC256(SECRETO));
+
+        assertFalse(servicio(URL).validarToken(token));
+    }
+
+    @Test
+    void sinSujeto() {
+        String token = JWT.create()
+                .withIssuer(EMISOR)
+                .withAudience("authenticated")
+                .withExpiresAt(Instant.now().plusSeconds(3600))
+                .sign(Algorithm.HMAC256(SECRETO));
+
+        assertFalse(servicio(URL).validarToken(token));
+    }
+
+    @Test
+    void sinUrlDeSupabaseSeRechazaTodo() {
+        String token = token().sign(Algorithm.HMAC256(SECRETO));
+
+        assertFalse(servicio("").validarToken(token));
+    }
+
+    private static JWTCreator.Builder token() {
+        return JWT.create()
+                .withIssuer(EMISOR)
+                .withAudience("authenticated")
+                .withSubject("usuario-1")
+                .withClaim("email", "profesor@instituto.edu")
+                .withClaim("role", "authenticated")
+                .withExpiresAt(Instant.now().plusSeconds(3600));
+    }
+
+    private static SupabaseAuthService servicio(String url) {
+        JwksSupabase jwks = new JwksSupabase(url, 3600, 60) {
+            @Override
+            public PublicKey getClave(String kid) {
+                return KID.equals(kid) ? claves.getPublic() : null;
+            }
+        };
+        return new SupabaseAuthService(jwks, new ConcurrentMapCacheManager(CacheConfig.TOKENS_VERIFICADOS), url, SECRETO);
+    }
+}
@@ -0,0 +1,25 @@
+package es.iesjandula.timetable.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+/**
+ * Configuración de ETag para las respuestas de lectura masiva y los datos de referencia
+ * (aulas, grupos, asignaturas y tramos), que el proxy del backend revalida con If-None-Match.
+ * El filtro calcula el ETag a partir del cuerpo de la respuesta y devuelve 304
+ * cuando coincide con el If-None-Match del cliente, ahorrando la transferencia.
+ */
+@Configuration
+public class EtagConfig {
+
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> etagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registro = new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registro.addUrlPatterns("/horario/guardia/semana",
+                "/aulas", "/grupos", "/asignaturas", "/tramohorarios");
+        registro.setName("etagFilter");
+        return registro;
+    }
+}
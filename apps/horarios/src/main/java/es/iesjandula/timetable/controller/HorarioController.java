@@ -2,18 +2,24 @@ package es.iesjandula.timetable.controller;
 
 import es.iesjandula.timetable.dto.HorarioProfesorResponse;
 import es.iesjandula.timetable.dto.HorarioDiaResponse;
+import es.iesjandula.timetable.dto.HorarioJson;
 import es.iesjandula.timetable.dto.ProfesorGuardiaResponse;
 import es.iesjandula.timetable.service.HorarioService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.validation.annotation.Validated;
 
+import java.util.List;
+
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Email;
@@ -34,15 +40,17 @@ public class HorarioController {
             description = "Devuelve todas las actividades organizadas por día de la semana con asignatura, grupo, aula y abreviatura."
     )
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Horario obtenido correctamente"),
+        @ApiResponse(responseCode = "200", description = "Horario obtenido correctamente",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = HorarioProfesorResponse.class))),
+        @ApiResponse(responseCode = "304", description = "El horario no ha cambiado desde el ETag indicado"),
         @ApiResponse(responseCode = "404", description = "Profesor no encontrado"),
         @ApiResponse(responseCode = "400", description = "ID de profesor inválido")
     })
-    public ResponseEntity<HorarioProfesorResponse> getHorarioCompleto(
+    public ResponseEntity<byte[]> getHorarioCompleto(
             @Parameter(description = "ID del profesor (debe ser positivo)", required = true, example = "1")
             @PathVariable @Min(value = 1, message = "El ID del profesor debe ser positivo") Long id
     ) {
-        return ResponseEntity.ok(horarioService.getHorarioProfesor(id));
+        return responder(horarioService.getHorarioProfesorJson(id, false));
     }
 
     @GetMapping("/profesor/{id}/dia/{dia}")
@@ -51,18 +59,20 @@ public class HorarioController {
             description = "Devuelve las actividades de un profesor en un día específico (1=lunes, 2=martes...)"
     )
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Horario del día obtenido correctamente"),
+        @ApiResponse(responseCode = "200", description = "Horario del día obtenido correctamente",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = HorarioDiaResponse.class))),
+        @ApiResponse(responseCode = "304", description = "El horario no ha cambiado desde el ETag indicado"),
         @ApiResponse(responseCode = "404", description = "Profesor no encontrado"),
         @ApiResponse(responseCode = "400", description = "Parámetros inválidos")
     })
-    public ResponseEntity<HorarioDiaResponse> getHorarioEnDia(
+    public ResponseEntity<byte[]> getHorarioEnDia(
             @Parameter(description = "ID del profesor (debe ser positivo)", required = true, example = "1")
             @PathVariable @Min(value = 1, message = "El ID del profesor debe ser positivo") Long id,
             @Parameter(description = "Día de la semana (1=Lunes, ..., 5=Viernes)", required = true, example = "1")
             @PathVariable @Min(value = 1, message = "El día debe estar entre 1 y 5") 
                         @Max(value = 5, message = "El día debe estar entre 1 y 5") int dia
     ) {
-        return ResponseEntity.ok(horarioService.getHorarioProfesorEnDia(id, dia));
+        return responder(horarioService.getHorarioProfesorEnDiaJson(id, dia));
     }
 
     @Operation(
@@ -70,15 +80,17 @@ public class HorarioController {
             description = "Devuelve el horario completo sin mostrar actividades de tipo OTRA"
     )
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Horario sin actividades OTRA obtenido correctamente"),
+        @ApiResponse(responseCode = "200", description = "Horario sin actividades OTRA obtenido correctamente",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = HorarioProfesorResponse.class))),
+        @ApiResponse(responseCode = "304", description = "El horario no ha cambiado desde el ETag indicado"),
         @ApiResponse(responseCode = "404", description = "Profesor no encontrado"),
         @ApiResponse(responseCode = "400", description = "ID de profesor inválido")
     })
     @GetMapping("/profesor/{id}/sin-otras")
-    public ResponseEntity<HorarioProfesorResponse> getHorarioSinOtras(
+    public ResponseEntity<byte[]> getHorarioSinOtras(
             @Parameter(description = "ID del profesor (debe ser positivo)", example = "4") 
             @PathVariable @Min(value = 1, message = "El ID del profesor debe ser positivo") Long id) {
-        return ResponseEntity.ok(horarioService.getHorarioProfesorSinOtras(id));
+        return responder(horarioService.getHorarioProfesorJson(id, true));
     }
 
     @Operation(
@@ -86,29 +98,37 @@ public class HorarioController {
             description = "Busca un profesor por email y devuelve su horario completo"
     )
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Horario obtenido correctamente"),
+        @ApiResponse(responseCode = "200", description = "Horario obtenido correctamente",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = HorarioProfesorResponse.class))),
+        @ApiResponse(responseCode = "304", description = "El horario no ha cambiado desde el ETag indicado"),
         @ApiResponse(responseCode = "404", description = "Profesor no encontrado"),
         @ApiResponse(responseCode = "400", description = "Email inválido")
     })
     @GetMapping("/profesor/email")
-    public ResponseEntity<HorarioProfesorResponse> getHorarioPorEmail(
+    public ResponseEntity<byte[]> getHorarioPorEmail(
             @Parameter(description = "Email del profesor", required = true, example = "profesor@iesjandula.es")
             @RequestParam @NotBlank(message = "El email no puede estar vacío") 
                          @Email(message = "El formato del email no es válido") String email) {
-        return ResponseEntity.ok(horarioService.getHorarioProfesorPorEmail(email));
+        return responder(horarioService.getHorarioProfesorJsonPorEmail(email, false));
     }
 
 
     @GetMapping("/profesor/email/{email}/dia/{dia}")
     @Operation(summary = "Obtener el horario de un profesor en un día concreto por email")
-    public ResponseEntity<HorarioDiaResponse> getHorarioEnDiaPorEmail(@PathVariable String email, @PathVariable int dia) {
-        return ResponseEntity.ok(horarioService.getHorarioProfesorEnDiaPorEmail(email, dia));
+    @ApiResponse(responseCode = "200", description = "Horario del día obtenido correctamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = HorarioDiaResponse.class)))
+    public ResponseEntity<byte[]> getHorarioEnDiaPorEmail(@PathVariable String email,
+            @PathVariable @Min(value = 1, message = "El día debe estar entre 1 y 5")
+                        @Max(value = 5, message = "El día debe estar entre 1 y 5") int dia) {
+        return responder(horarioService.getHorarioProfesorEnDiaJsonPorEmail(email, dia));
     }
 
     @GetMapping("/profesor/email/{email}/sin-otras")
     @Operation(summary = "Obtener el horario sin actividades tipo OTRA por email")
-    public ResponseEntity<HorarioProfesorResponse> getHorarioSinOtrasPorEmail(@PathVariable String email) {
-        return ResponseEntity.ok(horarioService.getHorarioProfesorSinOtrasPorEmail(email));
+    @ApiResponse(responseCode = "200", description = "Horario sin actividades OTRA obtenido correctamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = HorarioProfesorResponse.class)))
+    public ResponseEntity<byte[]> getHorarioSinOtrasPorEmail(@PathVariable String email) {
+        return responder(horarioService.getHorarioProfesorJsonPorEmail(email, true));
     }
     
     @GetMapping("/profesor/email/{email}/dia/{dia}/clases")
@@ -131,4 +151,29 @@ public class HorarioController {
             @PathVariable int hora) {
         return ResponseEntity.ok(horarioService.getProfesoresGuardia(dia, hora));
     }
+
+    @GetMapping("/guardia/semana")
+    @Operation(
+            summary = "Obtener los profesores de guardia de toda la semana",
+            description = "Devuelve todos los tramos (día, hora) con sus profesores de guardia en una sola respuesta. " +
+                          "Incluye cabecera ETag: si se envía If-None-Match y el contenido no ha cambiado responde 304"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Matriz de guardias obtenida correctamente"),
+        @ApiResponse(responseCode = "304", description = "La matriz no ha cambiado desde el ETag indicado")
+    })
+    public ResponseEntity<List<ProfesorGuardiaResponse>> getProfesoresGuardiaSemana() {
+        return ResponseEntity.ok(horarioService.getProfesoresGuardiaSemana());
+    }
+
+    /**
+     * Envía un horario ya serializado con su ETag fuerte. Si el If-None-Match de la
+     * petición coincide, Spring responde 304 sin cuerpo.
+     */
+    private ResponseEntity<byte[]> responder(HorarioJson json) {
+        return ResponseEntity.ok()
+                .eTag(json.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json.cuerpo());
+    }
 }
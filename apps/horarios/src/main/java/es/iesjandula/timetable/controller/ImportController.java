@@ -1,32 +1,93 @@
 package es.iesjandula.timetable.controller;
 
-import es.iesjandula.timetable.importer.XmlHorarioImporter;
+import es.iesjandula.timetable.dto.EstadoImportacionDto;
+import es.iesjandula.timetable.importer.TrabajoImportacion;
+import es.iesjandula.timetable.service.ImportacionAsincronaService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/import")
 @Tag(name = "Importación", description = "Importar horarios desde XML")
 public class ImportController {
 
-    private final XmlHorarioImporter importer;
+    private final ImportacionAsincronaService importacionAsincronaService;
 
-    public ImportController(XmlHorarioImporter importer) {
-        this.importer = importer;
+    public ImportController(ImportacionAsincronaService importacionAsincronaService) {
+        this.importacionAsincronaService = importacionAsincronaService;
     }
 
     @PostMapping(value = "/xml", consumes = "multipart/form-data")
-    @Operation(summary = "Importar datos desde un archivo XML de horarios")
-    public ResponseEntity<String> importarXml(@RequestParam("file") MultipartFile file) {
+    @Operation(summary = "Importar datos desde un archivo XML de horarios",
+            description = "Pasa por la misma cola que las importaciones en segundo plano y responde al terminar")
+    public ResponseEntity<String> importarXml(
+            @RequestParam("file") MultipartFile file,
+            @Parameter(description = "Aplicar solo los cambios respecto al horario actual, conservando los contadores de guardias")
+            @RequestParam(value = "incremental", defaultValue = "false") boolean incremental) {
         try {
-            importer.importar(file);
-            return ResponseEntity.ok("✅ XML importado correctamente");
+            TrabajoImportacion trabajo = importacionAsincronaService.importarYEsperar(file, incremental);
+            if (trabajo.getEstado() == TrabajoImportacion.Estado.COMPLETADA) {
+                return ResponseEntity.ok("✅ " + trabajo.getMensaje());
+            }
+            return ResponseEntity.status(500).body("❌ " + (trabajo.getMensaje() != null
+                    ? trabajo.getMensaje() : "Importación cancelada; no se ha modificado el horario"));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body("❌ Hay demasiadas importaciones en cola, inténtelo más tarde");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(500).body("❌ Importación interrumpida");
         } catch (Exception e) {
             return ResponseEntity.status(500).body("❌ Error al importar el XML: " + e.getMessage());
         }
     }
 
+    @PostMapping(value = "/xml/trabajos", consumes = "multipart/form-data")
+    @Operation(summary = "Lanzar la importación de un XML en segundo plano",
+            description = "Devuelve el id del trabajo al momento; su avance se consulta en /import/xml/trabajos/{id}")
+    public ResponseEntity<?> encolarImportacion(
+            @RequestParam("file") MultipartFile file,
+            @Parameter(description = "Aplicar solo los cambios respecto al horario actual, conservando los contadores de guardias")
+            @RequestParam(value = "incremental", defaultValue = "false") boolean incremental) {
+        try {
+            TrabajoImportacion trabajo = importacionAsincronaService.encolar(file, incremental);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header("Location", "/import/xml/trabajos/" + trabajo.getId())
+                    .body(trabajo.toDto());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Hay demasiadas importaciones en cola, inténtelo más tarde"));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "No se pudo encolar la importación: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/xml/trabajos/{id}")
+    @Operation(summary = "Consultar el estado, la fase y las filas procesadas de una importación en segundo plano")
+    public ResponseEntity<EstadoImportacionDto> estadoImportacion(@PathVariable String id) {
+        return importacionAsincronaService.buscar(id)
+                .map(trabajo -> ResponseEntity.ok(trabajo.toDto()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/xml/trabajos/{id}")
+    @Operation(summary = "Cancelar una importación en segundo plano",
+            description = "Si ya está en curso se detiene en el siguiente lote y se deshacen sus cambios. " +
+                    "Responde 409 si ya ha terminado o se está confirmando (sus cambios se conservan)")
+    public ResponseEntity<?> cancelarImportacion(@PathVariable String id) {
+        return importacionAsincronaService.buscar(id)
+                .<ResponseEntity<?>>map(trabajo -> importacionAsincronaService.cancelar(trabajo)
+                        ? ResponseEntity.accepted().body(trabajo.toDto())
+                        : ResponseEntity.status(HttpStatus.CONFLICT).body(trabajo.toDto()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
 }
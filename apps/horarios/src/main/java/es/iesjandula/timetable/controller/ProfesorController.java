@@ -68,26 +68,22 @@ public class ProfesorController {
 
     @PostMapping("/incrementar-guardia-normal/{id}")
     public ResponseEntity<Void> incrementarGuardiaNormal(@PathVariable Long id) {
-        Profesor p = service.incrementarGuardiaRealizada(id);
-        return (p != null) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+        return service.incrementarGuardiaRealizada(id) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
     @PostMapping("/incrementar-guardia-problematica/{id}")
     public ResponseEntity<Void> incrementarGuardiaProblematica(@PathVariable Long id) {
-        Profesor p = service.incrementarGuardiaProblematica(id);
-        return (p != null) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+        return service.incrementarGuardiaProblematica(id) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
     @PostMapping("/decrementar-guardia-normal/{id}")
     public ResponseEntity<Void> decrementarGuardiaNormal(@PathVariable Long id) {
-        Profesor p = service.decrementarGuardiaRealizada(id);
-        return (p != null) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+        return service.decrementarGuardiaRealizada(id) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
     @PostMapping("/decrementar-guardia-problematica/{id}")
     public ResponseEntity<Void> decrementarGuardiaProblematica(@PathVariable Long id) {
-        Profesor p = service.decrementarGuardiaProblematica(id);
-        return (p != null) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+        return service.decrementarGuardiaProblematica(id) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
     // ==================== NUEVOS ENDPOINTS PARA INTEGRACIÓN ====================
@@ -144,14 +140,17 @@ public class ProfesorController {
 
     @PostMapping("/contadores/batch")
     @Operation(summary = "Actualizar múltiples contadores en lote",
-               description = "Actualiza múltiples contadores de guardias para diferentes profesores en una sola operación")
+               description = "Actualiza múltiples contadores de guardias para diferentes profesores en una sola operación. " +
+                             "Devuelve un resultado por profesor con sus totales y los contadores modificados")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Contadores actualizados exitosamente"),
         @ApiResponse(responseCode = "400", description = "Algunos datos de entrada son inválidos"),
+        @ApiResponse(responseCode = "404", description = "Algún email no corresponde a un profesor; " +
+                     "la respuesta los lista en 'emails' y no se aplica ningún cambio"),
         @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     public ResponseEntity<List<ProfesorGuardiaDto>> actualizarContadoresLote(
-            @Valid @RequestBody List<ActualizarContadorDto> contadoresDto) {
+            @Valid @RequestBody List<@Valid ActualizarContadorDto> contadoresDto) {
         
         List<ProfesorGuardiaDto> profesoresActualizados = service.actualizarContadoresLote(contadoresDto);
         return ResponseEntity.ok(profesoresActualizados);
@@ -168,7 +167,7 @@ public class ProfesorController {
     public ResponseEntity<ProfesorGuardiaDto.ContadorDetalle> getContadorEspecifico(
             @Parameter(description = "Email del profesor", example = "juan.perez@instituto.edu")
             @PathVariable String email,
-            @Parameter(description = "Día de la semana (1-7)", example = "1")
+            @Parameter(description = "Día de la semana (1-5)", example = "1")
             @PathVariable Integer dia,
             @Parameter(description = "Hora del día (1-12)", example = "3")
             @PathVariable Integer hora) {
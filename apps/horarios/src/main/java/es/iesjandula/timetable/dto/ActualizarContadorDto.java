@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Email;
 
@@ -21,12 +22,14 @@ public class ActualizarContadorDto {
     private String email;
     
     @NotNull(message = "El día es obligatorio")
-    @Min(value = 1, message = "El día debe ser entre 1 y 7")
-    @Schema(description = "Día de la semana (1=Lunes, 7=Domingo)", example = "1", required = true)
+    @Min(value = 1, message = "El día debe estar entre 1 y 5")
+    @Max(value = ContadoresDiaHora.DIAS, message = "El día debe estar entre 1 y 5")
+    @Schema(description = "Día de la semana (1=Lunes, ..., 5=Viernes)", example = "1", required = true)
     private Integer dia;
     
     @NotNull(message = "La hora es obligatoria")
-    @Min(value = 1, message = "La hora debe ser mayor a 0")
+    @Min(value = 1, message = "La hora debe estar entre 1 y 12")
+    @Max(value = ContadoresDiaHora.HORAS, message = "La hora debe estar entre 1 y 12")
     @Schema(description = "Hora del día (1-12 para horario escolar)", example = "3", required = true)
     private Integer hora;
     
@@ -0,0 +1,101 @@
+package es.iesjandula.timetable.dto;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Contadores detallados de un profesor guardados en un array de tamaño fijo
+ * (DIAS x HORAS x 3 contadores) en lugar de un HashMap con claves "dia-hora".
+ * Se ve como un Map de solo lectura con las mismas claves, así que se serializa
+ * al mismo JSON: {"1-3": {"normales": 2, "problematicas": 1, "convivencia": 0, "total": 3}}.
+ * Solo aparecen los días y horas que tienen contador.
+ */
+public final class ContadoresDiaHora extends AbstractMap<String, ProfesorGuardiaDto.ContadorDetalle> {
+
+    /** Días lectivos (1=Lunes, ..., 5=Viernes) */
+    public static final int DIAS = 5;
+
+    /** Horas como máximo en un día */
+    public static final int HORAS = 12;
+
+    private static final int COLUMNAS = 3;
+
+    private final int[] contadores = new int[DIAS * HORAS * COLUMNAS];
+    private final boolean[] presentes = new boolean[DIAS * HORAS];
+    private int tamano;
+
+    /**
+     * Fija los contadores de un día (1..DIAS) y una hora (1..HORAS). Los días u horas
+     * fuera de rango (filas anteriores a la validación) se ignoran.
+     *
+     * @return false si el día o la hora están fuera de rango
+     */
+    public boolean fijar(int dia, int hora, int normales, int problematicas, int convivencia) {
+        if (dia < 1 || dia > DIAS || hora < 1 || hora > HORAS) {
+            return false;
+        }
+        int posicion = (dia - 1) * HORAS + hora - 1;
+        if (!presentes[posicion]) {
+            presentes[posicion] = true;
+            tamano++;
+        }
+        contadores[posicion * COLUMNAS] = normales;
+        contadores[posicion * COLUMNAS + 1] = problematicas;
+        contadores[posicion * COLUMNAS + 2] = convivencia;
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    @Override
+    public Set<Map.Entry<String, ProfesorGuardiaDto.ContadorDetalle>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, ProfesorGuardiaDto.ContadorDetalle>> iterator() {
+                return new Iterator<>() {
+                    private int posicion = siguiente(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return posicion < presentes.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, ProfesorGuardiaDto.ContadorDetalle> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int actual = posicion;
+                        posicion = siguiente(actual + 1);
+                        return new SimpleImmutableEntry<>(
+                                (actual / HORAS + 1) + "-" + (actual % HORAS + 1),
+                                new ProfesorGuardiaDto.ContadorDetalle(
+                                        contadores[actual * COLUMNAS],
+                                        contadores[actual * COLUMNAS + 1],
+                                        contadores[actual * COLUMNAS + 2]));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return tamano;
+            }
+        };
+    }
+
+    private int siguiente(int desde) {
+        int posicion = desde;
+        while (posicion < presentes.length && !presentes[posicion]) {
+            posicion++;
+        }
+        return posicion;
+    }
+}
@@ -0,0 +1,30 @@
+package es.iesjandula.timetable.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Estado de una importación de XML en segundo plano
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadoImportacionDto {
+    private String id;
+    /** EN_COLA, EN_CURSO, COMPLETADA, FALLIDA o CANCELADA */
+    private String estado;
+    /** Fase en curso (LIMPIEZA, DATOS_REFERENCIA, ACTIVIDADES, COMPARACION...) */
+    private String fase;
+    private boolean incremental;
+    /** Filas procesadas por tabla */
+    private Map<String, Integer> filas;
+    /** Resultado o error al terminar */
+    private String mensaje;
+    private LocalDateTime creado;
+    private LocalDateTime inicio;
+    private LocalDateTime fin;
+}
@@ -0,0 +1,10 @@
+package es.iesjandula.timetable.dto;
+
+/**
+ * Respuesta de horario ya serializada a JSON, con su ETag fuerte
+ *
+ * @param cuerpo JSON en UTF-8 tal cual se envía
+ * @param etag ETag entre comillas calculado sobre el cuerpo
+ */
+public record HorarioJson(byte[] cuerpo, String etag) {
+}
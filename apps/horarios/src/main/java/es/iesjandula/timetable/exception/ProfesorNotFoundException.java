@@ -2,6 +2,9 @@ package es.iesjandula.timetable.exception;
 
 import org.springframework.http.HttpStatus;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Excepción personalizada para cuando un profesor no es encontrado.
  * Proporciona información específica del error y código de estado HTTP.
@@ -9,28 +12,45 @@ import org.springframework.http.HttpStatus;
 public class ProfesorNotFoundException extends RuntimeException {
     
     private final HttpStatus httpStatus;
+
+    /** Emails que no corresponden a ningún profesor (vacío si no se buscaba por email) */
+    private final List<String> emails;
     
     public ProfesorNotFoundException(String message) {
         super(message);
         this.httpStatus = HttpStatus.NOT_FOUND;
+        this.emails = List.of();
     }
     
     public ProfesorNotFoundException(String message, Throwable cause) {
         super(message, cause);
         this.httpStatus = HttpStatus.NOT_FOUND;
+        this.emails = List.of();
     }
     
     public ProfesorNotFoundException(Long profesorId) {
         super("No se encontró profesor con ID: " + profesorId);
         this.httpStatus = HttpStatus.NOT_FOUND;
+        this.emails = List.of();
     }
     
     public ProfesorNotFoundException(String campo, String valor) {
         super("No se encontró profesor con " + campo + ": " + valor);
         this.httpStatus = HttpStatus.NOT_FOUND;
+        this.emails = List.of();
+    }
+
+    public ProfesorNotFoundException(Collection<String> emails) {
+        super("No se encontraron profesores con email: " + String.join(", ", emails));
+        this.httpStatus = HttpStatus.NOT_FOUND;
+        this.emails = List.copyOf(emails);
     }
     
     public HttpStatus getHttpStatus() {
         return httpStatus;
     }
+
+    public List<String> getEmails() {
+        return emails;
+    }
 }
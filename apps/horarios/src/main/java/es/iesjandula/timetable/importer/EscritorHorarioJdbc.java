@@ -0,0 +1,264 @@
+package es.iesjandula.timetable.importer;
+
+import es.iesjandula.timetable.model.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Escritura de la importación de horarios con lotes JDBC multi-fila.
+ * Las entidades solo se usan como filas: se insertan directamente en sus tablas
+ * sin pasar por Hibernate, que no puede agrupar las inserciones de Actividad por
+ * su id IDENTITY. Con rewriteBatchedStatements cada lote viaja como un único INSERT.
+ *
+ * Debe llamarse dentro de la transacción de la importación.
+ */
+@Component
+public class EscritorHorarioJdbc {
+
+    private static final String SQL_AULA =
+            "INSERT INTO aula (id, abreviatura, nombre) VALUES (?, ?, ?)";
+
+    private static final String SQL_GRUPO =
+            "INSERT INTO grupo (id, abreviatura, nombre, es_problematico) VALUES (?, ?, ?, ?)";
+
+    private static final String SQL_ASIGNATURA =
+            "INSERT INTO asignatura (id, abreviatura, nombre, nivel, curso) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SQL_PROFESOR =
+            "INSERT INTO profesor (id, nombre, abreviatura, departamento, email, " +
+            "guardias_realizadas, guardias_problematicas, guardias_convivencia, grupo_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_TRAMO =
+            "INSERT INTO tramo_horario (id, dia_semana, hora_dia, hora_inicio, hora_fin) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SQL_ACTIVIDAD =
+            "INSERT INTO actividad (id, profesor_id, tramo_id, asignatura_id, aula_id, tipo) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_ACTIVIDAD_GRUPO =
+            "INSERT INTO actividad_grupos (actividad_id, grupos_id) VALUES (?, ?)";
+
+    private static final String SQL_ACTUALIZAR_AULA =
+            "UPDATE aula SET abreviatura = ?, nombre = ? WHERE id = ?";
+
+    private static final String SQL_ACTUALIZAR_GRUPO =
+            "UPDATE grupo SET abreviatura = ?, nombre = ?, es_problematico = ? WHERE id = ?";
+
+    private static final String SQL_ACTUALIZAR_ASIGNATURA =
+            "UPDATE asignatura SET abreviatura = ?, nombre = ?, nivel = ?, curso = ? WHERE id = ?";
+
+    // Los contadores de guardias no se tocan
+    private static final String SQL_ACTUALIZAR_PROFESOR =
+            "UPDATE profesor SET nombre = ?, abreviatura = ?, departamento = ?, email = ?, grupo_id = ? WHERE id = ?";
+
+    private static final String SQL_DESVINCULAR_TUTORIA =
+            "UPDATE profesor SET grupo_id = NULL WHERE id = ?";
+
+    private static final String SQL_ACTUALIZAR_TRAMO =
+            "UPDATE tramo_horario SET dia_semana = ?, hora_dia = ?, hora_inicio = ?, hora_fin = ? WHERE id = ?";
+
+    private static final String SQL_ACTUALIZAR_TIPO_ACTIVIDAD =
+            "UPDATE actividad SET tipo = ? WHERE id = ?";
+
+    private static final String SQL_ELIMINAR_GRUPOS_ACTIVIDAD =
+            "DELETE FROM actividad_grupos WHERE actividad_id = ?";
+
+    /** Filas por lote JDBC */
+    static final int TAMANO_LOTE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EscritorHorarioJdbc(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Primer id libre de actividad. Los ids se asignan en la importación para poder
+     * insertar en el mismo lote la actividad y sus grupos.
+     */
+    public long siguienteIdActividad() {
+        Long maximo = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM actividad", Long.class);
+        return (maximo != null ? maximo : 0) + 1;
+    }
+
+    public void insertarAulas(Collection<Aula> aulas) {
+        jdbcTemplate.batchUpdate(SQL_AULA, aulas, TAMANO_LOTE, (ps, aula) -> {
+            ps.setLong(1, aula.getId());
+            ps.setString(2, aula.getAbreviatura());
+            ps.setString(3, aula.getNombre());
+        });
+    }
+
+    public void insertarGrupos(Collection<Grupo> grupos) {
+        jdbcTemplate.batchUpdate(SQL_GRUPO, grupos, TAMANO_LOTE, (ps, grupo) -> {
+            ps.setLong(1, grupo.getId());
+            ps.setString(2, grupo.getAbreviatura());
+            ps.setString(3, grupo.getNombre());
+            ps.setBoolean(4, grupo.isEsProblematico());
+        });
+    }
+
+    public void insertarAsignaturas(Collection<Asignatura> asignaturas) {
+        jdbcTemplate.batchUpdate(SQL_ASIGNATURA, asignaturas, TAMANO_LOTE, (ps, asignatura) -> {
+            ps.setLong(1, asignatura.getId());
+            ps.setString(2, asignatura.getAbreviatura());
+            ps.setString(3, asignatura.getNombre());
+            ps.setString(4, asignatura.getNivel());
+            ps.setString(5, asignatura.getCurso());
+        });
+    }
+
+    /**
+     * Inserta los profesores con su tutoría; los grupos deben estar ya insertados
+     */
+    public void insertarProfesores(Collection<Profesor> profesores) {
+        jdbcTemplate.batchUpdate(SQL_PROFESOR, profesores, TAMANO_LOTE, (ps, profesor) -> {
+            ps.setLong(1, profesor.getId());
+            ps.setString(2, profesor.getNombre());
+            ps.setString(3, profesor.getAbreviatura());
+            ps.setString(4, profesor.getDepartamento());
+            ps.setString(5, profesor.getEmail());
+            ps.setInt(6, profesor.getGuardiasRealizadas());
+            ps.setInt(7, profesor.getGuardiasProblematicas());
+            ps.setInt(8, profesor.getGuardiasConvivencia());
+            ps.setObject(9, profesor.getTutoria() != null ? profesor.getTutoria().getId() : null);
+        });
+    }
+
+    public void insertarTramos(Collection<TramoHorario> tramos) {
+        jdbcTemplate.batchUpdate(SQL_TRAMO, tramos, TAMANO_LOTE, (ps, tramo) -> {
+            ps.setLong(1, tramo.getId());
+            ps.setInt(2, tramo.getDiaSemana());
+            ps.setInt(3, tramo.getHoraDia());
+            ps.setTime(4, Time.valueOf(tramo.getHoraInicio()));
+            ps.setTime(5, Time.valueOf(tramo.getHoraFin()));
+        });
+    }
+
+    /**
+     * Inserta actividades con id ya asignado y sus filas de la tabla de grupos
+     */
+    public void insertarActividades(List<Actividad> actividades) {
+        List<Object[]> grupos = new ArrayList<>();
+        for (Actividad actividad : actividades) {
+            for (Grupo grupo : actividad.getGrupos()) {
+                grupos.add(new Object[]{actividad.getId(), grupo.getId()});
+            }
+        }
+
+        jdbcTemplate.batchUpdate(SQL_ACTIVIDAD, actividades, TAMANO_LOTE, (ps, actividad) -> {
+            ps.setLong(1, actividad.getId());
+            ps.setLong(2, actividad.getProfesor().getId());
+            ps.setLong(3, actividad.getTramo().getId());
+            ps.setLong(4, actividad.getAsignatura().getId());
+            ps.setLong(5, actividad.getAula().getId());
+            ps.setString(6, actividad.getTipo().name());
+        });
+        if (!grupos.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_ACTIVIDAD_GRUPO, grupos);
+        }
+    }
+
+    public void actualizarAulas(Collection<Aula> aulas) {
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_AULA, aulas, TAMANO_LOTE, (ps, aula) -> {
+            ps.setString(1, aula.getAbreviatura());
+            ps.setString(2, aula.getNombre());
+            ps.setLong(3, aula.getId());
+        });
+    }
+
+    public void actualizarGrupos(Collection<Grupo> grupos) {
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_GRUPO, grupos, TAMANO_LOTE, (ps, grupo) -> {
+            ps.setString(1, grupo.getAbreviatura());
+            ps.setString(2, grupo.getNombre());
+            ps.setBoolean(3, grupo.isEsProblematico());
+            ps.setLong(4, grupo.getId());
+        });
+    }
+
+    public void actualizarAsignaturas(Collection<Asignatura> asignaturas) {
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_ASIGNATURA, asignaturas, TAMANO_LOTE, (ps, asignatura) -> {
+            ps.setString(1, asignatura.getAbreviatura());
+            ps.setString(2, asignatura.getNombre());
+            ps.setString(3, asignatura.getNivel());
+            ps.setString(4, asignatura.getCurso());
+            ps.setLong(5, asignatura.getId());
+        });
+    }
+
+    /**
+     * Actualiza los datos del profesor y su tutoría, conservando sus contadores de guardias
+     */
+    public void actualizarProfesores(Collection<Profesor> profesores) {
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_PROFESOR, profesores, TAMANO_LOTE, (ps, profesor) -> {
+            ps.setString(1, profesor.getNombre());
+            ps.setString(2, profesor.getAbreviatura());
+            ps.setString(3, profesor.getDepartamento());
+            ps.setString(4, profesor.getEmail());
+            ps.setObject(5, profesor.getTutoria() != null ? profesor.getTutoria().getId() : null);
+            ps.setLong(6, profesor.getId());
+        });
+    }
+
+    /**
+     * Quita la tutoría de los profesores indicados. La tutoría es única por grupo, así
+     * que hay que liberarla antes de asignarla a otro profesor.
+     */
+    public void desvincularTutorias(Collection<Long> profesorIds) {
+        jdbcTemplate.batchUpdate(SQL_DESVINCULAR_TUTORIA, profesorIds, TAMANO_LOTE, (ps, id) -> ps.setLong(1, id));
+    }
+
+    public void actualizarTramos(Collection<TramoHorario> tramos) {
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_TRAMO, tramos, TAMANO_LOTE, (ps, tramo) -> {
+            ps.setInt(1, tramo.getDiaSemana());
+            ps.setInt(2, tramo.getHoraDia());
+            ps.setTime(3, Time.valueOf(tramo.getHoraInicio()));
+            ps.setTime(4, Time.valueOf(tramo.getHoraFin()));
+            ps.setLong(5, tramo.getId());
+        });
+    }
+
+    public void actualizarTipoActividades(Collection<Actividad> actividades) {
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_TIPO_ACTIVIDAD, actividades, TAMANO_LOTE, (ps, actividad) -> {
+            ps.setString(1, actividad.getTipo().name());
+            ps.setLong(2, actividad.getId());
+        });
+    }
+
+    /**
+     * Elimina actividades junto con sus filas de la tabla de grupos
+     */
+    public void eliminarActividades(Collection<Long> ids) {
+        jdbcTemplate.batchUpdate(SQL_ELIMINAR_GRUPOS_ACTIVIDAD, ids, TAMANO_LOTE, (ps, id) -> ps.setLong(1, id));
+        eliminarPorId("actividad", ids);
+    }
+
+    public void eliminarProfesores(Collection<Long> ids) {
+        eliminarPorId("profesor", ids);
+    }
+
+    public void eliminarGrupos(Collection<Long> ids) {
+        eliminarPorId("grupo", ids);
+    }
+
+    public void eliminarAulas(Collection<Long> ids) {
+        eliminarPorId("aula", ids);
+    }
+
+    public void eliminarAsignaturas(Collection<Long> ids) {
+        eliminarPorId("asignatura", ids);
+    }
+
+    public void eliminarTramos(Collection<Long> ids) {
+        eliminarPorId("tramo_horario", ids);
+    }
+
+    private void eliminarPorId(String tabla, Collection<Long> ids) {
+        jdbcTemplate.batchUpdate("DELETE FROM " + tabla + " WHERE id = ?", ids, TAMANO_LOTE, (ps, id) -> ps.setLong(1, id));
+    }
+}
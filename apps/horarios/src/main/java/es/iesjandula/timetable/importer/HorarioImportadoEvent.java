@@ -0,0 +1,10 @@
+package es.iesjandula.timetable.importer;
+
+/**
+ * Se publica al terminar una importación del XML, dentro de su transacción.
+ * Los oyentes transaccionales lo reciben solo si se confirma.
+ *
+ * @param incremental true si solo se escribieron las diferencias
+ */
+public record HorarioImportadoEvent(boolean incremental) {
+}
@@ -0,0 +1,264 @@
+package es.iesjandula.timetable.importer;
+
+import es.iesjandula.timetable.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalTime;
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * Importación incremental: compara el horario leído del XML con las filas actuales
+ * y solo inserta, actualiza o elimina lo que ha cambiado.
+ *
+ * Aulas, grupos, asignaturas, profesores y tramos se identifican por su id de Séneca.
+ * Las actividades no tienen id natural y se identifican por profesor, tramo,
+ * asignatura, aula y grupos. Los contadores de guardias de los profesores no se
+ * modifican, y los profesores que salen del horario pero tienen historial de
+ * guardias se conservan (sin actividades ni tutoría).
+ *
+ * Debe llamarse dentro de la transacción de la importación.
+ */
+@Component
+public class ImportacionIncremental {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionIncremental.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EscritorHorarioJdbc escritor;
+
+    public ImportacionIncremental(JdbcTemplate jdbcTemplate, EscritorHorarioJdbc escritor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.escritor = escritor;
+    }
+
+    /**
+     * Horario completo leído del XML. Las actividades aún no tienen id.
+     */
+    public record HorarioLeido(Map<Long, Aula> aulas, Map<Long, Grupo> grupos, Map<Long, Asignatura> asignaturas,
+                               Map<Long, Profesor> profesores, Map<Long, TramoHorario> tramos,
+                               List<Actividad> actividades) {
+    }
+
+    /**
+     * Filas cambiadas por una importación incremental
+     */
+    public record Resumen(int insertadas, int actualizadas, int eliminadas) {
+    }
+
+    /**
+     * Aplica a la base de datos las diferencias entre el horario leído y el actual
+     */
+    public Resumen aplicar(HorarioLeido nuevo) {
+        Diferencias<Aula> aulas = comparar(nuevo.aulas(), leerAulas(), Objects::equals);
+        Diferencias<Grupo> grupos = comparar(nuevo.grupos(), leerGrupos(), ImportacionIncremental::mismoGrupo);
+        Diferencias<Asignatura> asignaturas = comparar(nuevo.asignaturas(), leerAsignaturas(), Objects::equals);
+        Diferencias<TramoHorario> tramos = comparar(nuevo.tramos(), leerTramos(), Objects::equals);
+        Map<Long, Profesor> profesoresActuales = leerProfesores();
+        Diferencias<Profesor> profesores = comparar(nuevo.profesores(), profesoresActuales, ImportacionIncremental::mismoProfesor);
+
+        // 1. Datos de referencia nuevos o cambiados (los grupos antes que las tutorías)
+        escritor.insertarAulas(aulas.insertar());
+        escritor.actualizarAulas(aulas.actualizar());
+        escritor.insertarGrupos(grupos.insertar());
+        escritor.actualizarGrupos(grupos.actualizar());
+        escritor.insertarAsignaturas(asignaturas.insertar());
+        escritor.actualizarAsignaturas(asignaturas.actualizar());
+        escritor.insertarTramos(tramos.insertar());
+        escritor.actualizarTramos(tramos.actualizar());
+
+        // 2. Profesores: se liberan antes las tutorías que cambian de profesor
+        List<Long> tutoriasCambiadas = new ArrayList<>();
+        for (Profesor actual : profesoresActuales.values()) {
+            Profesor leido = nuevo.profesores().get(actual.getId());
+            if (actual.getTutoria() != null && (leido == null || !Objects.equals(idTutoria(leido), idTutoria(actual)))) {
+                tutoriasCambiadas.add(actual.getId());
+            }
+        }
+        escritor.desvincularTutorias(tutoriasCambiadas);
+        escritor.insertarProfesores(profesores.insertar());
+        escritor.actualizarProfesores(profesores.actualizar());
+
+        // 3. Actividades
+        int[] actividades = aplicarActividades(nuevo.actividades());
+
+        // 4. Datos de referencia que ya no están en el XML, cuando nada los referencia
+        Set<Long> conHistorial = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM profesor WHERE guardias_realizadas > 0 " +
+                "UNION SELECT profesor_id FROM contador_detallado", Long.class));
+        List<Long> profesoresEliminados = new ArrayList<>(profesores.eliminar());
+        profesoresEliminados.removeIf(conHistorial::contains);
+        if (profesoresEliminados.size() < profesores.eliminar().size()) {
+            log.info("Se conservan {} profesores fuera del horario por tener historial de guardias",
+                    profesores.eliminar().size() - profesoresEliminados.size());
+        }
+        escritor.eliminarProfesores(profesoresEliminados);
+        escritor.eliminarGrupos(grupos.eliminar());
+        escritor.eliminarAulas(aulas.eliminar());
+        escritor.eliminarAsignaturas(asignaturas.eliminar());
+        escritor.eliminarTramos(tramos.eliminar());
+
+        Resumen resumen = new Resumen(
+                aulas.insertar().size() + grupos.insertar().size() + asignaturas.insertar().size()
+                        + tramos.insertar().size() + profesores.insertar().size() + actividades[0],
+                aulas.actualizar().size() + grupos.actualizar().size() + asignaturas.actualizar().size()
+                        + tramos.actualizar().size() + profesores.actualizar().size() + actividades[1],
+                aulas.eliminar().size() + grupos.eliminar().size() + asignaturas.eliminar().size()
+                        + tramos.eliminar().size() + profesoresEliminados.size() + actividades[2]);
+        log.info("Importación incremental: {} filas insertadas, {} actualizadas, {} eliminadas ({} actividades nuevas, {} eliminadas)",
+                resumen.insertadas(), resumen.actualizadas(), resumen.eliminadas(), actividades[0], actividades[2]);
+        return resumen;
+    }
+
+    /**
+     * Empareja las actividades leídas con las actuales por su clave natural
+     *
+     * @return {insertadas, actualizadas, eliminadas}
+     */
+    private int[] aplicarActividades(List<Actividad> leidas) {
+        Map<Long, List<Long>> gruposPorActividad = new HashMap<>();
+        jdbcTemplate.query("SELECT actividad_id, grupos_id FROM actividad_grupos", rs -> {
+            gruposPorActividad.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getLong(2));
+        });
+
+        // Una clave puede repetirse (misma clase desdoblada), de ahí la cola de ids
+        Map<String, Deque<Long>> actualesPorClave = new HashMap<>();
+        Map<Long, String> tipoActual = new HashMap<>();
+        jdbcTemplate.query("SELECT id, profesor_id, tramo_id, asignatura_id, aula_id, tipo FROM actividad", rs -> {
+            long id = rs.getLong("id");
+            String clave = clave(rs.getLong("profesor_id"), rs.getLong("tramo_id"), rs.getLong("asignatura_id"),
+                    rs.getLong("aula_id"), gruposPorActividad.getOrDefault(id, List.of()));
+            actualesPorClave.computeIfAbsent(clave, c -> new ArrayDeque<>()).add(id);
+            tipoActual.put(id, rs.getString("tipo"));
+        });
+
+        List<Actividad> insertar = new ArrayList<>();
+        List<Actividad> actualizar = new ArrayList<>();
+        for (Actividad actividad : leidas) {
+            List<Long> grupos = actividad.getGrupos().stream().map(Grupo::getId).toList();
+            String clave = clave(actividad.getProfesor().getId(), actividad.getTramo().getId(),
+                    actividad.getAsignatura().getId(), actividad.getAula().getId(), grupos);
+            Deque<Long> ids = actualesPorClave.get(clave);
+            Long id = ids != null ? ids.poll() : null;
+            if (id == null) {
+                insertar.add(actividad);
+            } else if (!actividad.getTipo().name().equals(tipoActual.get(id))) {
+                actividad.setId(id);
+                actualizar.add(actividad);
+            }
+        }
+
+        List<Long> eliminar = new ArrayList<>();
+        actualesPorClave.values().forEach(eliminar::addAll);
+
+        escritor.eliminarActividades(eliminar);
+        escritor.actualizarTipoActividades(actualizar);
+        long siguienteId = escritor.siguienteIdActividad();
+        for (Actividad actividad : insertar) {
+            actividad.setId(siguienteId++);
+        }
+        escritor.insertarActividades(insertar);
+        return new int[]{insertar.size(), actualizar.size(), eliminar.size()};
+    }
+
+    private static String clave(long profesorId, long tramoId, long asignaturaId, long aulaId, List<Long> grupos) {
+        StringBuilder clave = new StringBuilder()
+                .append(profesorId).append('|').append(tramoId).append('|')
+                .append(asignaturaId).append('|').append(aulaId).append('|');
+        grupos.stream().sorted().forEach(grupo -> clave.append(grupo).append(','));
+        return clave.toString();
+    }
+
+    /**
+     * Filas a insertar, actualizar y eliminar de una tabla
+     */
+    private record Diferencias<T>(List<T> insertar, List<T> actualizar, List<Long> eliminar) {
+    }
+
+    private static <T> Diferencias<T> comparar(Map<Long, T> nuevos, Map<Long, T> actuales, BiPredicate<T, T> iguales) {
+        List<T> insertar = new ArrayList<>();
+        List<T> actualizar = new ArrayList<>();
+        for (Map.Entry<Long, T> nuevo : nuevos.entrySet()) {
+            T actual = actuales.get(nuevo.getKey());
+            if (actual == null) {
+                insertar.add(nuevo.getValue());
+            } else if (!iguales.test(nuevo.getValue(), actual)) {
+                actualizar.add(nuevo.getValue());
+            }
+        }
+        List<Long> eliminar = new ArrayList<>();
+        for (Long id : actuales.keySet()) {
+            if (!nuevos.containsKey(id)) {
+                eliminar.add(id);
+            }
+        }
+        return new Diferencias<>(insertar, actualizar, eliminar);
+    }
+
+    private static boolean mismoGrupo(Grupo a, Grupo b) {
+        return Objects.equals(a.getAbreviatura(), b.getAbreviatura()) && Objects.equals(a.getNombre(), b.getNombre())
+                && a.isEsProblematico() == b.isEsProblematico();
+    }
+
+    private static boolean mismoProfesor(Profesor a, Profesor b) {
+        return Objects.equals(a.getNombre(), b.getNombre()) && Objects.equals(a.getAbreviatura(), b.getAbreviatura())
+                && Objects.equals(a.getDepartamento(), b.getDepartamento()) && Objects.equals(a.getEmail(), b.getEmail())
+                && Objects.equals(idTutoria(a), idTutoria(b));
+    }
+
+    private static Long idTutoria(Profesor profesor) {
+        return profesor.getTutoria() != null ? profesor.getTutoria().getId() : null;
+    }
+
+    private Map<Long, Aula> leerAulas() {
+        Map<Long, Aula> aulas = new HashMap<>();
+        jdbcTemplate.query("SELECT id, abreviatura, nombre FROM aula", rs -> {
+            aulas.put(rs.getLong("id"), new Aula(rs.getLong("id"), rs.getString("abreviatura"), rs.getString("nombre")));
+        });
+        return aulas;
+    }
+
+    private Map<Long, Grupo> leerGrupos() {
+        Map<Long, Grupo> grupos = new HashMap<>();
+        jdbcTemplate.query("SELECT id, abreviatura, nombre, es_problematico FROM grupo", rs -> {
+            grupos.put(rs.getLong("id"), new Grupo(rs.getLong("id"), rs.getString("abreviatura"),
+                    rs.getString("nombre"), rs.getBoolean("es_problematico"), null));
+        });
+        return grupos;
+    }
+
+    private Map<Long, Asignatura> leerAsignaturas() {
+        Map<Long, Asignatura> asignaturas = new HashMap<>();
+        jdbcTemplate.query("SELECT id, abreviatura, nombre, nivel, curso FROM asignatura", rs -> {
+            asignaturas.put(rs.getLong("id"), new Asignatura(rs.getLong("id"), rs.getString("abreviatura"),
+                    rs.getString("nombre"), rs.getString("nivel"), rs.getString("curso")));
+        });
+        return asignaturas;
+    }
+
+    private Map<Long, TramoHorario> leerTramos() {
+        Map<Long, TramoHorario> tramos = new HashMap<>();
+        jdbcTemplate.query("SELECT id, dia_semana, hora_dia, hora_inicio, hora_fin FROM tramo_horario", rs -> {
+            tramos.put(rs.getLong("id"), new TramoHorario(rs.getLong("id"), rs.getInt("dia_semana"), rs.getInt("hora_dia"),
+                    rs.getObject("hora_inicio", LocalTime.class), rs.getObject("hora_fin", LocalTime.class)));
+        });
+        return tramos;
+    }
+
+    /**
+     * Profesores actuales con solo el id de su tutoría (sin contadores)
+     */
+    private Map<Long, Profesor> leerProfesores() {
+        Map<Long, Profesor> profesores = new HashMap<>();
+        jdbcTemplate.query("SELECT id, nombre, abreviatura, departamento, email, grupo_id FROM profesor", rs -> {
+            long grupoId = rs.getLong("grupo_id");
+            Grupo tutoria = rs.wasNull() ? null : new Grupo(grupoId, null, null, false, null);
+            profesores.put(rs.getLong("id"), new Profesor(rs.getLong("id"), rs.getString("nombre"),
+                    rs.getString("abreviatura"), rs.getString("departamento"), rs.getString("email"), tutoria));
+        });
+        return profesores;
+    }
+}
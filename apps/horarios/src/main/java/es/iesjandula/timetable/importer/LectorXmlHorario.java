@@ -0,0 +1,167 @@
+package es.iesjandula.timetable.importer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector en streaming (StAX) del XML de horarios exportado por Séneca.
+ * Recorre el documento una sola vez y notifica cada elemento a un {@link Manejador}
+ * en cuanto termina de leerlo, sin construir el árbol DOM: la memoria usada no
+ * depende del tamaño del documento.
+ *
+ * La codificación se toma de la declaración XML del propio fichero.
+ */
+public class LectorXmlHorario {
+
+    private static final XMLInputFactory FACTORIA = crearFactoria();
+
+    /**
+     * Receptor de los elementos leídos, en el orden en que aparecen en el documento
+     */
+    public interface Manejador {
+
+        void aula(long id, String abreviatura, String nombre);
+
+        void grupo(long id, String abreviatura, String nombre, boolean problematico);
+
+        void asignatura(long id, String abreviatura, String nombre, String nivel, String curso);
+
+        /**
+         * @param grupoTutoria Grupo del que es tutor principal o null
+         */
+        void profesor(long id, String abreviatura, String nombre, String departamento, String email, Long grupoTutoria);
+
+        /**
+         * @param horaInicio Hora de inicio tal cual viene en el XML (H:mm, puede traer espacios)
+         */
+        void tramo(long id, int dia, String horaInicio, String horaFinal);
+
+        /**
+         * Actividad de un HORARIO_PROF
+         *
+         * @param grupos IDs de GRUPOS_ACTIVIDAD en orden (puede estar vacía)
+         */
+        void actividad(long profesorId, long tramoId, long asignaturaId, long aulaId, List<Long> grupos);
+    }
+
+    /**
+     * Lee el documento notificando cada elemento al manejador
+     */
+    public void leer(InputStream entrada, Manejador manejador) throws XMLStreamException {
+        XMLStreamReader xml = FACTORIA.createXMLStreamReader(entrada);
+        try {
+            Long profesorHorario = null;
+            Long[] actividad = null; // {tramo, asignatura, aula} de la ACTIVIDAD en curso
+            List<Long> gruposActividad = new ArrayList<>();
+
+            while (xml.hasNext()) {
+                int evento = xml.next();
+
+                if (evento == XMLStreamConstants.START_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "AULA" -> {
+                            Long id = parseLongSafe(atributo(xml, "num_int_au"));
+                            if (id != null) {
+                                manejador.aula(id, atributo(xml, "abreviatura").trim(), atributo(xml, "nombre").trim());
+                            }
+                        }
+                        case "GRUPO" -> {
+                            Long id = parseLongSafe(atributo(xml, "num_int_gr"));
+                            if (id != null) {
+                                manejador.grupo(id, atributo(xml, "abreviatura").trim(), atributo(xml, "nombre").trim(),
+                                        Boolean.parseBoolean(atributo(xml, "problematico")));
+                            }
+                        }
+                        case "ASIGNATURA" -> {
+                            Long id = parseLongSafe(atributo(xml, "num_int_as"));
+                            if (id != null) {
+                                manejador.asignatura(id, atributo(xml, "abreviatura").trim(), atributo(xml, "nombre").trim(),
+                                        atributo(xml, "nivel").trim(), atributo(xml, "curso").trim());
+                            }
+                        }
+                        case "PROFESOR" -> {
+                            Long id = parseLongSafe(atributo(xml, "num_int_pr"));
+                            if (id != null) {
+                                manejador.profesor(id, atributo(xml, "abreviatura").trim(), atributo(xml, "nombre").trim(),
+                                        atributo(xml, "nivel").trim(), atributo(xml, "email").trim(),
+                                        parseLongSafe(atributo(xml, "num_gr_tutoria_principal")));
+                            }
+                        }
+                        case "TRAMO" -> {
+                            Long id = parseLongSafe(atributo(xml, "num_tr"));
+                            Integer dia = parseIntSafe(atributo(xml, "numero_dia"));
+                            if (id != null && dia != null) {
+                                manejador.tramo(id, dia, atributo(xml, "hora_inicio"), atributo(xml, "hora_final"));
+                            }
+                        }
+                        case "HORARIO_PROF" -> profesorHorario = parseLongSafe(atributo(xml, "hor_num_int_pr"));
+                        case "ACTIVIDAD" -> {
+                            // Solo interesan las actividades dentro de HORARIO_PROF
+                            if (profesorHorario != null) {
+                                actividad = new Long[]{
+                                        parseLongSafe(atributo(xml, "tramo")),
+                                        parseLongSafe(atributo(xml, "asignatura")),
+                                        parseLongSafe(atributo(xml, "aula"))};
+                                gruposActividad = new ArrayList<>();
+                            }
+                        }
+                        case "GRUPOS_ACTIVIDAD" -> {
+                            if (actividad != null) {
+                                Integer total = parseIntSafe(atributo(xml, "tot_gr_act"));
+                                for (int g = 1; g <= (total != null ? total : 0); g++) {
+                                    Long grupoId = parseLongSafe(atributo(xml, "grupo_" + g));
+                                    if (grupoId != null) {
+                                        gruposActividad.add(grupoId);
+                                    }
+                                }
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                } else if (evento == XMLStreamConstants.END_ELEMENT) {
+                    String nombre = xml.getLocalName();
+                    if ("ACTIVIDAD".equals(nombre) && actividad != null) {
+                        if (actividad[0] != null && actividad[1] != null && actividad[2] != null) {
+                            manejador.actividad(profesorHorario, actividad[0], actividad[1], actividad[2], gruposActividad);
+                        }
+                        actividad = null;
+                    } else if ("HORARIO_PROF".equals(nombre)) {
+                        profesorHorario = null;
+                    }
+                }
+            }
+        } finally {
+            xml.close();
+        }
+    }
+
+    /**
+     * Valor de un atributo o cadena vacía si no existe (como Element.getAttribute en DOM)
+     */
+    private static String atributo(XMLStreamReader xml, String nombre) {
+        String valor = xml.getAttributeValue(null, nombre);
+        return valor != null ? valor : "";
+    }
+
+    private static Long parseLongSafe(String value) {
+        return (value != null && !value.trim().isEmpty()) ? Long.parseLong(value.trim()) : null;
+    }
+
+    private static Integer parseIntSafe(String value) {
+        return (value != null && !value.trim().isEmpty()) ? Integer.parseInt(value.trim()) : null;
+    }
+
+    private static XMLInputFactory crearFactoria() {
+        XMLInputFactory factoria = XMLInputFactory.newInstance();
+        // El XML viene de fuera: sin DTD ni entidades externas
+        factoria.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factoria.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factoria;
+    }
+}
@@ -0,0 +1,41 @@
+package es.iesjandula.timetable.importer;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Receptor del avance de una importación. Permite seguirla desde fuera del hilo
+ * que la ejecuta y cancelarla: la importación comprueba la cancelación entre fases
+ * y entre lotes, y al lanzarse la excepción se deshace su transacción.
+ */
+public interface ProgresoImportacion {
+
+    enum Fase {
+        EN_COLA, LIMPIEZA, DATOS_REFERENCIA, ACTIVIDADES, COMPARACION, NOTIFICACION, FINALIZADA
+    }
+
+    default void fase(Fase fase) {
+    }
+
+    /**
+     * @param tabla Tabla o tipo de fila (aulas, grupos, actividades...)
+     * @param total Filas procesadas hasta ahora
+     */
+    default void filas(String tabla, int total) {
+    }
+
+    /**
+     * @throws CancellationException Si se ha pedido cancelar la importación
+     */
+    default void comprobarCancelacion() {
+    }
+
+    /**
+     * Último punto de cancelación, justo antes de confirmar la transacción. Si no se ha
+     * pedido cancelar, a partir de aquí la importación ya no se puede cancelar.
+     *
+     * @throws CancellationException Si se ha pedido cancelar la importación
+     */
+    default void confirmar() {
+        comprobarCancelacion();
+    }
+}
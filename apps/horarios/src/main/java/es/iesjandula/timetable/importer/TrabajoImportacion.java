@@ -0,0 +1,146 @@
+package es.iesjandula.timetable.importer;
+
+import es.iesjandula.timetable.dto.EstadoImportacionDto;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Importación de XML lanzada en segundo plano. La actualiza el hilo que la ejecuta
+ * y se consulta desde las peticiones de estado.
+ */
+public class TrabajoImportacion implements ProgresoImportacion {
+
+    public enum Estado {
+        EN_COLA, EN_CURSO, COMPLETADA, FALLIDA, CANCELADA
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final boolean incremental;
+    /** XML temporal que importa el trabajo */
+    private final Path fichero;
+    private final LocalDateTime creado = LocalDateTime.now();
+    /** Filas procesadas por tabla; protegido por el monitor de esta instancia */
+    private final Map<String, Integer> filas = new LinkedHashMap<>();
+
+    private volatile Estado estado = Estado.EN_COLA;
+    private volatile Fase fase = Fase.EN_COLA;
+    private volatile boolean cancelacionPedida;
+    /** Pasado el último punto de cancelación; protegido por el monitor de esta instancia */
+    private boolean confirmando;
+    private volatile LocalDateTime inicio;
+    private volatile LocalDateTime fin;
+    private volatile String mensaje;
+    private volatile Future<?> tarea;
+
+    public TrabajoImportacion(boolean incremental, Path fichero) {
+        this.incremental = incremental;
+        this.fichero = fichero;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public Path getFichero() {
+        return fichero;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public boolean isTerminado() {
+        return estado == Estado.COMPLETADA || estado == Estado.FALLIDA || estado == Estado.CANCELADA;
+    }
+
+    public void registrarTarea(Future<?> tarea) {
+        this.tarea = tarea;
+    }
+
+    @Override
+    public void fase(Fase fase) {
+        this.fase = fase;
+    }
+
+    @Override
+    public synchronized void filas(String tabla, int total) {
+        filas.put(tabla, total);
+    }
+
+    @Override
+    public void comprobarCancelacion() {
+        if (cancelacionPedida) {
+            throw new CancellationException("Importación cancelada");
+        }
+    }
+
+    @Override
+    public synchronized void confirmar() {
+        comprobarCancelacion();
+        confirmando = true;
+    }
+
+    /**
+     * Pide la cancelación. Si aún está en cola no llega a ejecutarse; si está en curso
+     * se detiene en la siguiente comprobación y su transacción se deshace.
+     *
+     * @return false si ya había terminado o ya pasó su último punto de cancelación
+     *         (se está confirmando o notificando), porque el horario nuevo se conserva
+     */
+    public synchronized boolean cancelar() {
+        if (isTerminado() || confirmando) {
+            return false;
+        }
+        cancelacionPedida = true;
+        Future<?> enCola = tarea;
+        if (estado == Estado.EN_COLA && enCola != null && enCola.cancel(false)) {
+            terminar(Estado.CANCELADA, "Cancelada antes de empezar");
+        }
+        return true;
+    }
+
+    /**
+     * Espera a que el trabajo termine, sea cual sea su estado final
+     */
+    public void esperar() throws InterruptedException {
+        try {
+            tarea.get();
+        } catch (ExecutionException | CancellationException e) {
+            // El resultado queda en el estado y el mensaje del trabajo
+        }
+    }
+
+    public void iniciar() {
+        inicio = LocalDateTime.now();
+        estado = Estado.EN_CURSO;
+    }
+
+    public void terminar(Estado estadoFinal, String mensajeFinal) {
+        mensaje = mensajeFinal;
+        fin = LocalDateTime.now();
+        if (estadoFinal == Estado.COMPLETADA) {
+            fase = Fase.FINALIZADA;
+        }
+        estado = estadoFinal;
+    }
+
+    public synchronized EstadoImportacionDto toDto() {
+        return new EstadoImportacionDto(id, estado.name(), fase.name(), incremental, new LinkedHashMap<>(filas),
+                mensaje, creado, inicio, fin);
+    }
+}
@@ -3,69 +3,81 @@ package es.iesjandula.timetable.importer;
 
 import es.iesjandula.timetable.model.*;
 import es.iesjandula.timetable.service.*;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
-import org.w3c.dom.*;
-import org.xml.sax.InputSource;
+import org.springframework.transaction.annotation.Transactional;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
+/**
+ * Importa el XML de horarios de Séneca. El documento se lee en streaming con
+ * {@link LectorXmlHorario} y las filas se escriben con lotes JDBC mediante
+ * {@link EscritorHorarioJdbc}: los datos de referencia se acumulan hasta llegar a
+ * los horarios y las actividades se vuelcan cada {@link EscritorHorarioJdbc#TAMANO_LOTE},
+ * así que la memoria no depende del tamaño del fichero.
+ *
+ * Toda la importación va en una transacción: si el XML falla a mitad, no se pierde
+ * el horario anterior.
+ *
+ * El avance se notifica a un {@link ProgresoImportacion}, que también puede cancelarla.
+ * Al terminar se publica un {@link HorarioImportadoEvent}.
+ *
+ * En modo incremental el horario leído se compara con el actual mediante
+ * {@link ImportacionIncremental} y solo se escriben las diferencias; las actividades
+ * se mantienen en memoria hasta el final para poder compararlas.
+ */
 @Component
 public class XmlHorarioImporter {
 
     private static final Logger log = LoggerFactory.getLogger(XmlHorarioImporter.class);
 
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("H:mm");
+    private static final LocalTime INICIO_RECREO = LocalTime.of(11, 0);
+    private static final LocalTime FIN_RECREO = LocalTime.of(11, 30);
+
     private final ProfesorService profesorService;
     private final AsignaturaService asignaturaService;
     private final GrupoService grupoService;
     private final AulaService aulaService;
     private final TramoHorarioService tramoHorarioService;
     private final ActividadService actividadService;
+    private final EscritorHorarioJdbc escritor;
+    private final ImportacionIncremental importacionIncremental;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventos;
+
+    private final LectorXmlHorario lector = new LectorXmlHorario();
 
     public XmlHorarioImporter(ProfesorService profesorService, AsignaturaService asignaturaService,
                               GrupoService grupoService, AulaService aulaService,
-                              TramoHorarioService tramoHorarioService, ActividadService actividadService) {
+                              TramoHorarioService tramoHorarioService, ActividadService actividadService,
+                              EscritorHorarioJdbc escritor, ImportacionIncremental importacionIncremental,
+                              EntityManager entityManager, ApplicationEventPublisher eventos) {
         this.profesorService = profesorService;
         this.asignaturaService = asignaturaService;
         this.grupoService = grupoService;
         this.aulaService = aulaService;
         this.tramoHorarioService = tramoHorarioService;
         this.actividadService = actividadService;
+        this.escritor = escritor;
+        this.importacionIncremental = importacionIncremental;
+        this.entityManager = entityManager;
+        this.eventos = eventos;
     }
 
-    private Long parseLongSafe(String value) {
-        return (value != null && !value.trim().isEmpty()) ? Long.parseLong(value.trim()) : null;
-    }
-
-    private Integer parseIntSafe(String value) {
-        return (value != null && !value.trim().isEmpty()) ? Integer.parseInt(value.trim()) : null;
-    }
-
-    public void importar(MultipartFile file) throws Exception {
-        InputStreamReader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8);
-        InputSource is = new InputSource(reader);
-        DocumentBuilder dBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        Document doc = dBuilder.parse(is);
-
-        doc.getDocumentElement().normalize();
-
-        // Desvincular relaciones entre Profesor y Grupo antes de borrar
-        List<Profesor> profesoresAntesDeBorrar = profesorService.findAll();
-        for (Profesor profesor : profesoresAntesDeBorrar) {
-            profesor.setTutoria(null);
-            profesorService.save(profesor);
-        }
-
-        // Limpieza
+    @Transactional(rollbackFor = Exception.class)
+    public void importar(InputStreamSource xml, ProgresoImportacion progreso) throws Exception {
+        progreso.fase(ProgresoImportacion.Fase.LIMPIEZA);
+        // Limpieza con sentencias masivas en orden de dependencias: el tiempo no depende
+        // del tamaño de las tablas. Primero se desvinculan Profesor y Grupo
+        profesorService.desvincularTutorias();
         actividadService.deleteAll();
         tramoHorarioService.deleteAll();
         aulaService.deleteAll();
@@ -73,163 +85,218 @@ public class XmlHorarioImporter {
         asignaturaService.deleteAll();
         profesorService.deleteAll();
 
-        // AULAS
-        NodeList aulas = doc.getElementsByTagName("AULA");
-        for (int i = 0; i < aulas.getLength(); i++) {
-            Element aulaEl = (Element) aulas.item(i);
-            Long id = parseLongSafe(aulaEl.getAttribute("num_int_au"));
-            if (id == null) continue;
-            Aula aula = new Aula(id, aulaEl.getAttribute("abreviatura").trim(), aulaEl.getAttribute("nombre").trim());
-            aulaService.save(aula);
-        }
-
-        // GRUPOS
-        NodeList grupos = doc.getElementsByTagName("GRUPO");
-        for (int i = 0; i < grupos.getLength(); i++) {
-            Element grupoEl = (Element) grupos.item(i);
-            Long id = parseLongSafe(grupoEl.getAttribute("num_int_gr"));
-            if (id == null) continue;
-
-            String abreviatura = grupoEl.getAttribute("abreviatura").trim();
-            String nombre = grupoEl.getAttribute("nombre").trim();
-            boolean esProblematico = Boolean.parseBoolean(grupoEl.getAttribute("problematico")); // ← aquí
+        // Las sentencias masivas no actualizan el contexto de persistencia
+        entityManager.clear();
 
-            Grupo grupo = new Grupo(id, abreviatura, nombre, esProblematico, null);
-            grupoService.save(grupo);
+        progreso.comprobarCancelacion();
+        progreso.fase(ProgresoImportacion.Fase.DATOS_REFERENCIA);
+        Importacion importacion = new Importacion(false, escritor.siguienteIdActividad(), progreso);
+        try (InputStream entrada = xml.getInputStream()) {
+            lector.leer(entrada, importacion);
         }
+        importacion.terminar();
+        progreso.confirmar();
+        eventos.publishEvent(new HorarioImportadoEvent(false));
 
+        log.info("✅ Importación completa desde XML: {} actividades", importacion.totalActividades);
+    }
 
-        // ASIGNATURAS
-        NodeList asignaturas = doc.getElementsByTagName("ASIGNATURA");
-        for (int i = 0; i < asignaturas.getLength(); i++) {
-            Element asigEl = (Element) asignaturas.item(i);
-            Long id = parseLongSafe(asigEl.getAttribute("num_int_as"));
-            if (id == null) continue;
-            Asignatura asignatura = new Asignatura(id,
-                    asigEl.getAttribute("abreviatura").trim(),
-                    asigEl.getAttribute("nombre").trim(),
-                    asigEl.getAttribute("nivel").trim(),
-                    asigEl.getAttribute("curso").trim());
-            asignaturaService.save(asignatura);
+    /**
+     * Importa el XML modificando solo las filas que cambian respecto al horario actual.
+     * Conserva los contadores de guardias y el historial de los profesores.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public ImportacionIncremental.Resumen importarIncremental(InputStreamSource xml, ProgresoImportacion progreso) throws Exception {
+        progreso.fase(ProgresoImportacion.Fase.DATOS_REFERENCIA);
+        Importacion importacion = new Importacion(true, 0, progreso);
+        try (InputStream entrada = xml.getInputStream()) {
+            lector.leer(entrada, importacion);
         }
+        importacion.terminar();
+
+        progreso.comprobarCancelacion();
+        progreso.fase(ProgresoImportacion.Fase.COMPARACION);
+        ImportacionIncremental.Resumen resumen = importacionIncremental.aplicar(importacion.horarioLeido());
+        progreso.confirmar();
+        eventos.publishEvent(new HorarioImportadoEvent(true));
+        return resumen;
+    }
 
-        // PROFESORES (sin tutoría)
-        NodeList profesores = doc.getElementsByTagName("PROFESOR");
-        for (int i = 0; i < profesores.getLength(); i++) {
-            Element profEl = (Element) profesores.item(i);
-            Long id = parseLongSafe(profEl.getAttribute("num_int_pr"));
-            if (id == null || id == 0) continue;
+    /**
+     * Estado de una importación: acumula las filas que notifica el lector y las
+     * escribe por lotes (o las guarda para compararlas, en modo incremental)
+     */
+    private class Importacion implements LectorXmlHorario.Manejador {
+
+        // Datos de referencia por id, en orden de lectura. Sirven para escribirlos y para
+        // resolver en memoria las referencias de las actividades (sin consultas)
+        private final Map<Long, Aula> aulas = new LinkedHashMap<>();
+        private final Map<Long, Grupo> grupos = new LinkedHashMap<>();
+        private final Map<Long, Asignatura> asignaturas = new LinkedHashMap<>();
+        private final Map<Long, Profesor> profesores = new LinkedHashMap<>();
+        private final Map<Long, TramoHorario> tramos = new LinkedHashMap<>();
+        /** Tipo de actividad de cada asignatura, calculado una vez */
+        private final Map<Long, TipoActividad> tiposPorAsignatura = new HashMap<>();
+        /** Tutorías pendientes (profesor, grupo): se resuelven al escribir, con todos los grupos leídos */
+        private final Map<Long, Long> tutorias = new HashMap<>();
+        /** Contador de horas por día para renumerar los tramos sin el recreo */
+        private final Map<Integer, Integer> contadorHoraPorDia = new HashMap<>();
+
+        private final boolean incremental;
+        private final ProgresoImportacion progreso;
+        private final List<Actividad> actividades = new ArrayList<>(EscritorHorarioJdbc.TAMANO_LOTE);
+        private long siguienteIdActividad;
+        private int totalActividades;
+        private boolean datosEscritos;
+
+        Importacion(boolean incremental, long primerIdActividad, ProgresoImportacion progreso) {
+            this.incremental = incremental;
+            this.progreso = progreso;
+            this.siguienteIdActividad = primerIdActividad;
+        }
 
-            String abreviatura = profEl.getAttribute("abreviatura").trim();
-            String nombre = profEl.getAttribute("nombre").trim();
-            String departamento = profEl.getAttribute("nivel").trim();
-            String email = profEl.getAttribute("email").trim();
+        @Override
+        public void aula(long id, String abreviatura, String nombre) {
+            aulas.put(id, new Aula(id, abreviatura, nombre));
+        }
 
+        @Override
+        public void grupo(long id, String abreviatura, String nombre, boolean problematico) {
+            grupos.put(id, new Grupo(id, abreviatura, nombre, problematico, null));
+        }
 
-            Profesor profesor = new Profesor(id, nombre, abreviatura, departamento, email, 0, 0, 0, null);
-            profesorService.save(profesor);
+        @Override
+        public void asignatura(long id, String abreviatura, String nombre, String nivel, String curso) {
+            asignaturas.put(id, new Asignatura(id, abreviatura, nombre, nivel, curso));
         }
 
-        // Tutoría
-        for (int i = 0; i < profesores.getLength(); i++) {
-            Element el = (Element) profesores.item(i);
-            Long idProf = parseLongSafe(el.getAttribute("num_int_pr"));
-            Long grupoId = parseLongSafe(el.getAttribute("num_gr_tutoria_principal"));
-            if (idProf != null && grupoId != null) {
-                Profesor profesor = profesorService.findById(idProf);
-                Grupo grupoTutoria = grupoService.findById(grupoId);
-                if (profesor != null && grupoTutoria != null) {
-                    profesor.setTutoria(grupoTutoria);
-                    profesorService.save(profesor);
-                }
+        @Override
+        public void profesor(long id, String abreviatura, String nombre, String departamento, String email, Long grupoTutoria) {
+            if (id == 0) {
+                return;
+            }
+            profesores.put(id, new Profesor(id, nombre, abreviatura, departamento, email, 0, 0, 0, null));
+            if (grupoTutoria != null) {
+                tutorias.put(id, grupoTutoria);
             }
         }
 
-        // TRAMOS HORARIOS (renumerados sin recreo)
-        Map<Integer, TramoHorario> tramos = new HashMap<>();
-        NodeList tramoList = doc.getElementsByTagName("TRAMO");
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("H:mm");
-        Map<Integer, Integer> contadorHoraPorDia = new HashMap<>();
-
-        for (int i = 0; i < tramoList.getLength(); i++) {
-            Element el = (Element) tramoList.item(i);
-            Long id = parseLongSafe(el.getAttribute("num_tr"));
-            Integer dia = parseIntSafe(el.getAttribute("numero_dia"));
-
-            if (id == null || dia == null) continue;
+        @Override
+        public void tramo(long id, int dia, String horaInicio, String horaFinal) {
+            LocalTime ini = LocalTime.parse(horaInicio.trim(), FORMATO_HORA);
+            LocalTime fin = LocalTime.parse(horaFinal.trim(), FORMATO_HORA);
 
-            LocalTime ini = LocalTime.parse(el.getAttribute("hora_inicio").trim(), formatter);
-            LocalTime fin = LocalTime.parse(el.getAttribute("hora_final").trim(), formatter);
-
-            if (ini.equals(LocalTime.of(11, 0)) && fin.equals(LocalTime.of(11, 30))) continue;
-
-            int nuevaHoraDia = contadorHoraPorDia.getOrDefault(dia, 0) + 1;
-            contadorHoraPorDia.put(dia, nuevaHoraDia);
+            // Tramos renumerados sin recreo
+            if (ini.equals(INICIO_RECREO) && fin.equals(FIN_RECREO)) {
+                return;
+            }
 
-            TramoHorario tramo = new TramoHorario(id, dia, nuevaHoraDia, ini, fin);
-            tramoHorarioService.save(tramo);
-            tramos.put(id.intValue(), tramo);
+            int nuevaHoraDia = contadorHoraPorDia.merge(dia, 1, Integer::sum);
+            tramos.put(id, new TramoHorario(id, dia, nuevaHoraDia, ini, fin));
         }
 
-        // HORARIO PROFESORES
-        NodeList horariosProfesores = doc.getElementsByTagName("HORARIO_PROF");
-        for (int i = 0; i < horariosProfesores.getLength(); i++) {
-            Element horarioProfEl = (Element) horariosProfesores.item(i);
-            Long idProfesor = parseLongSafe(horarioProfEl.getAttribute("hor_num_int_pr"));
-            if (idProfesor == null) continue;
+        @Override
+        public void actividad(long profesorId, long tramoId, long asignaturaId, long aulaId, List<Long> gruposIds) {
+            escribirDatos();
 
-            Profesor profesor = profesorService.findById(idProfesor);
-            if (profesor == null) continue;
+            Profesor profesor = profesores.get(profesorId);
+            TramoHorario tramo = tramos.get(tramoId);
+            Asignatura asignatura = asignaturas.get(asignaturaId);
+            Aula aula = aulas.get(aulaId);
 
-            NodeList actividades = horarioProfEl.getElementsByTagName("ACTIVIDAD");
-            for (int j = 0; j < actividades.getLength(); j++) {
-                Element actividadEl = (Element) actividades.item(j);
-
-                Long tramoId = parseLongSafe(actividadEl.getAttribute("tramo"));
-                Long asignaturaId = parseLongSafe(actividadEl.getAttribute("asignatura"));
-                Long aulaId = parseLongSafe(actividadEl.getAttribute("aula"));
+            if (profesor == null || tramo == null || asignatura == null || aula == null) {
+                return;
+            }
 
-                if (tramoId == null || asignaturaId == null || aulaId == null) continue;
+            List<Grupo> gruposActividad = new ArrayList<>(gruposIds.size());
+            for (Long grupoId : gruposIds) {
+                Grupo grupo = grupos.get(grupoId);
+                if (grupo != null) {
+                    gruposActividad.add(grupo);
+                }
+            }
 
-                TramoHorario tramo = tramoHorarioService.findById(tramoId);
-                Asignatura asignatura = asignaturaService.findById(asignaturaId);
-                Aula aula = aulaService.findById(aulaId);
+            TipoActividad tipo = tiposPorAsignatura.computeIfAbsent(asignaturaId, id -> tipoActividad(asignatura));
+            // En modo incremental el id se asigna al insertar, solo a las actividades nuevas
+            Long id = incremental ? null : siguienteIdActividad++;
+            actividades.add(new Actividad(id, profesor, tramo, asignatura, aula, tipo, gruposActividad));
+            if (incremental) {
+                if (actividades.size() % EscritorHorarioJdbc.TAMANO_LOTE == 0) {
+                    progreso.filas("actividades", actividades.size());
+                    progreso.comprobarCancelacion();
+                }
+            } else if (actividades.size() == EscritorHorarioJdbc.TAMANO_LOTE) {
+                volcarActividades();
+            }
+        }
 
-                if (tramo == null || asignatura == null || aula == null) continue;
+        void terminar() {
+            escribirDatos();
+            if (incremental) {
+                progreso.filas("actividades", actividades.size());
+            } else {
+                volcarActividades();
+            }
+        }
 
-                TipoActividad tipo;
-                String abrev = asignatura.getAbreviatura().toUpperCase();
-                String nivel = asignatura.getNivel().toUpperCase();
+        ImportacionIncremental.HorarioLeido horarioLeido() {
+            return new ImportacionIncremental.HorarioLeido(aulas, grupos, asignaturas, profesores, tramos, actividades);
+        }
 
-                if (abrev.equals("GUAR")) {
-                    tipo = TipoActividad.GUARDIA;
-                } else if (abrev.contains("CT") || abrev.contains("COOR") || abrev.contains("REDUC") ||
-                        abrev.contains("REUN") || abrev.contains("M55") || abrev.contains("RED") ||
-                        abrev.contains("G30") || abrev.contains("ETCP") || abrev.contains("TOR") || nivel.contains("OTR")) {
-                    tipo = TipoActividad.OTRA;
-                } else {
-                    tipo = TipoActividad.CLASE;
-                }
+        /**
+         * Resuelve las tutorías y escribe los datos de referencia una sola vez, antes de
+         * la primera actividad (en modo incremental se escriben al final, al comparar)
+         */
+        private void escribirDatos() {
+            if (datosEscritos) {
+                return;
+            }
+            datosEscritos = true;
+
+            tutorias.forEach((profesorId, grupoId) -> profesores.get(profesorId).setTutoria(grupos.get(grupoId)));
+            progreso.filas("aulas", aulas.size());
+            progreso.filas("grupos", grupos.size());
+            progreso.filas("asignaturas", asignaturas.size());
+            progreso.filas("profesores", profesores.size());
+            progreso.filas("tramos", tramos.size());
+            progreso.comprobarCancelacion();
+            progreso.fase(ProgresoImportacion.Fase.ACTIVIDADES);
+            if (incremental) {
+                return;
+            }
 
-                List<Grupo> gruposActividad = new ArrayList<>();
-                Element gruposEl = (Element) actividadEl.getElementsByTagName("GRUPOS_ACTIVIDAD").item(0);
-                if (gruposEl != null) {
-                    int totalGrupos = parseIntSafe(gruposEl.getAttribute("tot_gr_act")) != null ? parseIntSafe(gruposEl.getAttribute("tot_gr_act")) : 0;
-                    for (int g = 1; g <= totalGrupos; g++) {
-                        String attr = "grupo_" + g;
-                        Long grupoId = parseLongSafe(gruposEl.getAttribute(attr));
-                        if (grupoId != null) {
-                            Grupo grupo = grupoService.findById(grupoId);
-                            if (grupo != null) gruposActividad.add(grupo);
-                        }
-                    }
-                }
+            escritor.insertarAulas(aulas.values());
+            escritor.insertarGrupos(grupos.values());
+            escritor.insertarAsignaturas(asignaturas.values());
+            escritor.insertarProfesores(profesores.values());
+            escritor.insertarTramos(tramos.values());
+            log.debug("Datos de referencia importados: {} aulas, {} grupos, {} asignaturas, {} profesores, {} tramos",
+                    aulas.size(), grupos.size(), asignaturas.size(), profesores.size(), tramos.size());
+        }
 
-                Actividad actividad = new Actividad(null, profesor, tramo, asignatura, aula, tipo, gruposActividad);
-                actividadService.save(actividad);
+        private void volcarActividades() {
+            if (actividades.isEmpty()) {
+                return;
             }
+            progreso.comprobarCancelacion();
+            escritor.insertarActividades(actividades);
+            totalActividades += actividades.size();
+            actividades.clear();
+            progreso.filas("actividades", totalActividades);
         }
+    }
 
-        log.info("✅ Importación completa desde XML");
+    private static TipoActividad tipoActividad(Asignatura asignatura) {
+        String abrev = asignatura.getAbreviatura().toUpperCase();
+        String nivel = asignatura.getNivel().toUpperCase();
+
+        if (abrev.equals("GUAR")) {
+            return TipoActividad.GUARDIA;
+        } else if (abrev.contains("CT") || abrev.contains("COOR") || abrev.contains("REDUC") ||
+                abrev.contains("REUN") || abrev.contains("M55") || abrev.contains("RED") ||
+                abrev.contains("G30") || abrev.contains("ETCP") || abrev.contains("TOR") || nivel.contains("OTR")) {
+            return TipoActividad.OTRA;
+        }
+        return TipoActividad.CLASE;
     }
 }
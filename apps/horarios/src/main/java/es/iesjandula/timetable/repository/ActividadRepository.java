@@ -3,6 +3,7 @@ package es.iesjandula.timetable.repository;
 import es.iesjandula.timetable.model.Actividad;
 import es.iesjandula.timetable.model.TipoActividad;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,6 +17,20 @@ import java.util.List;
 @Repository
 public interface ActividadRepository extends JpaRepository<Actividad, Long> {
 
+    /**
+     * Fetch joins de las consultas de horario. Grupo.profesor es el lado inverso de
+     * una relación uno a uno y Hibernate no puede cargarlo de forma diferida, así que
+     * también se trae aquí para que cada grupo no lance su propia consulta.
+     */
+    String FETCH_HORARIO =
+            "JOIN FETCH a.profesor p " +
+            "LEFT JOIN FETCH p.tutoria " +
+            "JOIN FETCH a.tramo t " +
+            "LEFT JOIN FETCH a.asignatura " +
+            "LEFT JOIN FETCH a.aula " +
+            "LEFT JOIN FETCH a.grupos g " +
+            "LEFT JOIN FETCH g.profesor ";
+
     /**
      * Busca todas las actividades asociadas a un profesor por su ID.
      * OPTIMIZADO: Query específica en lugar de findAll() + filtro
@@ -28,6 +43,16 @@ public interface ActividadRepository extends JpaRepository<Actividad, Long> {
            "ORDER BY a.tramo.diaSemana ASC, a.tramo.horaDia ASC")
     List<Actividad> findByProfesorId(@Param("profesorId") Long profesorId);
     
+    /**
+     * Horario completo de todos los profesores en una sola consulta.
+     * ÚTIL: Para construir el índice de horarios en memoria
+     *
+     * @return lista de actividades ordenadas por profesor, día y hora
+     */
+    @Query("SELECT a FROM Actividad a " + FETCH_HORARIO +
+           "ORDER BY p.id ASC, t.diaSemana ASC, t.horaDia ASC")
+    List<Actividad> findHorarioCompleto();
+
     /**
      * Busca actividades de un profesor en un día específico.
      * OPTIMIZADO: Evita cargar actividades innecesarias
@@ -98,4 +123,12 @@ public interface ActividadRepository extends JpaRepository<Actividad, Long> {
            "ORDER BY a.tramo.diaSemana ASC, a.tramo.horaDia ASC")
     List<Actividad> findByProfesorIdExcludingTipo(@Param("profesorId") Long profesorId, 
                                                   @Param("tipoExcluido") TipoActividad tipoExcluido);
+
+    /**
+     * Vacía la tabla de grupos de las actividades con una sola sentencia.
+     * Necesario antes de deleteAllInBatch, que no toca la tabla de la relación.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM actividad_grupos", nativeQuery = true)
+    int deleteAllGruposActividad();
 }
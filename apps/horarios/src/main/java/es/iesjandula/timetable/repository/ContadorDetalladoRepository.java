@@ -3,10 +3,12 @@ package es.iesjandula.timetable.repository;
 import es.iesjandula.timetable.model.ContadorDetallado;
 import es.iesjandula.timetable.model.Profesor;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,6 +33,35 @@ public interface ContadorDetalladoRepository extends JpaRepository<ContadorDetal
      */
     List<ContadorDetallado> findByProfesor(Profesor profesor);
 
+    /**
+     * Obtiene todos los contadores de varios profesores en una sola consulta
+     */
+    List<ContadorDetallado> findByProfesorIn(Collection<Profesor> profesores);
+
+    /**
+     * Valores de todos los contadores agrupados por profesor, sin cargar entidades:
+     * [profesorId, diaSemana, horaDia, guardiasNormales, guardiasProblematicas, guardiasConvivencia]
+     */
+    @Query("SELECT cd.profesor.id, cd.diaSemana, cd.horaDia, " +
+           "cd.guardiasNormales, cd.guardiasProblematicas, cd.guardiasConvivencia " +
+           "FROM ContadorDetallado cd ORDER BY cd.profesor.id, cd.diaSemana, cd.horaDia")
+    List<Object[]> findValoresOrdenadosPorProfesor();
+
+    /**
+     * Un contador de un profesor con los totales actuales del profesor en una sola consulta:
+     * [profesor, guardiasRealizadas, guardiasProblematicas, guardiasNormales del contador,
+     * guardiasProblematicas del contador, guardiasConvivencia del contador, total de convivencia].
+     * Los totales se leen como columnas y no de la entidad, que puede estar ya cargada
+     */
+    @Query("SELECT p, COALESCE(p.guardiasRealizadas, 0), COALESCE(p.guardiasProblematicas, 0), " +
+           "cd.guardiasNormales, cd.guardiasProblematicas, cd.guardiasConvivencia, " +
+           "(SELECT COALESCE(SUM(c.guardiasConvivencia), 0) FROM ContadorDetallado c WHERE c.profesor = p) " +
+           "FROM ContadorDetallado cd JOIN cd.profesor p " +
+           "WHERE p.id = :profesorId AND cd.diaSemana = :diaSemana AND cd.horaDia = :horaDia")
+    List<Object[]> findContadorConTotales(@Param("profesorId") Long profesorId,
+                                          @Param("diaSemana") Integer diaSemana,
+                                          @Param("horaDia") Integer horaDia);
+
     /**
      * Obtiene todos los contadores de un profesor por email
      */
@@ -80,4 +111,40 @@ public interface ContadorDetalladoRepository extends JpaRepository<ContadorDetal
      */
     @Query("DELETE FROM ContadorDetallado cd WHERE cd.profesor.email = :email")
     void deleteByProfesorEmail(@Param("email") String email);
+
+    /**
+     * Suma cantidades al contador de un profesor en un día y hora, creándolo si no existe.
+     * ATÓMICO: Upsert en una sola sentencia sobre la clave única (profesor_id, dia_semana, hora_dia)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO contador_detallado " +
+                   "(profesor_id, dia_semana, hora_dia, guardias_normales, guardias_problematicas, guardias_convivencia) " +
+                   "VALUES (:profesorId, :dia, :hora, :normales, :problematicas, :convivencia) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "guardias_normales = guardias_normales + :normales, " +
+                   "guardias_problematicas = guardias_problematicas + :problematicas, " +
+                   "guardias_convivencia = guardias_convivencia + :convivencia",
+           nativeQuery = true)
+    int sumarContador(@Param("profesorId") Long profesorId, @Param("dia") int dia, @Param("hora") int hora,
+                      @Param("normales") int normales, @Param("problematicas") int problematicas,
+                      @Param("convivencia") int convivencia);
+
+    /**
+     * Fija los valores del contador de un profesor en un día y hora, creándolo si no existe.
+     * Un valor null deja la columna como está (0 si el contador es nuevo).
+     * ATÓMICO: Upsert en una sola sentencia sobre la clave única (profesor_id, dia_semana, hora_dia).
+     * Vacía el contexto de persistencia para que no quede el valor anterior cargado.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO contador_detallado " +
+                   "(profesor_id, dia_semana, hora_dia, guardias_normales, guardias_problematicas, guardias_convivencia) " +
+                   "VALUES (:profesorId, :dia, :hora, COALESCE(:normales, 0), COALESCE(:problematicas, 0), COALESCE(:convivencia, 0)) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "guardias_normales = COALESCE(:normales, guardias_normales), " +
+                   "guardias_problematicas = COALESCE(:problematicas, guardias_problematicas), " +
+                   "guardias_convivencia = COALESCE(:convivencia, guardias_convivencia)",
+           nativeQuery = true)
+    int fijarContador(@Param("profesorId") Long profesorId, @Param("dia") int dia, @Param("hora") int hora,
+                      @Param("normales") Integer normales, @Param("problematicas") Integer problematicas,
+                      @Param("convivencia") Integer convivencia);
 }
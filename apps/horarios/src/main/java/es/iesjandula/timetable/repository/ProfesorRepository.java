@@ -1,11 +1,15 @@
 package es.iesjandula.timetable.repository;
 
 import es.iesjandula.timetable.model.Profesor;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +26,30 @@ public interface ProfesorRepository extends JpaRepository<Profesor, Long> {
      */
     @Query("SELECT p FROM Profesor p WHERE LOWER(p.email) = LOWER(:email)")
     Optional<Profesor> findByEmail(@Param("email") String email);
+
+    /**
+     * Id del profesor con ese email (case-insensitive), sin cargar la entidad
+     */
+    @Query("SELECT p.id FROM Profesor p WHERE LOWER(p.email) = LOWER(:email)")
+    Optional<Long> findIdByEmail(@Param("email") String email);
+
+    /**
+     * Busca un profesor por email (case-insensitive) bloqueando su fila hasta el final
+     * de la transacción.
+     * ÚTIL: Para serializar las actualizaciones de contadores de un mismo profesor
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Profesor p WHERE LOWER(p.email) = LOWER(:email)")
+    Optional<Profesor> findByEmailParaActualizar(@Param("email") String email);
+
+    /**
+     * Busca varios profesores por email (en minúsculas) bloqueando sus filas hasta el final
+     * de la transacción.
+     * ÚTIL: Para actualizar contadores en lote con una sola consulta
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Profesor p WHERE LOWER(p.email) IN :emails ORDER BY p.id ASC")
+    List<Profesor> findByEmailsParaActualizar(@Param("emails") Collection<String> emails);
     
     /**
      * Busca profesores por nombre parcial (case-insensitive).
@@ -74,4 +102,54 @@ public interface ProfesorRepository extends JpaRepository<Profesor, Long> {
            "LOWER(p.email) LIKE LOWER(CONCAT('%', :texto, '%')) " +
            "ORDER BY p.nombre ASC")
     List<Profesor> findByNombreOrEmailContaining(@Param("texto") String texto);
+
+    /**
+     * Todos los profesores con su tutoría en una sola consulta, ordenados por id.
+     * ÚTIL: Para construir el índice de horarios en memoria
+     */
+    @Query("SELECT p FROM Profesor p LEFT JOIN FETCH p.tutoria ORDER BY p.id ASC")
+    List<Profesor> findAllConTutoria();
+
+    /**
+     * Quita la tutoría a todos los profesores con una sola sentencia.
+     * ÚTIL: Para poder borrar los grupos al reimportar el horario
+     */
+    @Modifying
+    @Query("UPDATE Profesor p SET p.tutoria = null WHERE p.tutoria IS NOT NULL")
+    int desvincularTutorias();
+
+    /**
+     * Suma (o resta, con valores negativos) a los contadores globales de un profesor.
+     * ATÓMICO: Una sola sentencia sin leer antes el profesor; no se pierden incrementos concurrentes
+     *
+     * @return Filas modificadas (0 si el profesor no existe)
+     */
+    @Modifying
+    @Query("UPDATE Profesor p SET " +
+           "p.guardiasRealizadas = COALESCE(p.guardiasRealizadas, 0) + :realizadas, " +
+           "p.guardiasProblematicas = COALESCE(p.guardiasProblematicas, 0) + :problematicas " +
+           "WHERE p.id = :id")
+    int sumarGuardias(@Param("id") Long id, @Param("realizadas") int realizadas,
+                      @Param("problematicas") int problematicas);
+
+    /**
+     * Resta una guardia realizada (y una problemática si problematicas = 1) solo si
+     * ningún contador queda negativo.
+     * ATÓMICO: La comprobación y la resta van en la misma sentencia
+     *
+     * @return Filas modificadas (0 si el profesor no existe o no tiene guardias que restar)
+     */
+    @Modifying
+    @Query("UPDATE Profesor p SET " +
+           "p.guardiasRealizadas = p.guardiasRealizadas - 1, " +
+           "p.guardiasProblematicas = p.guardiasProblematicas - :problematicas " +
+           "WHERE p.id = :id AND p.guardiasRealizadas > 0 AND p.guardiasProblematicas >= :problematicas")
+    int restarGuardia(@Param("id") Long id, @Param("problematicas") int problematicas);
+
+    /**
+     * Pone a cero los contadores globales de un profesor
+     */
+    @Modifying
+    @Query("UPDATE Profesor p SET p.guardiasRealizadas = 0, p.guardiasProblematicas = 0 WHERE p.id = :id")
+    int reiniciarGuardias(@Param("id") Long id);
 }
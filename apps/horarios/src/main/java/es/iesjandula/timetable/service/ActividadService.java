@@ -3,6 +3,7 @@ package es.iesjandula.timetable.service;
 import es.iesjandula.timetable.model.Actividad;
 import es.iesjandula.timetable.repository.ActividadRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,8 +32,13 @@ public class ActividadService {
         return repository.save(actividad);
     }
 
+    /**
+     * Borra todas las actividades y sus grupos con dos sentencias, sin cargarlas
+     */
+    @Transactional
     public void deleteAll() {
-        repository.deleteAll();
+        repository.deleteAllGruposActividad();
+        repository.deleteAllInBatch();
     }
 
     /**
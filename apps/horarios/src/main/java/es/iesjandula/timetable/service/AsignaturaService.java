@@ -26,7 +26,8 @@ public class AsignaturaService {
     public Asignatura save(Asignatura asignatura) { return repository.save(asignatura); }
 
     public void deleteAll() {
-        repository.deleteAll();
+        // Un solo DELETE, sin cargar las entidades
+        repository.deleteAllInBatch();
     }
 
 }
@@ -26,7 +26,8 @@ public class AulaService {
     public Aula save(Aula aula) { return repository.save(aula); }
 
     public void deleteAll() {
-        repository.deleteAll();
+        // Un solo DELETE, sin cargar las entidades
+        repository.deleteAllInBatch();
     }
 
 }
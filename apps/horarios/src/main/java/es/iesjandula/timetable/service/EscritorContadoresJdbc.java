@@ -0,0 +1,71 @@
+package es.iesjandula.timetable.service;
+
+import es.iesjandula.timetable.model.ContadorDetallado;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Escritura en lote de contadores de guardias con JDBC. Cada llamada envía todas
+ * las filas en un único lote; con rewriteBatchedStatements viaja como una sola sentencia.
+ *
+ * Debe llamarse dentro de la transacción que tiene bloqueadas las filas de los profesores.
+ */
+@Component
+public class EscritorContadoresJdbc {
+
+    private static final String SQL_CONTADOR =
+            "INSERT INTO contador_detallado " +
+            "(profesor_id, dia_semana, hora_dia, guardias_normales, guardias_problematicas, guardias_convivencia) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE guardias_normales = ?, guardias_problematicas = ?, guardias_convivencia = ?";
+    private static final String SQL_SUMAR_GUARDIAS =
+            "UPDATE profesor SET " +
+            "guardias_realizadas = COALESCE(guardias_realizadas, 0) + ?, " +
+            "guardias_problematicas = COALESCE(guardias_problematicas, 0) + ? " +
+            "WHERE id = ?";
+
+    private static final int TAMANO_LOTE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EscritorContadoresJdbc(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Diferencia a sumar a los contadores globales de un profesor
+     */
+    public record DiferenciaGuardias(long profesorId, int realizadas, int problematicas) {
+    }
+
+    /**
+     * Deja cada contador con los valores indicados, creándolo si no existe.
+     * Los contadores no tienen por qué estar gestionados por Hibernate; solo se usan como filas.
+     */
+    public void guardarContadores(Collection<ContadorDetallado> contadores) {
+        jdbcTemplate.batchUpdate(SQL_CONTADOR, contadores, TAMANO_LOTE, (ps, contador) -> {
+            ps.setLong(1, contador.getProfesor().getId());
+            ps.setInt(2, contador.getDiaSemana());
+            ps.setInt(3, contador.getHoraDia());
+            ps.setInt(4, contador.getGuardiasNormales());
+            ps.setInt(5, contador.getGuardiasProblematicas());
+            ps.setInt(6, contador.getGuardiasConvivencia());
+            ps.setInt(7, contador.getGuardiasNormales());
+            ps.setInt(8, contador.getGuardiasProblematicas());
+            ps.setInt(9, contador.getGuardiasConvivencia());
+        });
+    }
+
+    /**
+     * Suma a los contadores globales de cada profesor su diferencia
+     */
+    public void sumarGuardias(Collection<DiferenciaGuardias> diferencias) {
+        jdbcTemplate.batchUpdate(SQL_SUMAR_GUARDIAS, diferencias, TAMANO_LOTE, (ps, diferencia) -> {
+            ps.setInt(1, diferencia.realizadas());
+            ps.setInt(2, diferencia.problematicas());
+            ps.setLong(3, diferencia.profesorId());
+        });
+    }
+}
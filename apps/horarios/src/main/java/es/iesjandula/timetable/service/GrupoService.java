@@ -26,7 +26,8 @@ public class GrupoService {
     public Grupo save(Grupo grupo) { return repository.save(grupo); }
 
     public void deleteAll() {
-        repository.deleteAll();
+        // Un solo DELETE, sin cargar las entidades
+        repository.deleteAllInBatch();
     }
 
 }
@@ -2,7 +2,10 @@ package es.iesjandula.timetable.service;
 
 import es.iesjandula.timetable.dto.ProfesorGuardiaDto;
 import es.iesjandula.timetable.dto.ActualizarContadorDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -21,6 +24,32 @@ public class HorarioIntegrationService {
 
     private final ProfesorService profesorService;
 
+    @Value("${guardias.service.url:http://localhost:8081}")
+    private String guardiasServiceUrl;
+
+    private final RestTemplate avisosRestTemplate = crearRestTemplateAvisos();
+
+    /**
+     * Avisa al backend de guardias de que ha terminado una importación para que
+     * recargue su matriz de profesores de guardia. Un fallo no afecta a la importación:
+     * el backend la recargará igualmente al vencer su TTL.
+     */
+    public void notificarImportacionFinalizada() {
+        try {
+            avisosRestTemplate.postForEntity(guardiasServiceUrl + "/api/public/cache/guardias/refrescar", null, Void.class);
+            log.info("Backend de guardias notificado del fin de la importación");
+        } catch (Exception e) {
+            log.warn("No se pudo notificar la importación al backend de guardias: {}", e.getMessage());
+        }
+    }
+
+    private static RestTemplate crearRestTemplateAvisos() {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(2000);
+        factory.setReadTimeout(10000);
+        return new RestTemplate(factory);
+    }
+
     /**
      * Sincroniza contadores desde el backend de guardias hacia horarios
      * @param actualizaciones Lista de actualizaciones de contadores
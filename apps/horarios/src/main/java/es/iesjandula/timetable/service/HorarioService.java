@@ -2,120 +2,108 @@ package es.iesjandula.timetable.service;
 
 import es.iesjandula.timetable.dto.ActividadDto;
 import es.iesjandula.timetable.dto.HorarioDiaResponse;
+import es.iesjandula.timetable.dto.HorarioJson;
 import es.iesjandula.timetable.dto.HorarioProfesorResponse;
 import es.iesjandula.timetable.dto.ProfesorGuardiaDto;
 import es.iesjandula.timetable.dto.ProfesorGuardiaResponse;
 import es.iesjandula.timetable.exception.ProfesorNotFoundException;
-import es.iesjandula.timetable.model.Actividad;
-import es.iesjandula.timetable.model.Profesor;
 import es.iesjandula.timetable.model.TipoActividad;
-import es.iesjandula.timetable.repository.ActividadRepository;
-import es.iesjandula.timetable.repository.ProfesorRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Consultas de horarios del profesorado. Se sirven desde {@link IndiceHorario},
+ * sin acceder a la base de datos.
+ *
+ * Los horarios completos, sin OTRA y por día de cada profesor se serializan a JSON
+ * una vez por instantánea del índice, con su ETag; las peticiones repetidas
+ * devuelven esos bytes sin construir ni mapear objetos.
+ */
 @Service
 public class HorarioService {
 
     private static final Logger logger = LoggerFactory.getLogger(HorarioService.class);
 
     @Autowired
-    private ActividadRepository actividadRepository;
+    private IndiceHorario indiceHorario;
 
     @Autowired
-    private ProfesorRepository profesorRepository;
+    private ObjectMapper objectMapper;
 
-    private static final String[] DIAS_SEMANA = {
-            "", "lunes", "martes", "miércoles", "jueves", "viernes"
-    };
-
-    public HorarioProfesorResponse getHorarioProfesor(Long profesorId) {
-        logger.debug("Obteniendo horario para profesor ID: {}", profesorId);
-        Profesor profesor = profesorRepository.findById(profesorId)
-                .orElseThrow(() -> new ProfesorNotFoundException(profesorId));
-
-        List<Actividad> actividades = actividadRepository.findByProfesorId(profesorId);
-        logger.info("Encontradas {} actividades para profesor ID {}", actividades.size(), profesorId);
+    /** JSON precalculado de la última instantánea del índice */
+    private volatile HorariosJson horariosJson;
 
-        Map<String, List<ActividadDto>> horario = buildHorarioPorDias(actividades);
-
-        return new HorarioProfesorResponse(profesor.getId(), profesor.getNombre(), horario);
+    /**
+     * Respuestas serializadas de todos los profesores, por posición en la instantánea
+     */
+    private record HorariosJson(IndiceHorario.Instantanea indice, HorarioJson[] completos,
+                                HorarioJson[] sinOtras, HorarioJson[][] porDia) {
     }
 
-    public HorarioProfesorResponse getHorarioProfesorPorEmail(String email) {
-        logger.debug("Obteniendo horario para profesor email: {}", email);
-        Profesor profesor = profesorRepository.findByEmail(email)
-                .orElseThrow(() -> new ProfesorNotFoundException("email", email));
-
-        List<Actividad> actividades = actividadRepository.findByProfesorId(profesor.getId());
-        logger.info("Encontradas {} actividades para profesor email {}", actividades.size(), email);
-
-        Map<String, List<ActividadDto>> horario = buildHorarioPorDias(actividades);
+    private static final String[] DIAS_SEMANA = {
+            "", "lunes", "martes", "miércoles", "jueves", "viernes"
+    };
 
-        return new HorarioProfesorResponse(profesor.getId(), profesor.getNombre(), horario);
+    /**
+     * Horario semanal de un profesor ya serializado
+     *
+     * @param sinOtras true para excluir las actividades de tipo OTRA
+     */
+    public HorarioJson getHorarioProfesorJson(Long profesorId, boolean sinOtras) {
+        IndiceHorario.Instantanea indice = indiceHorario.actual();
+        HorariosJson json = json(indice);
+        int p = posicion(indice, profesorId);
+        return sinOtras ? json.sinOtras()[p] : json.completos()[p];
     }
 
-    public HorarioDiaResponse getHorarioProfesorEnDia(Long profesorId, int diaSemana) {
-        logger.debug("Obteniendo horario para profesor ID: {} en día: {}", profesorId, diaSemana);
-        Profesor profesor = profesorRepository.findById(profesorId)
-                .orElseThrow(() -> new ProfesorNotFoundException(profesorId));
-
-        // ✅ OPTIMIZACIÓN: Query específica para día
-        List<Actividad> actividades = actividadRepository.findByProfesorIdAndTramoDiaSemana(profesorId, diaSemana);
-        logger.info("Encontradas {} actividades para profesor ID {} en día {}", 
-                   actividades.size(), profesorId, diaSemana);
-
-        List<ActividadDto> actividadesDia = buildActividadesPorDia(actividades, diaSemana);
-
-        return new HorarioDiaResponse(profesor.getId(), profesor.getNombre(), DIAS_SEMANA[diaSemana], actividadesDia);
+    /**
+     * Horario semanal de un profesor ya serializado, buscándolo por email
+     *
+     * @param sinOtras true para excluir las actividades de tipo OTRA
+     */
+    public HorarioJson getHorarioProfesorJsonPorEmail(String email, boolean sinOtras) {
+        IndiceHorario.Instantanea indice = indiceHorario.actual();
+        HorariosJson json = json(indice);
+        int p = posicionPorEmail(indice, email);
+        return sinOtras ? json.sinOtras()[p] : json.completos()[p];
     }
 
-    public HorarioDiaResponse getHorarioProfesorEnDiaPorEmail(String email, int diaSemana) {
-        logger.debug("Obteniendo horario para profesor email: {} en día: {}", email, diaSemana);
-        Profesor profesor = profesorRepository.findByEmail(email)
-                .orElseThrow(() -> new ProfesorNotFoundException("email", email));
-
-        // ✅ OPTIMIZACIÓN: Query específica para día
-        List<Actividad> actividades = actividadRepository.findByProfesorIdAndTramoDiaSemana(profesor.getId(), diaSemana);
-        logger.info("Encontradas {} actividades para profesor email {} en día {}", 
-                   actividades.size(), email, diaSemana);
-
-        List<ActividadDto> actividadesDia = buildActividadesPorDia(actividades, diaSemana);
-
-        return new HorarioDiaResponse(profesor.getId(), profesor.getNombre(), DIAS_SEMANA[diaSemana], actividadesDia);
+    /**
+     * Horario de un profesor en un día ya serializado
+     *
+     * @param diaSemana Día de la semana (1=Lunes, ..., 5=Viernes)
+     */
+    public HorarioJson getHorarioProfesorEnDiaJson(Long profesorId, int diaSemana) {
+        IndiceHorario.Instantanea indice = indiceHorario.actual();
+        HorariosJson json = json(indice);
+        return json.porDia()[posicion(indice, profesorId)][diaSemana - 1];
     }
 
-    public HorarioProfesorResponse getHorarioProfesorSinOtras(Long profesorId) {
-        logger.debug("Obteniendo horario sin actividades OTRA para profesor ID: {}", profesorId);
-        Profesor profesor = profesorRepository.findById(profesorId)
-                .orElseThrow(() -> new ProfesorNotFoundException(profesorId));
-
-        // ✅ OPTIMIZACIÓN: Query específica excluyendo tipo OTRA
-        List<Actividad> actividades = actividadRepository.findByProfesorIdExcludingTipo(profesorId, TipoActividad.OTRA);
-        logger.info("Encontradas {} actividades (sin OTRA) para profesor ID {}", actividades.size(), profesorId);
-
-        Map<String, List<ActividadDto>> horario = buildHorarioPorDias(actividades, true);
-
-        return new HorarioProfesorResponse(profesor.getId(), profesor.getNombre(), horario);
+    /**
+     * Horario de un profesor en un día ya serializado, buscándolo por email
+     *
+     * @param diaSemana Día de la semana (1=Lunes, ..., 5=Viernes)
+     */
+    public HorarioJson getHorarioProfesorEnDiaJsonPorEmail(String email, int diaSemana) {
+        IndiceHorario.Instantanea indice = indiceHorario.actual();
+        HorariosJson json = json(indice);
+        return json.porDia()[posicionPorEmail(indice, email)][diaSemana - 1];
     }
 
-    public HorarioProfesorResponse getHorarioProfesorSinOtrasPorEmail(String email) {
-        logger.debug("Obteniendo horario sin actividades OTRA para profesor email: {}", email);
-        Profesor profesor = profesorRepository.findByEmail(email)
-                .orElseThrow(() -> new ProfesorNotFoundException("email", email));
-
-        // ✅ OPTIMIZACIÓN: Query específica excluyendo tipo OTRA
-        List<Actividad> actividades = actividadRepository.findByProfesorIdExcludingTipo(profesor.getId(), TipoActividad.OTRA);
-        logger.info("Encontradas {} actividades (sin OTRA) para profesor email {}", actividades.size(), email);
-
-        Map<String, List<ActividadDto>> horario = buildHorarioPorDias(actividades, true);
-
-        return new HorarioProfesorResponse(profesor.getId(), profesor.getNombre(), horario);
+    /**
+     * Precalcula el JSON en cuanto se reconstruye el índice
+     */
+    @EventListener
+    public void alReconstruirIndice(IndiceHorario.Instantanea indice) {
+        serializar(indice);
     }
     
     /**
@@ -126,26 +114,16 @@ public class HorarioService {
      * @return Respuesta con las actividades de tipo CLASE del profesor en el día especificado
      */
     public HorarioDiaResponse getHorarioClasesPorEmailYDia(String email, int diaSemana) {
-        Profesor profesor = profesorRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Profesor no encontrado"));
+        IndiceHorario.Instantanea indice = indiceHorario.actual();
+        int p = indice.posicionPorEmail(email);
+        if (p < 0) {
+            throw new RuntimeException("Profesor no encontrado");
+        }
 
-        List<Actividad> actividades = actividadRepository.findByProfesorIdAndTramoDiaSemana(profesor.getId(), diaSemana);
-        
-        // Filtrar solo actividades de tipo CLASE
-        List<ActividadDto> actividadesClase = actividades.stream()
-                .filter(a -> a.getTipo() == TipoActividad.CLASE)
-                .map(a -> new ActividadDto(
-                        a.getTramo().getHoraDia(),
-                        a.getTipo().name(),
-                        a.getAsignatura().getNombre(),
-                        a.getGrupos().isEmpty() ? null : a.getGrupos().get(0).getNombre(),
-                        a.getAula().getNombre(),
-                        a.getAula().getAbreviatura()
-                ))
-                .sorted(Comparator.comparingInt(ActividadDto::getHora))
-                .collect(Collectors.toList());
-
-        return new HorarioDiaResponse(profesor.getId(), profesor.getNombre(), DIAS_SEMANA[diaSemana], actividadesClase);
+        // Solo actividades de tipo CLASE, ya ordenadas por hora
+        List<ActividadDto> actividadesClase = indice.actividades(p, diaSemana, TipoActividad.CLASE, true);
+
+        return new HorarioDiaResponse(indice.id(p), indice.nombre(p), DIAS_SEMANA[diaSemana], actividadesClase);
     }
     
     /**
@@ -156,69 +134,107 @@ public class HorarioService {
      * @return Respuesta con la lista de profesores de guardia
      */
     public ProfesorGuardiaResponse getProfesoresGuardia(int diaSemana, int horaDia) {
-        List<Actividad> actividadesGuardia = actividadRepository
-                .findByTipoAndTramoDiaSemanaAndTramoHoraDia(TipoActividad.GUARDIA, diaSemana, horaDia);
-        
-        List<ProfesorGuardiaDto> profesoresGuardia = actividadesGuardia.stream()
-                .map(actividad -> {
-                    Profesor profesor = actividad.getProfesor();
-                    return new ProfesorGuardiaDto(
-                            profesor.getId(),
-                            profesor.getNombre(),
-                            profesor.getEmail(),
-                            profesor.getAbreviatura(),
-                            profesor.getDepartamento(),
-                            profesor.getGuardiasRealizadas(),
-                            profesor.getGuardiasProblematicas()
-                    );
-                })
-                .collect(Collectors.toList());
+        List<ProfesorGuardiaDto> profesoresGuardia = indiceHorario.actual().guardias(diaSemana, horaDia);
         
         return new ProfesorGuardiaResponse(diaSemana, horaDia, profesoresGuardia);
     }
 
-    private Map<String, List<ActividadDto>> buildHorarioPorDias(List<Actividad> actividades) {
-        return buildHorarioPorDias(actividades, false);
+    /**
+     * Obtiene los profesores de guardia de todos los tramos de la semana.
+     * Solo se incluyen los tramos que tienen al menos un profesor de guardia.
+     * 
+     * @return Lista de tramos (día, hora) con sus profesores, ordenada por día y hora
+     */
+    public List<ProfesorGuardiaResponse> getProfesoresGuardiaSemana() {
+        IndiceHorario.Instantanea indice = indiceHorario.actual();
+        
+        List<ProfesorGuardiaResponse> tramos = new ArrayList<>();
+        for (int dia = 1; dia <= IndiceHorario.DIAS; dia++) {
+            for (int hora = 1; hora <= indice.horas(); hora++) {
+                List<ProfesorGuardiaDto> profesores = indice.guardias(dia, hora);
+                if (!profesores.isEmpty()) {
+                    tramos.add(new ProfesorGuardiaResponse(dia, hora, profesores));
+                }
+            }
+        }
+        
+        logger.debug("Matriz de guardias: {} tramos", tramos.size());
+        return tramos;
+    }
+
+    private HorariosJson json(IndiceHorario.Instantanea indice) {
+        HorariosJson json = horariosJson;
+        return json != null && json.indice() == indice ? json : serializar(indice);
     }
 
-    private Map<String, List<ActividadDto>> buildHorarioPorDias(List<Actividad> actividades, boolean excluirOtras) {
-        Map<String, List<ActividadDto>> horario = new LinkedHashMap<>();
+    private synchronized HorariosJson serializar(IndiceHorario.Instantanea indice) {
+        HorariosJson json = horariosJson;
+        if (json != null && json.indice() == indice) {
+            return json;
+        }
 
-        for (int i = 1; i <= 5; i++) {
-            int dia = i;
-            List<ActividadDto> actividadesDia = actividades.stream()
-                    .filter(a -> a.getTramo().getDiaSemana() == dia)
-                    .filter(a -> !excluirOtras || a.getTipo() != TipoActividad.OTRA)
-                    .map(a -> new ActividadDto(
-                            a.getTramo().getHoraDia(),
-                            a.getTipo().name(),
-                            a.getAsignatura().getNombre(),
-                            a.getGrupos().isEmpty() ? null : a.getGrupos().get(0).getNombre(),
-                            a.getAula().getNombre(),
-                            a.getAula().getAbreviatura()
-                    ))
-                    .sorted(Comparator.comparingInt(ActividadDto::getHora))
-                    .collect(Collectors.toList());
+        long inicio = System.currentTimeMillis();
+        int total = indice.profesores();
+        HorarioJson[] completos = new HorarioJson[total];
+        HorarioJson[] sinOtras = new HorarioJson[total];
+        HorarioJson[][] porDia = new HorarioJson[total][IndiceHorario.DIAS];
+        for (int p = 0; p < total; p++) {
+            completos[p] = serializar(new HorarioProfesorResponse(indice.id(p), indice.nombre(p),
+                    buildHorarioPorDias(indice, p)));
+            sinOtras[p] = serializar(new HorarioProfesorResponse(indice.id(p), indice.nombre(p),
+                    buildHorarioPorDias(indice, p, true)));
+            for (int dia = 1; dia <= IndiceHorario.DIAS; dia++) {
+                porDia[p][dia - 1] = serializar(new HorarioDiaResponse(indice.id(p), indice.nombre(p),
+                        DIAS_SEMANA[dia], indice.actividades(p, dia)));
+            }
+        }
 
+        json = new HorariosJson(indice, completos, sinOtras, porDia);
+        horariosJson = json;
+        logger.info("Horarios serializados para {} profesores en {} ms", total, System.currentTimeMillis() - inicio);
+        return json;
+    }
+
+    private HorarioJson serializar(Object respuesta) {
+        try {
+            byte[] cuerpo = objectMapper.writeValueAsBytes(respuesta);
+            return new HorarioJson(cuerpo, "\"" + DigestUtils.md5DigestAsHex(cuerpo) + "\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el horario", e);
+        }
+    }
+
+    private int posicion(IndiceHorario.Instantanea indice, Long profesorId) {
+        int p = indice.posicion(profesorId);
+        if (p < 0) {
+            throw new ProfesorNotFoundException(profesorId);
+        }
+        return p;
+    }
+
+    private int posicionPorEmail(IndiceHorario.Instantanea indice, String email) {
+        int p = indice.posicionPorEmail(email);
+        if (p < 0) {
+            throw new ProfesorNotFoundException("email", email);
+        }
+        return p;
+    }
+
+    private Map<String, List<ActividadDto>> buildHorarioPorDias(IndiceHorario.Instantanea indice, int p) {
+        return buildHorarioPorDias(indice, p, false);
+    }
+
+    private Map<String, List<ActividadDto>> buildHorarioPorDias(IndiceHorario.Instantanea indice, int p, boolean excluirOtras) {
+        // Una sola pasada: el índice ya trae las actividades repartidas por día y ordenadas por hora
+        List<List<ActividadDto>> semana = indice.semana(p, excluirOtras ? TipoActividad.OTRA : null);
+        Map<String, List<ActividadDto>> horario = new LinkedHashMap<>();
+
+        for (int dia = 1; dia <= IndiceHorario.DIAS; dia++) {
+            List<ActividadDto> actividadesDia = semana.get(dia - 1);
             if (!actividadesDia.isEmpty()) {
                 horario.put(DIAS_SEMANA[dia], actividadesDia);
             }
         }
         return horario;
     }
-
-    private List<ActividadDto> buildActividadesPorDia(List<Actividad> actividades, int diaSemana) {
-        return actividades.stream()
-                .filter(a -> a.getTramo().getDiaSemana() == diaSemana)
-                .map(a -> new ActividadDto(
-                        a.getTramo().getHoraDia(),
-                        a.getTipo().name(),
-                        a.getAsignatura().getNombre(),
-                        a.getGrupos().isEmpty() ? null : a.getGrupos().get(0).getNombre(),
-                        a.getAula().getNombre(),
-                        a.getAula().getAbreviatura()
-                ))
-                .sorted(Comparator.comparingInt(ActividadDto::getHora))
-                .collect(Collectors.toList());
-    }
 }
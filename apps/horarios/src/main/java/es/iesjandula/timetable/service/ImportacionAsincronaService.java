@@ -0,0 +1,185 @@
+package es.iesjandula.timetable.service;
+
+import es.iesjandula.timetable.importer.ImportacionIncremental;
+import es.iesjandula.timetable.importer.ProgresoImportacion;
+import es.iesjandula.timetable.importer.TrabajoImportacion;
+import es.iesjandula.timetable.importer.XmlHorarioImporter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta las importaciones de XML en segundo plano para no ocupar el hilo de la
+ * petición. Usa un ejecutor propio con un solo hilo (las importaciones no pueden
+ * solaparse) y una cola acotada; si la cola está llena se rechaza el trabajo.
+ * La importación síncrona pasa por el mismo ejecutor y espera su turno.
+ *
+ * El fichero subido se copia a un temporal porque el de la petición multipart se
+ * borra al responder. El temporal se borra al terminar el trabajo o al cancelarlo en cola.
+ */
+@Service
+@Slf4j
+public class ImportacionAsincronaService {
+
+    /** Trabajos terminados que se conservan para consultar su estado */
+    private static final int MAX_TERMINADOS = 20;
+
+    private final XmlHorarioImporter importer;
+    private final HorarioIntegrationService horarioIntegrationService;
+    private final ThreadPoolExecutor ejecutor;
+
+    /** Trabajos por id en orden de creación; protegido por el monitor del mapa */
+    private final Map<String, TrabajoImportacion> trabajos = new LinkedHashMap<>();
+
+    public ImportacionAsincronaService(XmlHorarioImporter importer, HorarioIntegrationService horarioIntegrationService,
+                                       @Value("${importacion.async.cola:4}") int capacidadCola) {
+        this.importer = importer;
+        this.horarioIntegrationService = horarioIntegrationService;
+        AtomicInteger hilos = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                tarea -> new Thread(tarea, "importacion-xml-" + hilos.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Encola una importación
+     *
+     * @return Trabajo en cola
+     * @throws RejectedExecutionException Si ya hay demasiadas importaciones en cola
+     */
+    public TrabajoImportacion encolar(MultipartFile file, boolean incremental) throws IOException {
+        Path fichero = Files.createTempFile("horario-", ".xml");
+        file.transferTo(fichero);
+
+        TrabajoImportacion trabajo = new TrabajoImportacion(incremental, fichero);
+        try {
+            trabajo.registrarTarea(ejecutor.submit(() -> ejecutar(trabajo)));
+        } catch (RejectedExecutionException e) {
+            Files.deleteIfExists(fichero);
+            throw e;
+        }
+
+        synchronized (trabajos) {
+            trabajos.put(trabajo.getId(), trabajo);
+            purgarTerminados();
+        }
+        log.info("Importación {} en cola ({})", trabajo.getId(), incremental ? "incremental" : "completa");
+        return trabajo;
+    }
+
+    /**
+     * Encola una importación y espera a que termine
+     *
+     * @return Trabajo terminado (completado, fallido o cancelado)
+     * @throws RejectedExecutionException Si ya hay demasiadas importaciones en cola
+     */
+    public TrabajoImportacion importarYEsperar(MultipartFile file, boolean incremental)
+            throws IOException, InterruptedException {
+        TrabajoImportacion trabajo = encolar(file, incremental);
+        try {
+            trabajo.esperar();
+        } catch (InterruptedException e) {
+            cancelar(trabajo);
+            throw e;
+        }
+        return trabajo;
+    }
+
+    /**
+     * Pide la cancelación de un trabajo. Si estaba en cola sale de ella y se borra su temporal,
+     * porque ya no llegará a ejecutarse.
+     *
+     * @return false si ya había terminado o ya no se puede cancelar
+     */
+    public boolean cancelar(TrabajoImportacion trabajo) {
+        if (!trabajo.cancelar()) {
+            return false;
+        }
+        if (trabajo.isTerminado()) {
+            ejecutor.purge();
+            borrarFichero(trabajo.getFichero());
+        }
+        return true;
+    }
+
+    public Optional<TrabajoImportacion> buscar(String id) {
+        synchronized (trabajos) {
+            return Optional.ofNullable(trabajos.get(id));
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        ejecutor.shutdownNow();
+        // Los trabajos que seguían en cola no llegan a ejecutarse
+        synchronized (trabajos) {
+            for (TrabajoImportacion trabajo : trabajos.values()) {
+                if (trabajo.getEstado() == TrabajoImportacion.Estado.EN_COLA) {
+                    borrarFichero(trabajo.getFichero());
+                }
+            }
+        }
+    }
+
+    private void ejecutar(TrabajoImportacion trabajo) {
+        try {
+            trabajo.comprobarCancelacion();
+            trabajo.iniciar();
+            FileSystemResource xml = new FileSystemResource(trabajo.getFichero());
+            String mensaje;
+            if (trabajo.isIncremental()) {
+                ImportacionIncremental.Resumen resumen = importer.importarIncremental(xml, trabajo);
+                mensaje = String.format("XML importado (incremental: %d filas insertadas, %d actualizadas, %d eliminadas)",
+                        resumen.insertadas(), resumen.actualizadas(), resumen.eliminadas());
+            } else {
+                importer.importar(xml, trabajo);
+                mensaje = "XML importado correctamente";
+            }
+            trabajo.fase(ProgresoImportacion.Fase.NOTIFICACION);
+            horarioIntegrationService.notificarImportacionFinalizada();
+            trabajo.terminar(TrabajoImportacion.Estado.COMPLETADA, mensaje);
+            log.info("Importación {} completada", trabajo.getId());
+        } catch (CancellationException e) {
+            trabajo.terminar(TrabajoImportacion.Estado.CANCELADA, "Importación cancelada; no se ha modificado el horario");
+            log.info("Importación {} cancelada", trabajo.getId());
+        } catch (Exception e) {
+            trabajo.terminar(TrabajoImportacion.Estado.FALLIDA, "Error al importar el XML: " + e.getMessage());
+            log.error("Importación {} fallida", trabajo.getId(), e);
+        } finally {
+            borrarFichero(trabajo.getFichero());
+        }
+    }
+
+    private void borrarFichero(Path fichero) {
+        try {
+            Files.deleteIfExists(fichero);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar el temporal {}: {}", fichero, e.getMessage());
+        }
+    }
+
+    private void purgarTerminados() {
+        long terminados = trabajos.values().stream().filter(TrabajoImportacion::isTerminado).count();
+        Iterator<TrabajoImportacion> iterador = trabajos.values().iterator();
+        while (terminados > MAX_TERMINADOS && iterador.hasNext()) {
+            if (iterador.next().isTerminado()) {
+                iterador.remove();
+                terminados--;
+            }
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package es.iesjandula.timetable.service;
+
+import es.iesjandula.timetable.dto.ActividadDto;
+import es.iesjandula.timetable.dto.ProfesorGuardiaDto;
+import es.iesjandula.timetable.importer.HorarioImportadoEvent;
+import es.iesjandula.timetable.model.Actividad;
+import es.iesjandula.timetable.model.Profesor;
+import es.iesjandula.timetable.model.TipoActividad;
+import es.iesjandula.timetable.repository.ActividadRepository;
+import es.iesjandula.timetable.repository.ProfesorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Índice en memoria del horario semanal (TimetableIndex). El horario solo cambia al
+ * importar, así que las lecturas de {@link HorarioService} se sirven desde aquí sin
+ * tocar la base de datos ni abrir sesión de Hibernate.
+ *
+ * Cada construcción genera una {@link Instantanea} inmutable con arrays compactos
+ * (actividades por profesor × día ordenadas por hora y profesores de guardia por
+ * día × hora) que se sustituye de forma atómica: las lecturas en curso siguen usando
+ * la anterior. Se construye al arrancar y tras cada importación confirmada.
+ *
+ * Los contadores de guardias sí cambian entre importaciones: cuando {@link ProfesorService}
+ * confirma sus cambios, el índice vuelve a leer los totales de esos profesores.
+ */
+@Component
+public class IndiceHorario {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceHorario.class);
+
+    /** Días lectivos (1=Lunes, ..., 5=Viernes) */
+    public static final int DIAS = 5;
+
+    private static final String SQL_CONTADORES =
+            "SELECT id, COALESCE(guardias_realizadas, 0), COALESCE(guardias_problematicas, 0) " +
+            "FROM profesor WHERE id IN (%s)";
+
+    @Autowired
+    private ActividadRepository actividadRepository;
+
+    @Autowired
+    private ProfesorRepository profesorRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventos;
+
+    private volatile Instantanea actual;
+
+    /** Turnos de las lecturas de contadores, incluidas las de cada reconstrucción */
+    private final AtomicLong turnos = new AtomicLong();
+
+    /**
+     * Últimos contadores leídos de cada profesor ({turno, realizadas, problemáticas}) que la
+     * instantánea vigente aún no traía al construirse. Hace también de cerrojo para
+     * publicar instantáneas y aplicar lecturas.
+     */
+    private final Map<Long, long[]> ultimosContadores = new HashMap<>();
+
+    /**
+     * Instantánea vigente; si aún no se ha construido (petición antes de arrancar
+     * del todo o fallo al arrancar) se construye ahora
+     */
+    public Instantanea actual() {
+        Instantanea instantanea = actual;
+        return instantanea != null ? instantanea : reconstruir();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        try {
+            reconstruir();
+        } catch (RuntimeException e) {
+            logger.warn("No se pudo construir el índice de horarios al arrancar; se construirá en la primera consulta: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Reconstruye el índice cuando la importación ya está confirmada
+     */
+    @TransactionalEventListener
+    public void alImportar(HorarioImportadoEvent evento) {
+        reconstruir();
+    }
+
+    /**
+     * Id del profesor con ese email (sin distinguir mayúsculas) en la instantánea vigente.
+     * No la construye si aún no existe.
+     *
+     * @return null si no hay instantánea o el profesor no está en ella
+     */
+    public Long idPorEmail(String email) {
+        Instantanea instantanea = actual;
+        if (instantanea == null) {
+            return null;
+        }
+        int p = instantanea.posicionPorEmail(email);
+        return p >= 0 ? instantanea.id(p) : null;
+    }
+
+    /**
+     * Lee el horario completo (dos consultas) y sustituye la instantánea vigente.
+     * La nueva instantánea se publica como evento para quien precalcule a partir de ella.
+     */
+    public synchronized Instantanea reconstruir() {
+        long inicio = System.currentTimeMillis();
+        long turno = turnos.incrementAndGet();
+        List<Profesor> profesores = profesorRepository.findAllConTutoria();
+        List<Actividad> actividades = actividadRepository.findHorarioCompleto();
+
+        Instantanea instantanea = new Instantanea(profesores, actividades, turno);
+        synchronized (ultimosContadores) {
+            // Las lecturas con turno anterior ya están en la nueva instantánea; las posteriores no
+            ultimosContadores.values().removeIf(ultimo -> ultimo[0] < turno);
+            ultimosContadores.forEach((id, ultimo) -> instantanea.fijarContadores(id, ultimo));
+            actual = instantanea;
+        }
+        eventos.publishEvent(instantanea);
+        logger.info("Índice de horarios construido: {} profesores, {} actividades en {} ms",
+                profesores.size(), instantanea.actividades.length, System.currentTimeMillis() - inicio);
+        return instantanea;
+    }
+
+    /**
+     * Vuelve a leer de la base de datos los contadores globales de los profesores y
+     * los fija en el índice. Dentro de una transacción se leen al confirmarla, para no
+     * mostrar cambios que se deshacen.
+     *
+     * Se guardan valores absolutos leídos tras el commit, no diferencias: si una
+     * reconstrucción ya leyó el cambio, volver a aplicarlo no lo cuenta dos veces.
+     * Cada lectura toma un turno antes de consultar y solo se aplica sobre lo fijado
+     * por turnos anteriores, así que un valor más antiguo nunca pisa a uno más reciente.
+     */
+    public void recargarContadores(Collection<Long> profesorIds) {
+        if (profesorIds.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    leerContadores(profesorIds);
+                }
+            });
+        } else {
+            leerContadores(profesorIds);
+        }
+    }
+
+    // Sin bloquear el índice mientras se consulta: el turno se toma tras el commit y antes
+    // de leer, así que una lectura con turno mayor ve todo lo que vio una con turno menor.
+    // En afterCommit la consulta usa la conexión de la transacción ya confirmada, sin
+    // pedir otra al pool
+    private void leerContadores(Collection<Long> profesorIds) {
+        long turno = turnos.incrementAndGet();
+        String sql = String.format(SQL_CONTADORES, String.join(",", Collections.nCopies(profesorIds.size(), "?")));
+        List<long[]> leidos = jdbcTemplate.query(sql,
+                (rs, fila) -> new long[]{rs.getLong(1), turno, rs.getInt(2), rs.getInt(3)}, profesorIds.toArray());
+
+        synchronized (ultimosContadores) {
+            Instantanea instantanea = actual;
+            for (long[] leido : leidos) {
+                // Una lectura o reconstrucción con turno posterior ya trae estos valores o unos más recientes
+                long[] ultimo = ultimosContadores.get(leido[0]);
+                if ((ultimo != null && ultimo[0] > turno) || (instantanea != null && instantanea.turno > turno)) {
+                    continue;
+                }
+                long[] contadores = Arrays.copyOfRange(leido, 1, 4);
+                ultimosContadores.put(leido[0], contadores);
+                if (instantanea != null) {
+                    instantanea.fijarContadores(leido[0], contadores);
+                }
+            }
+        }
+    }
+
+    /**
+     * Horario semanal indexado. Los profesores se identifican por su posición en los
+     * arrays, que solo es válida dentro de la misma instantánea.
+     */
+    public static final class Instantanea {
+
+        private final Map<Long, Integer> posicionPorId;
+        private final Map<String, Integer> posicionPorEmail;
+        private final long[] ids;
+        private final String[] nombres;
+        private final String[] emails;
+        private final String[] abreviaturas;
+        private final String[] departamentos;
+        private final AtomicIntegerArray guardiasRealizadas;
+        private final AtomicIntegerArray guardiasProblematicas;
+        /** Turno tomado antes de leer los profesores y sus contadores */
+        private final long turno;
+
+        /** Actividades ordenadas por profesor, día y hora */
+        private final ActividadDto[] actividades;
+        private final TipoActividad[] tipos;
+        /** Las actividades del profesor p en el día d van de inicio[p * DIAS + d - 1] a inicio[p * DIAS + d] */
+        private final int[] inicio;
+
+        /** Mayor hora del día con actividades */
+        private final int horas;
+        /** Posiciones de los profesores de guardia en [(dia - 1) * horas + hora - 1], ordenadas por nombre */
+        private final int[][] guardias;
+
+        Instantanea(List<Profesor> profesores, List<Actividad> leidas) {
+            this(profesores, leidas, 0);
+        }
+
+        /**
+         * @param turno Turno tomado antes de leer los profesores y sus contadores
+         */
+        Instantanea(List<Profesor> profesores, List<Actividad> leidas, long turno) {
+            int total = profesores.size();
+            posicionPorId = new HashMap<>(total * 2);
+            posicionPorEmail = new HashMap<>(total * 2);
+            ids = new long[total];
+            nombres = new String[total];
+            emails = new String[total];
+            abreviaturas = new String[total];
+            departamentos = new String[total];
+            guardiasRealizadas = new AtomicIntegerArray(total);
+            guardiasProblematicas = new AtomicIntegerArray(total);
+            this.turno = turno;
+
+            for (int p = 0; p < total; p++) {
+                Profesor profesor = profesores.get(p);
+                ids[p] = profesor.getId();
+                nombres[p] = profesor.getNombre();
+                emails[p] = profesor.getEmail();
+                abreviaturas[p] = profesor.getAbreviatura();
+                departamentos[p] = profesor.getDepartamento();
+                guardiasRealizadas.set(p, valor(profesor.getGuardiasRealizadas()));
+                guardiasProblematicas.set(p, valor(profesor.getGuardiasProblematicas()));
+                posicionPorId.put(profesor.getId(), p);
+                if (profesor.getEmail() != null) {
+                    posicionPorEmail.putIfAbsent(profesor.getEmail().toLowerCase(Locale.ROOT), p);
+                }
+            }
+
+            // Solo días lectivos. Profesores y actividades llegan ordenados por id de profesor
+            // (y las actividades por día y hora), así que el orden ya es el de las posiciones;
+            // solo se ordena si algo no cuadra
+            List<Actividad> validas = new ArrayList<>(leidas.size());
+            Comparator<Actividad> orden = Comparator.comparingInt((Actividad a) -> posicionPorId.get(a.getProfesor().getId()))
+                    .thenComparingInt(a -> a.getTramo().getDiaSemana())
+                    .thenComparingInt(a -> a.getTramo().getHoraDia());
+            boolean ordenadas = true;
+            int maxHora = 0;
+            for (Actividad actividad : leidas) {
+                int dia = actividad.getTramo().getDiaSemana();
+                if (dia >= 1 && dia <= DIAS && posicionPorId.containsKey(actividad.getProfesor().getId())) {
+                    if (ordenadas && !validas.isEmpty() && orden.compare(validas.get(validas.size() - 1), actividad) > 0) {
+                        ordenadas = false;
+                    }
+                    validas.add(actividad);
+                    maxHora = Math.max(maxHora, actividad.getTramo().getHoraDia());
+                }
+            }
+            if (!ordenadas) {
+                validas.sort(orden);
+            }
+
+            actividades = new ActividadDto[validas.size()];
+            tipos = new TipoActividad[validas.size()];
+            inicio = new int[total * DIAS + 1];
+            horas = maxHora;
+            List<List<Integer>> guardiasPorTramo = new ArrayList<>(DIAS * horas);
+            for (int i = 0; i < DIAS * horas; i++) {
+                guardiasPorTramo.add(new ArrayList<>());
+            }
+
+            int celda = 0;
+            for (int i = 0; i < validas.size(); i++) {
+                Actividad a = validas.get(i);
+                int p = posicionPorId.get(a.getProfesor().getId());
+                int dia = a.getTramo().getDiaSemana();
+                int hora = a.getTramo().getHoraDia();
+                // Cierra las celdas (profesor, día) anteriores a la de esta actividad
+                int celdaActividad = p * DIAS + dia - 1;
+                while (celda < celdaActividad) {
+                    inicio[++celda] = i;
+                }
+                actividades[i] = new ActividadDto(
+                        hora,
+                        a.getTipo().name(),
+                        a.getAsignatura().getNombre(),
+                        a.getGrupos().isEmpty() ? null : a.getGrupos().get(0).getNombre(),
+                        a.getAula().getNombre(),
+                        a.getAula().getAbreviatura());
+                tipos[i] = a.getTipo();
+                if (a.getTipo() == TipoActividad.GUARDIA && hora >= 1) {
+                    guardiasPorTramo.get((dia - 1) * horas + hora - 1).add(p);
+                }
+            }
+            while (celda < total * DIAS) {
+                inicio[++celda] = validas.size();
+            }
+
+            Comparator<Integer> porNombre = Comparator.comparing(p -> nombres[p], Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+            guardias = new int[DIAS * horas][];
+            for (int i = 0; i < guardias.length; i++) {
+                List<Integer> tramo = guardiasPorTramo.get(i);
+                tramo.sort(porNombre);
+                guardias[i] = tramo.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        /**
+         * @return Posición del profesor o -1 si no existe
+         */
+        public int posicion(Long profesorId) {
+            Integer p = profesorId != null ? posicionPorId.get(profesorId) : null;
+            return p != null ? p : -1;
+        }
+
+        /**
+         * @return Posición del profesor (email sin distinguir mayúsculas) o -1 si no existe
+         */
+        public int posicionPorEmail(String email) {
+            Integer p = email != null ? posicionPorEmail.get(email.toLowerCase(Locale.ROOT)) : null;
+            return p != null ? p : -1;
+        }
+
+        public Long id(int p) {
+            return ids[p];
+        }
+
+        public String nombre(int p) {
+            return nombres[p];
+        }
+
+        public int guardiasRealizadas(int p) {
+            return guardiasRealizadas.get(p);
+        }
+
+        public int guardiasProblematicas(int p) {
+            return guardiasProblematicas.get(p);
+        }
+
+        /**
+         * Fija los contadores leídos de un profesor ({turno, realizadas, problemáticas})
+         */
+        void fijarContadores(Long profesorId, long[] contadores) {
+            int p = posicion(profesorId);
+            if (p >= 0) {
+                guardiasRealizadas.set(p, (int) contadores[1]);
+                guardiasProblematicas.set(p, (int) contadores[2]);
+            }
+        }
+
+        /**
+         * Número de profesores; sus posiciones van de 0 a profesores() - 1
+         */
+        public int profesores() {
+            return ids.length;
+        }
+
+        public int horas() {
+            return horas;
+        }
+
+        /**
+         * Actividades de un profesor en un día, ordenadas por hora (vista de solo lectura)
+         */
+        public List<ActividadDto> actividades(int p, int dia) {
+            if (dia < 1 || dia > DIAS) {
+                return List.of();
+            }
+            int celda = p * DIAS + dia - 1;
+            return Collections.unmodifiableList(Arrays.asList(actividades).subList(inicio[celda], inicio[celda + 1]));
+        }
+
+        /**
+         * Semana de un profesor repartida por días en una sola pasada por sus actividades.
+         * Sin tipo excluido cada día es una vista de los arrays; si se excluye, se copia a
+         * listas con el tamaño del día.
+         *
+         * @param excluido Tipo que se quita o null para dejarlas todas
+         * @return Lista por día (posición dia - 1), vacía si no tiene actividades
+         */
+        public List<List<ActividadDto>> semana(int p, TipoActividad excluido) {
+            List<List<ActividadDto>> semana = new ArrayList<>(DIAS);
+            int primera = p * DIAS;
+            if (excluido == null) {
+                List<ActividadDto> todas = Arrays.asList(actividades);
+                for (int celda = primera; celda < primera + DIAS; celda++) {
+                    semana.add(Collections.unmodifiableList(todas.subList(inicio[celda], inicio[celda + 1])));
+                }
+                return semana;
+            }
+
+            int celda = primera;
+            List<ActividadDto> dia = new ArrayList<>(inicio[celda + 1] - inicio[celda]);
+            for (int i = inicio[primera]; i < inicio[primera + DIAS]; i++) {
+                // Al pasar el final del día se cierra su lista (y las de los días vacíos)
+                while (i >= inicio[celda + 1]) {
+                    semana.add(dia);
+                    celda++;
+                    dia = new ArrayList<>(inicio[celda + 1] - inicio[celda]);
+                }
+                if (tipos[i] != excluido) {
+                    dia.add(actividades[i]);
+                }
+            }
+            while (semana.size() < DIAS) {
+                semana.add(dia);
+                dia = new ArrayList<>(0);
+            }
+            return semana;
+        }
+
+        /**
+         * Actividades de un profesor en un día con o sin un tipo, ordenadas por hora
+         *
+         * @param incluir true para quedarse solo con el tipo, false para quitarlo
+         */
+        public List<ActividadDto> actividades(int p, int dia, TipoActividad tipo, boolean incluir) {
+            if (dia < 1 || dia > DIAS) {
+                return List.of();
+            }
+            int celda = p * DIAS + dia - 1;
+            List<ActividadDto> resultado = new ArrayList<>(inicio[celda + 1] - inicio[celda]);
+            for (int i = inicio[celda]; i < inicio[celda + 1]; i++) {
+                if ((tipos[i] == tipo) == incluir) {
+                    resultado.add(actividades[i]);
+                }
+            }
+            return resultado;
+        }
+
+        /**
+         * Profesores de guardia en un tramo, ordenados por nombre
+         */
+        public List<ProfesorGuardiaDto> guardias(int dia, int hora) {
+            if (dia < 1 || dia > DIAS || hora < 1 || hora > horas) {
+                return new ArrayList<>();
+            }
+            int[] posiciones = guardias[(dia - 1) * horas + hora - 1];
+            List<ProfesorGuardiaDto> profesores = new ArrayList<>(posiciones.length);
+            for (int p : posiciones) {
+                profesores.add(new ProfesorGuardiaDto(ids[p], nombres[p], emails[p], abreviaturas[p],
+                        departamentos[p], guardiasRealizadas.get(p), guardiasProblematicas.get(p)));
+            }
+            return profesores;
+        }
+
+        private static int valor(Integer contador) {
+            return contador != null ? contador : 0;
+        }
+    }
+}
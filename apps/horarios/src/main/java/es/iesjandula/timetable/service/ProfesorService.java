@@ -2,6 +2,8 @@ package es.iesjandula.timetable.service;
 
 import es.iesjandula.timetable.dto.ProfesorGuardiaDto;
 import es.iesjandula.timetable.dto.ActualizarContadorDto;
+import es.iesjandula.timetable.dto.ContadoresDiaHora;
+import es.iesjandula.timetable.exception.ProfesorNotFoundException;
 import es.iesjandula.timetable.model.Profesor;
 import es.iesjandula.timetable.model.ContadorDetallado;
 import es.iesjandula.timetable.repository.ProfesorRepository;
@@ -15,12 +17,19 @@ import java.util.stream.Collectors;
 @Service
 public class ProfesorService {
 
+    private static final ContadoresDiaHora SIN_CONTADORES = new ContadoresDiaHora();
+
     private final ProfesorRepository repository;
     private final ContadorDetalladoRepository contadorDetalladoRepository;
+    private final IndiceHorario indiceHorario;
+    private final EscritorContadoresJdbc escritorContadores;
 
-    public ProfesorService(ProfesorRepository repository, ContadorDetalladoRepository contadorDetalladoRepository) {
+    public ProfesorService(ProfesorRepository repository, ContadorDetalladoRepository contadorDetalladoRepository,
+                           IndiceHorario indiceHorario, EscritorContadoresJdbc escritorContadores) {
         this.repository = repository;
         this.contadorDetalladoRepository = contadorDetalladoRepository;
+        this.indiceHorario = indiceHorario;
+        this.escritorContadores = escritorContadores;
     }
 
     public List<Profesor> findAll() {
@@ -40,49 +49,56 @@ public class ProfesorService {
     }
 
     public void deleteAll() {
-        repository.deleteAll();
+        // Un solo DELETE, sin cargar las entidades
+        repository.deleteAllInBatch();
+    }
+
+    /**
+     * Quita la tutoría a todos los profesores con una sola sentencia
+     */
+    @Transactional
+    public int desvincularTutorias() {
+        return repository.desvincularTutorias();
     }
     
+    /**
+     * Suma una guardia realizada con una sola sentencia atómica
+     *
+     * @return false si el profesor no existe
+     */
     @Transactional
-    public Profesor incrementarGuardiaRealizada(Long id) {
-        Profesor profesor = findById(id);
-        if (profesor != null) {
-            profesor.setGuardiasRealizadas(profesor.getGuardiasRealizadas() + 1);
-            return repository.save(profesor);
-        }
-        return null;
+    public boolean incrementarGuardiaRealizada(Long id) {
+        return sumarGuardias(id, 1, 0);
     }
     
+    /**
+     * Suma una guardia realizada y problemática con una sola sentencia atómica
+     *
+     * @return false si el profesor no existe
+     */
     @Transactional
-    public Profesor incrementarGuardiaProblematica(Long id) {
-        Profesor profesor = findById(id);
-        if (profesor != null) {
-            profesor.setGuardiasRealizadas(profesor.getGuardiasRealizadas() + 1);
-            profesor.setGuardiasProblematicas(profesor.getGuardiasProblematicas() + 1);
-            return repository.save(profesor);
-        }
-        return null;
+    public boolean incrementarGuardiaProblematica(Long id) {
+        return sumarGuardias(id, 1, 1);
     }
     
+    /**
+     * Resta una guardia realizada con una sola sentencia atómica
+     *
+     * @return false si el profesor no existe o no tiene guardias que restar
+     */
     @Transactional
-    public Profesor decrementarGuardiaRealizada(Long id) {
-        Profesor profesor = findById(id);
-        if (profesor != null && profesor.getGuardiasRealizadas() > 0) {
-            profesor.setGuardiasRealizadas(profesor.getGuardiasRealizadas() - 1);
-            return repository.save(profesor);
-        }
-        return null;
+    public boolean decrementarGuardiaRealizada(Long id) {
+        return restarGuardia(id, 0);
     }
     
+    /**
+     * Resta una guardia realizada y problemática con una sola sentencia atómica
+     *
+     * @return false si el profesor no existe o no tiene guardias que restar
+     */
     @Transactional
-    public Profesor decrementarGuardiaProblematica(Long id) {
-        Profesor profesor = findById(id);
-        if (profesor != null && profesor.getGuardiasRealizadas() > 0 && profesor.getGuardiasProblematicas() > 0) {
-            profesor.setGuardiasRealizadas(profesor.getGuardiasRealizadas() - 1);
-            profesor.setGuardiasProblematicas(profesor.getGuardiasProblematicas() - 1);
-            return repository.save(profesor);
-        }
-        return null;
+    public boolean decrementarGuardiaProblematica(Long id) {
+        return restarGuardia(id, 1);
     }
 
     public List<String> buscarNombresParciales(String nombreParcial) {
@@ -100,13 +116,52 @@ public class ProfesorService {
     // ==================== NUEVOS MÉTODOS PARA INTEGRACIÓN ====================
 
     /**
-     * Obtiene todos los profesores con información de guardias para la integración
+     * Obtiene todos los profesores con información de guardias para la integración.
+     * Dos consultas en total: los profesores y los valores de todos sus contadores,
+     * que se agregan en memoria.
      */
     public List<ProfesorGuardiaDto> getProfesoresConGuardias() {
         List<Profesor> profesores = repository.findAll();
-        return profesores.stream()
-                .map(this::convertirAProfesorGuardiaDto)
-                .collect(Collectors.toList());
+        List<Object[]> valores = contadorDetalladoRepository.findValoresOrdenadosPorProfesor();
+
+        // Contadores y convivencia de cada profesor; las filas llegan agrupadas por profesor
+        Map<Long, ContadoresDiaHora> contadoresPorProfesor = new HashMap<>();
+        Map<Long, Integer> convivenciaPorProfesor = new HashMap<>();
+        int inicio = 0;
+        while (inicio < valores.size()) {
+            Long profesorId = (Long) valores.get(inicio)[0];
+            int fin = inicio;
+            while (fin < valores.size() && profesorId.equals(valores.get(fin)[0])) {
+                fin++;
+            }
+
+            ContadoresDiaHora contadores = new ContadoresDiaHora();
+            int convivencia = 0;
+            for (Object[] fila : valores.subList(inicio, fin)) {
+                contadores.fijar((Integer) fila[1], (Integer) fila[2],
+                        valor((Integer) fila[3]), valor((Integer) fila[4]), valor((Integer) fila[5]));
+                convivencia += valor((Integer) fila[5]);
+            }
+            contadoresPorProfesor.put(profesorId, contadores);
+            convivenciaPorProfesor.put(profesorId, convivencia);
+            inicio = fin;
+        }
+
+        List<ProfesorGuardiaDto> profesoresConGuardias = new ArrayList<>(profesores.size());
+        for (Profesor profesor : profesores) {
+            profesoresConGuardias.add(new ProfesorGuardiaDto(
+                    profesor.getId(),
+                    profesor.getNombre(),
+                    profesor.getEmail(),
+                    profesor.getAbreviatura(),
+                    profesor.getDepartamento(),
+                    valor(profesor.getGuardiasRealizadas()),
+                    valor(profesor.getGuardiasProblematicas()),
+                    convivenciaPorProfesor.getOrDefault(profesor.getId(), 0),
+                    contadoresPorProfesor.getOrDefault(profesor.getId(), SIN_CONTADORES)
+            ));
+        }
+        return profesoresConGuardias;
     }
 
     /**
@@ -120,57 +175,173 @@ public class ProfesorService {
     }
 
     /**
-     * Actualiza contadores de guardias de un profesor
+     * Actualiza contadores de guardias de un profesor. Los totales globales del
+     * profesor se mantienen sumándoles la misma diferencia que al contador detallado,
+     * sin volver a agregar sus contadores.
+     *
+     * @return El profesor con sus totales y solo el contador modificado
      */
     @Transactional
     public ProfesorGuardiaDto actualizarContadores(ActualizarContadorDto contadorDto) {
-        Profesor profesor = repository.findByEmail(contadorDto.getEmail())
-                .orElseThrow(() -> new RuntimeException("Profesor no encontrado: " + contadorDto.getEmail()));
-
-        // Buscar o crear contador detallado
-        ContadorDetallado contador = contadorDetalladoRepository
-                .findByProfesorAndDiaSemanaAndHoraDia(profesor, contadorDto.getDia(), contadorDto.getHora())
-                .orElse(new ContadorDetallado(profesor, contadorDto.getDia(), contadorDto.getHora()));
-
-        // Aplicar cambios según el tipo de operación
+        // Crear o modificar el contador detallado en una sola sentencia (upsert atómico)
+        Long profesorId;
+        int normales;
+        int problematicas;
         if ("INCREMENT".equals(contadorDto.getOperacion())) {
-            if (contadorDto.getGuardiasNormales() != null) {
-                contador.incrementarContador("normales", contadorDto.getGuardiasNormales());
-            }
-            if (contadorDto.getGuardiasProblematicas() != null) {
-                contador.incrementarContador("problematicas", contadorDto.getGuardiasProblematicas());
-            }
-            if (contadorDto.getGuardiasConvivencia() != null) {
-                contador.incrementarContador("convivencia", contadorDto.getGuardiasConvivencia());
-            }
-        } else { // SET por defecto
-            if (contadorDto.getGuardiasNormales() != null) {
-                contador.setGuardiasNormales(contadorDto.getGuardiasNormales());
-            }
-            if (contadorDto.getGuardiasProblematicas() != null) {
-                contador.setGuardiasProblematicas(contadorDto.getGuardiasProblematicas());
-            }
-            if (contadorDto.getGuardiasConvivencia() != null) {
-                contador.setGuardiasConvivencia(contadorDto.getGuardiasConvivencia());
+            // Sin bloquear al profesor: el upsert y la suma de los totales ya son atómicos.
+            // El id sale del índice en memoria salvo que el profesor sea posterior a él
+            profesorId = indiceHorario.idPorEmail(contadorDto.getEmail());
+            if (profesorId == null) {
+                profesorId = repository.findIdByEmail(contadorDto.getEmail())
+                        .orElseThrow(() -> new RuntimeException("Profesor no encontrado: " + contadorDto.getEmail()));
             }
+            // Solo se suman cantidades positivas
+            normales = positivo(contadorDto.getGuardiasNormales());
+            problematicas = positivo(contadorDto.getGuardiasProblematicas());
+            contadorDetalladoRepository.sumarContador(profesorId, contadorDto.getDia(), contadorDto.getHora(),
+                    normales, problematicas, positivo(contadorDto.getGuardiasConvivencia()));
+        } else { // SET por defecto: los valores null no se tocan
+            // Bloquea la fila del profesor: la diferencia se calcula sobre un valor anterior estable
+            Profesor profesor = repository.findByEmailParaActualizar(contadorDto.getEmail())
+                    .orElseThrow(() -> new RuntimeException("Profesor no encontrado: " + contadorDto.getEmail()));
+            profesorId = profesor.getId();
+            // La diferencia respecto al valor anterior es lo que cambian los totales
+            Optional<ContadorDetallado> anterior = contadorDetalladoRepository
+                    .findByProfesorAndDiaSemanaAndHoraDia(profesor, contadorDto.getDia(), contadorDto.getHora());
+            normales = diferencia(contadorDto.getGuardiasNormales(),
+                    anterior.map(ContadorDetallado::getGuardiasNormales).orElse(0));
+            problematicas = diferencia(contadorDto.getGuardiasProblematicas(),
+                    anterior.map(ContadorDetallado::getGuardiasProblematicas).orElse(0));
+            contadorDetalladoRepository.fijarContador(profesorId, contadorDto.getDia(), contadorDto.getHora(),
+                    contadorDto.getGuardiasNormales(),
+                    contadorDto.getGuardiasProblematicas(),
+                    contadorDto.getGuardiasConvivencia());
         }
 
-        contadorDetalladoRepository.save(contador);
-
-        // Actualizar también los contadores globales del profesor
-        actualizarContadoresGlobales(profesor);
+        // Los totales globales reciben la misma diferencia
+        if (normales != 0 || problematicas != 0) {
+            sumarGuardias(profesorId, normales, problematicas);
+        }
 
-        return convertirAProfesorGuardiaDto(profesor);
+        // Totales y contador modificado en una consulta, sin releer el resto de contadores
+        Object[] fila = contadorDetalladoRepository
+                .findContadorConTotales(profesorId, contadorDto.getDia(), contadorDto.getHora()).get(0);
+        Profesor profesor = (Profesor) fila[0];
+        ContadoresDiaHora contador = new ContadoresDiaHora();
+        contador.fijar(contadorDto.getDia(), contadorDto.getHora(),
+                numero(fila[3]), numero(fila[4]), numero(fila[5]));
+        return new ProfesorGuardiaDto(
+                profesor.getId(),
+                profesor.getNombre(),
+                profesor.getEmail(),
+                profesor.getAbreviatura(),
+                profesor.getDepartamento(),
+                numero(fila[1]),
+                numero(fila[2]),
+                numero(fila[6]),
+                contador
+        );
     }
 
     /**
-     * Actualiza múltiples contadores en lote
+     * Actualiza múltiples contadores en lote. Los profesores se resuelven y bloquean con una
+     * sola consulta y sus contadores se leen con otra. Las operaciones sobre el mismo
+     * (profesor, día, hora) se pliegan en memoria en el orden recibido, y el resultado se
+     * escribe con un lote JDBC para los contadores y otro para los totales globales.
+     * Si algún email no corresponde a un profesor no se escribe nada.
+     *
+     * @return Un resultado por profesor, con sus totales y solo los contadores modificados
+     * @throws ProfesorNotFoundException con todos los emails que no existen
      */
     @Transactional
     public List<ProfesorGuardiaDto> actualizarContadoresLote(List<ActualizarContadorDto> contadoresDto) {
-        return contadoresDto.stream()
-                .map(this::actualizarContadores)
-                .collect(Collectors.toList());
+        if (contadoresDto.isEmpty()) {
+            return List.of();
+        }
+
+        // Todos los profesores en una consulta; sus filas quedan bloqueadas como en actualizarContadores
+        Set<String> emails = new LinkedHashSet<>();
+        for (ActualizarContadorDto contadorDto : contadoresDto) {
+            emails.add(contadorDto.getEmail().toLowerCase(Locale.ROOT));
+        }
+        Map<String, Profesor> profesoresPorEmail = new HashMap<>();
+        for (Profesor profesor : repository.findByEmailsParaActualizar(emails)) {
+            profesoresPorEmail.put(profesor.getEmail().toLowerCase(Locale.ROOT), profesor);
+        }
+        if (profesoresPorEmail.size() < emails.size()) {
+            List<String> desconocidos = new ArrayList<>(emails);
+            desconocidos.removeAll(profesoresPorEmail.keySet());
+            throw new ProfesorNotFoundException(desconocidos);
+        }
+
+        // Plegar las operaciones de cada contador; los resultados siguen el orden de llegada
+        Map<ClaveContador, ContadorPlegado> plegados = new LinkedHashMap<>();
+        Map<Long, ResultadoLote> resultados = new LinkedHashMap<>();
+        for (ActualizarContadorDto contadorDto : contadoresDto) {
+            Profesor profesor = profesoresPorEmail.get(contadorDto.getEmail().toLowerCase(Locale.ROOT));
+            plegados.computeIfAbsent(
+                    new ClaveContador(profesor.getId(), contadorDto.getDia(), contadorDto.getHora()),
+                    clave -> new ContadorPlegado(profesor, clave)).aplicar(contadorDto);
+            resultados.computeIfAbsent(profesor.getId(), id -> new ResultadoLote(profesor));
+        }
+
+        // Valores anteriores de los contadores y total de convivencia de cada profesor
+        Map<ClaveContador, ContadorDetallado> anteriores = new HashMap<>();
+        for (ContadorDetallado contador : contadorDetalladoRepository.findByProfesorIn(profesoresPorEmail.values())) {
+            anteriores.put(new ClaveContador(contador.getProfesor().getId(), contador.getDiaSemana(),
+                    contador.getHoraDia()), contador);
+            resultados.get(contador.getProfesor().getId()).convivencia += valor(contador.getGuardiasConvivencia());
+        }
+
+        // Valores finales y diferencias respecto a los anteriores
+        List<ContadorDetallado> contadores = new ArrayList<>(plegados.size());
+        for (ContadorPlegado plegado : plegados.values()) {
+            ContadorDetallado anterior = anteriores.get(plegado.clave);
+            ContadorDetallado contador = plegado.resultado(anterior);
+            contadores.add(contador);
+
+            ResultadoLote resultado = resultados.get(plegado.clave.profesorId());
+            resultado.realizadas += contador.getGuardiasNormales()
+                    - (anterior != null ? valor(anterior.getGuardiasNormales()) : 0);
+            resultado.problematicas += contador.getGuardiasProblematicas()
+                    - (anterior != null ? valor(anterior.getGuardiasProblematicas()) : 0);
+            resultado.convivencia += contador.getGuardiasConvivencia()
+                    - (anterior != null ? valor(anterior.getGuardiasConvivencia()) : 0);
+            resultado.contadores.put(plegado.clave.dia() + "-" + plegado.clave.hora(),
+                    new ProfesorGuardiaDto.ContadorDetalle(contador.getGuardiasNormales(),
+                            contador.getGuardiasProblematicas(), contador.getGuardiasConvivencia()));
+        }
+
+        // Un lote para los contadores y otro para los totales que cambian
+        escritorContadores.guardarContadores(contadores);
+        List<EscritorContadoresJdbc.DiferenciaGuardias> diferencias = new ArrayList<>();
+        for (ResultadoLote resultado : resultados.values()) {
+            if (resultado.realizadas != 0 || resultado.problematicas != 0) {
+                diferencias.add(new EscritorContadoresJdbc.DiferenciaGuardias(
+                        resultado.profesor.getId(), resultado.realizadas, resultado.problematicas));
+            }
+        }
+        escritorContadores.sumarGuardias(diferencias);
+        indiceHorario.recargarContadores(diferencias.stream()
+                .map(EscritorContadoresJdbc.DiferenciaGuardias::profesorId)
+                .toList());
+
+        List<ProfesorGuardiaDto> profesoresActualizados = new ArrayList<>(resultados.size());
+        for (ResultadoLote resultado : resultados.values()) {
+            Profesor profesor = resultado.profesor;
+            profesoresActualizados.add(new ProfesorGuardiaDto(
+                    profesor.getId(),
+                    profesor.getNombre(),
+                    profesor.getEmail(),
+                    profesor.getAbreviatura(),
+                    profesor.getDepartamento(),
+                    valor(profesor.getGuardiasRealizadas()) + resultado.realizadas,
+                    valor(profesor.getGuardiasProblematicas()) + resultado.problematicas,
+                    resultado.convivencia,
+                    resultado.contadores
+            ));
+        }
+        return profesoresActualizados;
     }
 
     /**
@@ -197,64 +368,145 @@ public class ProfesorService {
      */
     @Transactional
     public void resetearContadores(String email) {
-        Profesor profesor = repository.findByEmail(email)
+        // Bloquea la fila del profesor para no cruzarse con una actualización de sus contadores
+        Profesor profesor = repository.findByEmailParaActualizar(email)
                 .orElseThrow(() -> new RuntimeException("Profesor no encontrado: " + email));
 
         // Resetear contadores detallados
         contadorDetalladoRepository.deleteByProfesor(profesor);
 
         // Resetear contadores globales
-        profesor.setGuardiasRealizadas(0);
-        profesor.setGuardiasProblematicas(0);
-        repository.save(profesor);
+        repository.reiniciarGuardias(profesor.getId());
+        indiceHorario.recargarContadores(List.of(profesor.getId()));
     }
 
     // ==================== MÉTODOS AUXILIARES ====================
 
     /**
-     * Convierte un Profesor a ProfesorGuardiaDto con contadores detallados
+     * Convierte un Profesor a ProfesorGuardiaDto con contadores detallados.
+     * El total de convivencia se suma en memoria a partir de los contadores detallados.
      */
     private ProfesorGuardiaDto convertirAProfesorGuardiaDto(Profesor profesor) {
         // Obtener contadores detallados
         List<ContadorDetallado> contadores = contadorDetalladoRepository.findByProfesor(profesor);
-        Map<String, ProfesorGuardiaDto.ContadorDetalle> contadoresPorDiaHora = new HashMap<>();
-
+        ContadoresDiaHora contadoresPorDiaHora = new ContadoresDiaHora();
+        int guardiasConvivencia = 0;
         for (ContadorDetallado contador : contadores) {
-            String clave = contador.getDiaSemana() + "-" + contador.getHoraDia();
-            contadoresPorDiaHora.put(clave, new ProfesorGuardiaDto.ContadorDetalle(
-                    contador.getGuardiasNormales(),
-                    contador.getGuardiasProblematicas(),
-                    contador.getGuardiasConvivencia()
-            ));
+            contadoresPorDiaHora.fijar(contador.getDiaSemana(), contador.getHoraDia(),
+                    valor(contador.getGuardiasNormales()),
+                    valor(contador.getGuardiasProblematicas()),
+                    valor(contador.getGuardiasConvivencia()));
+            guardiasConvivencia += valor(contador.getGuardiasConvivencia());
         }
 
-        // Calcular totales de guardias de convivencia
-        Integer guardiasConvivencia = contadorDetalladoRepository.sumGuardiasConvivenciaByProfesorEmail(profesor.getEmail());
-
         return new ProfesorGuardiaDto(
                 profesor.getId(),
                 profesor.getNombre(),
                 profesor.getEmail(),
                 profesor.getAbreviatura(),
                 profesor.getDepartamento(), // Ya es String directamente
-                profesor.getGuardiasRealizadas(),
-                profesor.getGuardiasProblematicas(),
-                guardiasConvivencia != null ? guardiasConvivencia : 0,
+                valor(profesor.getGuardiasRealizadas()),
+                valor(profesor.getGuardiasProblematicas()),
+                guardiasConvivencia,
                 contadoresPorDiaHora
         );
     }
 
+    private boolean sumarGuardias(Long id, int realizadas, int problematicas) {
+        if (repository.sumarGuardias(id, realizadas, problematicas) == 0) {
+            return false;
+        }
+        indiceHorario.recargarContadores(List.of(id));
+        return true;
+    }
+
+    private boolean restarGuardia(Long id, int problematicas) {
+        if (repository.restarGuardia(id, problematicas) == 0) {
+            return false;
+        }
+        indiceHorario.recargarContadores(List.of(id));
+        return true;
+    }
+
+    private static int positivo(Integer cantidad) {
+        return cantidad != null && cantidad > 0 ? cantidad : 0;
+    }
+
     /**
-     * Actualiza los contadores globales del profesor basándose en los contadores detallados
+     * Cuánto cambia un contador al fijarlo (0 si el nuevo valor es null y no se toca)
      */
-    @Transactional
-    private void actualizarContadoresGlobales(Profesor profesor) {
-        Integer totalNormales = contadorDetalladoRepository.sumGuardiasNormalesByProfesorEmail(profesor.getEmail());
-        Integer totalProblematicas = contadorDetalladoRepository.sumGuardiasProblematicasByProfesorEmail(profesor.getEmail());
+    private static int diferencia(Integer nuevo, Integer anterior) {
+        return nuevo != null ? nuevo - valor(anterior) : 0;
+    }
 
-        profesor.setGuardiasRealizadas(totalNormales != null ? totalNormales : 0);
-        profesor.setGuardiasProblematicas(totalProblematicas != null ? totalProblematicas : 0);
-        
-        repository.save(profesor);
+    private static int valor(Integer contador) {
+        return contador != null ? contador : 0;
+    }
+
+    private static int numero(Object valor) {
+        return valor != null ? ((Number) valor).intValue() : 0;
+    }
+
+    private record ClaveContador(long profesorId, int dia, int hora) {
+    }
+
+    /**
+     * Operaciones de un lote sobre un mismo contador. Por cada columna guarda el último
+     * valor fijado (SET) y lo incrementado después (INCREMENT).
+     */
+    private static final class ContadorPlegado {
+        private final Profesor profesor;
+        private final ClaveContador clave;
+        private final Integer[] fijados = new Integer[3];
+        private final int[] sumas = new int[3];
+
+        ContadorPlegado(Profesor profesor, ClaveContador clave) {
+            this.profesor = profesor;
+            this.clave = clave;
+        }
+
+        void aplicar(ActualizarContadorDto contadorDto) {
+            Integer[] valores = {contadorDto.getGuardiasNormales(), contadorDto.getGuardiasProblematicas(),
+                    contadorDto.getGuardiasConvivencia()};
+            boolean incremento = "INCREMENT".equals(contadorDto.getOperacion());
+            for (int i = 0; i < valores.length; i++) {
+                if (incremento) {
+                    sumas[i] += positivo(valores[i]);
+                } else if (valores[i] != null) { // SET: los valores null no se tocan
+                    fijados[i] = valores[i];
+                    sumas[i] = 0;
+                }
+            }
+        }
+
+        /**
+         * Contador final (sin gestionar por Hibernate) partiendo del anterior, que puede no existir
+         */
+        ContadorDetallado resultado(ContadorDetallado anterior) {
+            ContadorDetallado contador = new ContadorDetallado(profesor, clave.dia(), clave.hora());
+            contador.setGuardiasNormales(valorFinal(0, anterior != null ? anterior.getGuardiasNormales() : null));
+            contador.setGuardiasProblematicas(valorFinal(1, anterior != null ? anterior.getGuardiasProblematicas() : null));
+            contador.setGuardiasConvivencia(valorFinal(2, anterior != null ? anterior.getGuardiasConvivencia() : null));
+            return contador;
+        }
+
+        private int valorFinal(int columna, Integer anterior) {
+            return (fijados[columna] != null ? fijados[columna] : valor(anterior)) + sumas[columna];
+        }
+    }
+
+    /**
+     * Totales de un profesor en un lote: diferencias de los globales y convivencia acumulada
+     */
+    private static final class ResultadoLote {
+        private final Profesor profesor;
+        private final Map<String, ProfesorGuardiaDto.ContadorDetalle> contadores = new LinkedHashMap<>();
+        private int realizadas;
+        private int problematicas;
+        private int convivencia;
+
+        ResultadoLote(Profesor profesor) {
+            this.profesor = profesor;
+        }
     }
 }
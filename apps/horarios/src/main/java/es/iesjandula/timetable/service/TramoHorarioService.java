@@ -26,7 +26,8 @@ public class TramoHorarioService {
     public TramoHorario save(TramoHorario tramoHorario) { return repository.save(tramoHorario); }
 
     public void deleteAll() {
-        repository.deleteAll();
+        // Un solo DELETE, sin cargar las entidades
+        repository.deleteAllInBatch();
     }
 
 }
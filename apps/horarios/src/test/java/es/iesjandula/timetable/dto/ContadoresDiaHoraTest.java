@@ -0,0 +1,40 @@
+package es.iesjandula.timetable.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contadores por día y hora en un array de tamaño fijo
+ */
+class ContadoresDiaHoraTest {
+
+    @Test
+    void clavesOrdenadasPorDiaYHora() {
+        ContadoresDiaHora contadores = new ContadoresDiaHora();
+        contadores.fijar(2, 3, 2, 1, 0);
+        contadores.fijar(1, 12, 0, 0, 4);
+        contadores.fijar(2, 3, 5, 1, 0);
+
+        assertEquals(2, contadores.size());
+        assertEquals(List.of("1-12", "2-3"), List.copyOf(contadores.keySet()));
+        assertEquals(new ProfesorGuardiaDto.ContadorDetalle(5, 1, 0), contadores.get("2-3"));
+    }
+
+    @Test
+    void diasYHorasFueraDeRangoSeIgnoran() {
+        ContadoresDiaHora contadores = new ContadoresDiaHora();
+
+        assertFalse(contadores.fijar(7, 1, 1, 0, 0));
+        assertFalse(contadores.fijar(1, 13, 1, 0, 0));
+        assertFalse(contadores.fijar(0, 1, 1, 0, 0));
+        assertFalse(contadores.fijar(Integer.MAX_VALUE, Integer.MAX_VALUE, 1, 0, 0));
+        assertTrue(contadores.fijar(5, 12, 1, 0, 0));
+
+        assertEquals(List.of("5-12"), List.copyOf(contadores.keySet()));
+    }
+}
@@ -0,0 +1,138 @@
+package es.iesjandula.timetable.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba que la lectura en streaming del XML de Séneca no carga el documento
+ * en memoria: con un XML generado de decenas de MB, el heap vivo durante la
+ * lectura apenas crece.
+ */
+class LectorXmlHorarioTest {
+
+    private static final int PROFESORES = 2_000;
+    private static final int ACTIVIDADES_POR_PROFESOR = 150;
+    private static final int MUESTRA_CADA = 50_000;
+    private static final long CRECIMIENTO_MAXIMO = 16L * 1024 * 1024;
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void leeUnXmlGrandeConMemoriaAcotada() throws Exception {
+        Path xml = generarXml(directorio.resolve("horario-grande.xml"));
+        long tamanoFichero = Files.size(xml);
+
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        long base = heapVivo(memoria);
+        long[] maximo = {base};
+        int[] contadores = new int[3];
+
+        try (InputStream entrada = new BufferedInputStream(Files.newInputStream(xml))) {
+            new LectorXmlHorario().leer(entrada, new LectorXmlHorario.Manejador() {
+                @Override
+                public void aula(long id, String abreviatura, String nombre) {
+                }
+
+                @Override
+                public void grupo(long id, String abreviatura, String nombre, boolean problematico) {
+                }
+
+                @Override
+                public void asignatura(long id, String abreviatura, String nombre, String nivel, String curso) {
+                }
+
+                @Override
+                public void profesor(long id, String abreviatura, String nombre, String departamento, String email, Long grupoTutoria) {
+                    contadores[0]++;
+                }
+
+                @Override
+                public void tramo(long id, int dia, String horaInicio, String horaFinal) {
+                    contadores[1]++;
+                }
+
+                @Override
+                public void actividad(long profesorId, long tramoId, long asignaturaId, long aulaId, List<Long> grupos) {
+                    if (++contadores[2] % MUESTRA_CADA == 0) {
+                        maximo[0] = Math.max(maximo[0], heapVivo(memoria));
+                    }
+                }
+            });
+        }
+
+        assertEquals(PROFESORES, contadores[0]);
+        assertEquals(30, contadores[1]);
+        assertEquals(PROFESORES * ACTIVIDADES_POR_PROFESOR, contadores[2]);
+
+        long crecimiento = maximo[0] - base;
+        assertTrue(tamanoFichero > 3 * CRECIMIENTO_MAXIMO, "El XML generado es demasiado pequeño para la prueba");
+        assertTrue(crecimiento < CRECIMIENTO_MAXIMO,
+                "El heap vivo creció " + crecimiento / 1024 + " KB leyendo un XML de " + tamanoFichero / 1024 + " KB");
+    }
+
+    /**
+     * Heap ocupado por objetos vivos (tras forzar una recolección)
+     */
+    private static long heapVivo(MemoryMXBean memoria) {
+        System.gc();
+        return memoria.getHeapMemoryUsage().getUsed();
+    }
+
+    private static Path generarXml(Path destino) throws Exception {
+        try (BufferedWriter out = Files.newBufferedWriter(destino, StandardCharsets.ISO_8859_1)) {
+            out.write("<?xml version=\"1.0\" encoding=\"iso-8859-1\"?>\n<CENTRO nombre_centro=\"I.E.S. Prueba\">\n  <DATOS>\n");
+            out.write("    <ASIGNATURAS>\n");
+            for (int i = 1; i <= 200; i++) {
+                out.write("      <ASIGNATURA num_int_as=\"" + i + "\" abreviatura=\"AS" + i + "\" nombre=\"Asignatura " + i + " ESO\" />\n");
+            }
+            out.write("    </ASIGNATURAS>\n    <GRUPOS>\n");
+            for (int i = 1; i <= 50; i++) {
+                out.write("      <GRUPO num_int_gr=\"" + i + "\" abreviatura=\"" + i + "ESO\" nombre=\"Grupo " + i + "\" />\n");
+            }
+            out.write("    </GRUPOS>\n    <AULAS>\n");
+            for (int i = 1; i <= 60; i++) {
+                out.write("      <AULA num_int_au=\"" + i + "\" abreviatura=\"A" + i + "\" nombre=\"Aula " + i + "\" />\n");
+            }
+            out.write("    </AULAS>\n    <PROFESORES>\n");
+            for (int i = 1; i <= PROFESORES; i++) {
+                out.write("      <PROFESOR num_int_pr=\"" + i + "\" abreviatura=\"P" + i + "\" nombre=\"Apellidos, Profesor " + i
+                        + "\" email=\"profesor" + i + "@instituto.edu\" />\n");
+            }
+            out.write("    </PROFESORES>\n    <TRAMOS_HORARIOS>\n");
+            for (int dia = 1; dia <= 5; dia++) {
+                for (int hora = 0; hora < 6; hora++) {
+                    int tramo = (dia - 1) * 6 + hora + 1;
+                    out.write("      <TRAMO num_tr=\"" + tramo + "\" numero_dia=\"" + dia + "\" hora_inicio=\" " + (8 + hora)
+                            + ":15\" hora_final=\" " + (9 + hora) + ":15\" />\n");
+                }
+            }
+            out.write("    </TRAMOS_HORARIOS>\n  </DATOS>\n  <HORARIOS>\n    <HORARIOS_PROFESORES>\n");
+            for (int p = 1; p <= PROFESORES; p++) {
+                out.write("      <HORARIO_PROF hor_num_int_pr=\"" + p + "\" tot_ac=\"" + ACTIVIDADES_POR_PROFESOR + "\">\n");
+                for (int a = 1; a <= ACTIVIDADES_POR_PROFESOR; a++) {
+                    out.write("        <ACTIVIDAD num_act=\"" + a + "\" num_un=\"" + (p * 1000 + a) + "\" tramo=\"" + (a % 30 + 1)
+                            + "\" asignatura=\"" + (a % 200 + 1) + "\" aula=\"" + (a % 60 + 1) + "\">\n");
+                    out.write("          <GRUPOS_ACTIVIDAD tot_gr_act=\"2\" grupo_1=\"" + (a % 50 + 1) + "\" grupo_2=\"" + ((a + 7) % 50 + 1) + "\" />\n");
+                    out.write("        </ACTIVIDAD>\n");
+                }
+                out.write("      </HORARIO_PROF>\n");
+            }
+            out.write("    </HORARIOS_PROFESORES>\n  </HORARIOS>\n</CENTRO>\n");
+        }
+        return destino;
+    }
+}
@@ -0,0 +1,39 @@
+package es.iesjandula.timetable.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cancelación de una importación en curso frente a su último punto de cancelación
+ */
+class TrabajoImportacionTest {
+
+    @Test
+    void cancelarAntesDeConfirmarDeshaceLaImportacion() {
+        TrabajoImportacion trabajo = enCurso();
+
+        assertTrue(trabajo.cancelar());
+        assertThrows(CancellationException.class, trabajo::confirmar);
+    }
+
+    @Test
+    void noSeCancelaUnaVezConfirmando() {
+        TrabajoImportacion trabajo = enCurso();
+        trabajo.confirmar();
+
+        assertFalse(trabajo.cancelar());
+        trabajo.comprobarCancelacion();
+    }
+
+    private static TrabajoImportacion enCurso() {
+        TrabajoImportacion trabajo = new TrabajoImportacion(false, Path.of("horario.xml"));
+        trabajo.iniciar();
+        return trabajo;
+    }
+}
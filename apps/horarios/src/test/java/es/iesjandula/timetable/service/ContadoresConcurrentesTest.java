@@ -0,0 +1,287 @@
+package es.iesjandula.timetable.service;
+
+import es.iesjandula.timetable.dto.ActualizarContadorDto;
+import es.iesjandula.timetable.dto.ProfesorGuardiaDto;
+import es.iesjandula.timetable.exception.ProfesorNotFoundException;
+import es.iesjandula.timetable.model.ContadorDetallado;
+import es.iesjandula.timetable.model.Profesor;
+import es.iesjandula.timetable.repository.ContadorDetalladoRepository;
+import es.iesjandula.timetable.repository.ProfesorRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Comprueba que los contadores de guardias no pierden incrementos con muchas
+ * escrituras concurrentes sobre el mismo profesor. Cada llamada va en su propia
+ * transacción confirmada (sin la transacción de prueba de @DataJpaTest).
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:contadores;MODE=MySQL;LOCK_TIMEOUT=30000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ProfesorService.class, IndiceHorario.class, EscritorContadoresJdbc.class})
+class ContadoresConcurrentesTest {
+
+    private static final int ESCRITORES = 64;
+    private static final int OPERACIONES = 20;
+
+    @Autowired
+    private ProfesorService profesorService;
+
+    @Autowired
+    private ProfesorRepository profesorRepository;
+
+    @Autowired
+    private IndiceHorario indiceHorario;
+
+    @Autowired
+    private ContadorDetalladoRepository contadorDetalladoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void preparar() {
+        profesorRepository.save(new Profesor(1L, "Curie, Marie", "CME", "Física", "marie@instituto.edu", null));
+        profesorRepository.save(new Profesor(2L, "Mendel, Gregor", "MGR", "Biología", "gregor@instituto.edu", null));
+    }
+
+    @AfterEach
+    void limpiar() {
+        contadorDetalladoRepository.deleteAllInBatch();
+        profesorRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void incrementosGlobalesSinPerdidas() throws Exception {
+        concurrentemente(() -> {
+            profesorService.incrementarGuardiaRealizada(1L);
+            profesorService.incrementarGuardiaProblematica(1L);
+        });
+
+        Profesor profesor = profesorRepository.findById(1L).orElseThrow();
+        assertEquals(2 * ESCRITORES * OPERACIONES, profesor.getGuardiasRealizadas());
+        assertEquals(ESCRITORES * OPERACIONES, profesor.getGuardiasProblematicas());
+    }
+
+    @Test
+    void indiceSinDobleConteoAlReconstruir() throws Exception {
+        indiceHorario.reconstruir();
+        AtomicBoolean terminado = new AtomicBoolean();
+        Thread reconstructor = new Thread(() -> {
+            while (!terminado.get()) {
+                indiceHorario.reconstruir();
+            }
+        });
+        reconstructor.start();
+        try {
+            concurrentemente(() -> profesorService.incrementarGuardiaProblematica(1L));
+        } finally {
+            terminado.set(true);
+            reconstructor.join();
+        }
+
+        // Las reconstrucciones leen incrementos cuyo afterCommit aún no ha llegado;
+        // el índice tiene que acabar con el mismo total que la base de datos
+        IndiceHorario.Instantanea indice = indiceHorario.actual();
+        int p = indice.posicion(1L);
+        assertEquals(ESCRITORES * OPERACIONES, indice.guardiasRealizadas(p));
+        assertEquals(ESCRITORES * OPERACIONES, indice.guardiasProblematicas(p));
+    }
+
+    @Test
+    void decrementosNoBajanDeCero() throws Exception {
+        profesorService.incrementarGuardiaRealizada(1L);
+
+        concurrentemente(() -> profesorService.decrementarGuardiaRealizada(1L));
+
+        assertEquals(0, profesorRepository.findById(1L).orElseThrow().getGuardiasRealizadas());
+        assertFalse(profesorService.decrementarGuardiaRealizada(99L));
+    }
+
+    @Test
+    void contadorDetalladoSinPerdidas() throws Exception {
+        // La primera llamada crea la fila; las concurrentes la incrementan
+        profesorService.actualizarContadores(incremento());
+
+        concurrentemente(() -> profesorService.actualizarContadores(incremento()));
+
+        ContadorDetallado contador = contadorDetalladoRepository
+                .findByProfesorEmailAndDiaAndHora("gregor@instituto.edu", 2, 3).orElseThrow();
+        assertEquals(1 + ESCRITORES * OPERACIONES, contador.getGuardiasNormales());
+        assertEquals(0, contador.getGuardiasProblematicas());
+        assertEquals(1, contadorDetalladoRepository.count());
+        // Los totales del profesor reciben los mismos incrementos
+        assertEquals(1 + ESCRITORES * OPERACIONES, profesorRepository.findById(2L).orElseThrow().getGuardiasRealizadas());
+    }
+
+    @Test
+    void fijarContadorAjustaTotales() {
+        profesorService.actualizarContadores(new ActualizarContadorDto("gregor@instituto.edu", 1, 1, 5, 2, null, "SET"));
+        profesorService.actualizarContadores(new ActualizarContadorDto("gregor@instituto.edu", 1, 2, 3, null, null, "INCREMENT"));
+        ProfesorGuardiaDto dto = profesorService.actualizarContadores(
+                new ActualizarContadorDto("gregor@instituto.edu", 1, 1, 1, null, 4, "SET"));
+
+        // 5 -> 1 en (1, 1) y +3 en (1, 2): 4 realizadas; las problemáticas no se tocan
+        assertEquals(4, dto.getGuardiasRealizadas());
+        assertEquals(2, dto.getGuardiasProblematicas());
+        assertEquals(4, dto.getGuardiasConvivencia());
+        Profesor profesor = profesorRepository.findById(2L).orElseThrow();
+        assertEquals(4, profesor.getGuardiasRealizadas());
+        assertEquals(2, profesor.getGuardiasProblematicas());
+    }
+
+    @Test
+    void incrementoSinReleerContadores() throws Exception {
+        profesorService.actualizarContadores(new ActualizarContadorDto("gregor@instituto.edu", 1, 1, 5, 2, 3, "SET"));
+        indiceHorario.reconstruir();
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        ProfesorGuardiaDto dto = profesorService.actualizarContadores(
+                new ActualizarContadorDto("gregor@instituto.edu", 2, 3, 1, null, 1, "INCREMENT"));
+
+        // Upsert, suma de los totales y lectura del resultado; el id sale del índice
+        assertEquals(3, estadisticas.getPrepareStatementCount());
+        assertEquals(6, dto.getGuardiasRealizadas());
+        assertEquals(2, dto.getGuardiasProblematicas());
+        assertEquals(4, dto.getGuardiasConvivencia());
+        assertEquals("{\"2-3\":{\"normales\":1,\"problematicas\":0,\"convivencia\":1,\"total\":2}}",
+                new ObjectMapper().writeValueAsString(dto.getContadoresPorDiaHora()));
+        // El índice recibe los totales tras el commit
+        IndiceHorario.Instantanea indice = indiceHorario.actual();
+        assertEquals(6, indice.guardiasRealizadas(indice.posicion(2L)));
+    }
+
+    @Test
+    void loteGrandePliegaOperaciones() {
+        profesorService.actualizarContadores(new ActualizarContadorDto("marie@instituto.edu", 5, 6, 7, 3, 1, "SET"));
+
+        // 1.000 operaciones: SET y después INCREMENT sobre el mismo (profesor, día, hora)
+        List<ActualizarContadorDto> lote = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int dia = i % 5 + 1;
+            int hora = i / 5 % 6 + 1;
+            lote.add(new ActualizarContadorDto("GREGOR@instituto.edu", dia, hora, 2, 1, null, "SET"));
+            lote.add(new ActualizarContadorDto("gregor@instituto.edu", dia, hora, 1, null, 1, "INCREMENT"));
+        }
+        lote.add(new ActualizarContadorDto("marie@instituto.edu", 5, 6, 0, null, null, "SET"));
+
+        List<ProfesorGuardiaDto> resultado = profesorService.actualizarContadoresLote(lote);
+
+        // 30 contadores de Mendel: cada uno queda en 2 + 1 normales y 1 problemática;
+        // el SET no toca la convivencia, que acumula los 500 incrementos
+        assertEquals(2, resultado.size());
+        ProfesorGuardiaDto mendel = resultado.get(0);
+        assertEquals(30, mendel.getContadoresPorDiaHora().size());
+        assertEquals(90, mendel.getGuardiasRealizadas());
+        assertEquals(30, mendel.getGuardiasProblematicas());
+        assertEquals(500, mendel.getGuardiasConvivencia());
+        assertEquals(3, contadorDetalladoRepository
+                .findByProfesorEmailAndDiaAndHora("gregor@instituto.edu", 3, 4).orElseThrow().getGuardiasNormales());
+        assertEquals(90, profesorRepository.findById(2L).orElseThrow().getGuardiasRealizadas());
+
+        // Curie: las normales pasan de 7 a 0 y el resto se conserva
+        ProfesorGuardiaDto curie = resultado.get(1);
+        assertEquals(0, curie.getGuardiasRealizadas());
+        assertEquals(3, curie.getGuardiasProblematicas());
+        assertEquals(1, curie.getGuardiasConvivencia());
+        assertEquals(31, contadorDetalladoRepository.count());
+    }
+
+    @Test
+    void loteConEmailsDesconocidosNoEscribeNada() {
+        List<ActualizarContadorDto> lote = List.of(
+                new ActualizarContadorDto("gregor@instituto.edu", 1, 1, 2, null, null, "SET"),
+                new ActualizarContadorDto("nadie@instituto.edu", 1, 1, 1, null, null, "INCREMENT"),
+                new ActualizarContadorDto("Otro@instituto.edu", 2, 2, 1, null, null, "INCREMENT"));
+
+        ProfesorNotFoundException error = assertThrows(ProfesorNotFoundException.class,
+                () -> profesorService.actualizarContadoresLote(lote));
+
+        assertEquals(List.of("nadie@instituto.edu", "otro@instituto.edu"), error.getEmails());
+        assertEquals(0, contadorDetalladoRepository.count());
+        assertEquals(0, profesorRepository.findById(2L).orElseThrow().getGuardiasRealizadas());
+    }
+
+    @Test
+    void profesoresConGuardiasEnDosConsultas() throws Exception {
+        profesorService.actualizarContadores(new ActualizarContadorDto("gregor@instituto.edu", 2, 3, 2, 1, null, "SET"));
+        profesorService.actualizarContadores(new ActualizarContadorDto("gregor@instituto.edu", 1, 5, 0, null, 4, "SET"));
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        List<ProfesorGuardiaDto> profesores = profesorService.getProfesoresConGuardias();
+
+        // Profesores y contadores, sin consultas por profesor
+        assertEquals(2, estadisticas.getPrepareStatementCount());
+        ProfesorGuardiaDto mendel = profesores.stream().filter(p -> p.getId() == 2L).findFirst().orElseThrow();
+        assertEquals(4, mendel.getGuardiasConvivencia());
+        assertEquals("{\"1-5\":{\"normales\":0,\"problematicas\":0,\"convivencia\":4,\"total\":4}," +
+                        "\"2-3\":{\"normales\":2,\"problematicas\":1,\"convivencia\":0,\"total\":3}}",
+                new ObjectMapper().writeValueAsString(mendel.getContadoresPorDiaHora()));
+        ProfesorGuardiaDto curie = profesores.stream().filter(p -> p.getId() == 1L).findFirst().orElseThrow();
+        assertEquals("{}", new ObjectMapper().writeValueAsString(curie.getContadoresPorDiaHora()));
+    }
+
+    private static ActualizarContadorDto incremento() {
+        return new ActualizarContadorDto("gregor@instituto.edu", 2, 3, 1, null, null, "INCREMENT");
+    }
+
+    /**
+     * Lanza la operación OPERACIONES veces en cada uno de los ESCRITORES hilos a la vez
+     */
+    private void concurrentemente(Runnable operacion) throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(ESCRITORES);
+        CountDownLatch salida = new CountDownLatch(1);
+        try {
+            List<Future<?>> escritores = new ArrayList<>();
+            for (int i = 0; i < ESCRITORES; i++) {
+                escritores.add(hilos.submit(() -> {
+                    salida.await();
+                    for (int n = 0; n < OPERACIONES; n++) {
+                        operacion.run();
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> escritor : escritores) {
+                escritor.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+}
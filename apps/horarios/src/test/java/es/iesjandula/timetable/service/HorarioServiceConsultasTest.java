@@ -0,0 +1,148 @@
+package es.iesjandula.timetable.service;
+
+import es.iesjandula.timetable.dto.HorarioJson;
+import es.iesjandula.timetable.dto.ProfesorGuardiaResponse;
+import es.iesjandula.timetable.model.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba que las consultas de horario se sirven desde el índice en memoria:
+ * una vez construido, ninguna lectura lanza sentencias SQL.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({HorarioService.class, IndiceHorario.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+class HorarioServiceConsultasTest {
+
+    @Autowired
+    private HorarioService horarioService;
+
+    @Autowired
+    private IndiceHorario indiceHorario;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void preparar() {
+        Grupo grupoA = entityManager.persist(new Grupo(1L, "1A", "1º ESO A", false, null));
+        Grupo grupoB = entityManager.persist(new Grupo(2L, "1B", "1º ESO B", true, null));
+        Profesor profesor = entityManager.persist(new Profesor(10L, "Curie, Marie", "CME", "Física", "marie@instituto.edu", grupoA));
+        Profesor mendel = entityManager.persist(new Profesor(11L, "Mendel, Gregor", "MGR", "Biología", "gregor@instituto.edu", grupoB));
+
+        Asignatura fisica = entityManager.persist(new Asignatura(100L, "FyQ2", "Física y Química", "ESO", "2"));
+        Asignatura reunion = entityManager.persist(new Asignatura(101L, "REUN", "Reunión", "OTR", ""));
+        Asignatura guardia = entityManager.persist(new Asignatura(102L, "GUAR", "Guardia", "OTR", ""));
+        Aula laboratorio = entityManager.persist(new Aula(200L, "LAB", "Laboratorio"));
+
+        for (int dia = 1; dia <= 5; dia++) {
+            for (int hora = 1; hora <= 3; hora++) {
+                TramoHorario tramo = entityManager.persist(new TramoHorario((long) (dia * 10 + hora), dia, hora,
+                        LocalTime.of(8 + hora, 0), LocalTime.of(9 + hora, 0)));
+                boolean otra = hora == 3;
+                entityManager.persist(new Actividad(null, profesor, tramo, otra ? reunion : fisica, laboratorio,
+                        otra ? TipoActividad.OTRA : TipoActividad.CLASE,
+                        otra ? List.of() : List.of(grupoA, grupoB)));
+                if (dia == 1 && hora == 3) {
+                    entityManager.persist(new Actividad(null, mendel, tramo, guardia, laboratorio, TipoActividad.GUARDIA, List.of()));
+                }
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        indiceHorario.reconstruir();
+
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+    }
+
+    @Test
+    void horarioSemanalSinConsultas() throws Exception {
+        JsonNode horario = leer(horarioService.getHorarioProfesorJson(10L, false));
+
+        assertEquals(0, estadisticas.getPrepareStatementCount());
+        assertEquals("Curie, Marie", horario.get("profesorNombre").asText());
+        assertEquals(5, horario.get("horario").size());
+        assertEquals(3, horario.get("horario").get("lunes").size());
+        assertEquals("Física y Química", horario.get("horario").get("lunes").get(0).get("asignatura").asText());
+    }
+
+    @Test
+    void horarioSinOtrasSinConsultas() throws Exception {
+        JsonNode horario = leer(horarioService.getHorarioProfesorJson(10L, true));
+
+        assertEquals(0, estadisticas.getPrepareStatementCount());
+        assertEquals(2, horario.get("horario").get("viernes").size());
+    }
+
+    @Test
+    void horarioDeUnDiaSinConsultas() throws Exception {
+        JsonNode horario = leer(horarioService.getHorarioProfesorEnDiaJsonPorEmail("MARIE@instituto.edu", 3));
+
+        assertEquals(0, estadisticas.getPrepareStatementCount());
+        assertEquals("miércoles", horario.get("diaSemana").asText());
+        assertEquals(3, horario.get("actividades").size());
+        assertEquals("Laboratorio", horario.get("actividades").get(0).get("aula").asText());
+        assertEquals(1, horario.get("actividades").get(0).get("hora").asInt());
+    }
+
+    @Test
+    void horarioSerializadoPrecalculado() {
+        HorarioJson json = horarioService.getHorarioProfesorJson(10L, true);
+
+        assertEquals(0, estadisticas.getPrepareStatementCount());
+        assertSame(json, horarioService.getHorarioProfesorJson(10L, true));
+        assertSame(json, horarioService.getHorarioProfesorJsonPorEmail("marie@instituto.edu", true));
+        assertTrue(json.etag().startsWith("\"") && json.etag().endsWith("\""));
+        String cuerpo = new String(json.cuerpo(), StandardCharsets.UTF_8);
+        assertTrue(cuerpo.contains("\"profesorNombre\":\"Curie, Marie\""));
+        assertFalse(cuerpo.contains("Reunión"));
+    }
+
+    @Test
+    void guardiasSinConsultas() {
+        ProfesorGuardiaResponse guardia = horarioService.getProfesoresGuardia(1, 3);
+
+        assertEquals(0, estadisticas.getPrepareStatementCount());
+        assertEquals(1, guardia.getProfesores().size());
+        assertEquals("gregor@instituto.edu", guardia.getProfesores().get(0).getEmail());
+        assertEquals(0, horarioService.getProfesoresGuardia(2, 3).getProfesores().size());
+        assertEquals(1, horarioService.getProfesoresGuardiaSemana().size());
+    }
+
+    private JsonNode leer(HorarioJson json) throws Exception {
+        return objectMapper.readTree(json.cuerpo());
+    }
+}
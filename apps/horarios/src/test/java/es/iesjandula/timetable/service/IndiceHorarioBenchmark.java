@@ -0,0 +1,139 @@
+package es.iesjandula.timetable.service;
+
+import es.iesjandula.timetable.dto.ActividadDto;
+import es.iesjandula.timetable.model.*;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Semana de un profesor repartida por días desde el índice, frente al recorrido
+ * anterior (cinco pasadas filter/map/sort sobre la lista de actividades del profesor):
+ * un horario normal (30 actividades) y un caso de estrés con 10.000.
+ * Se ejecuta con el método main desde el IDE o con:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=es.iesjandula.timetable.service.IndiceHorarioBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndiceHorarioBenchmark {
+
+    private static final int PROFESORES = 60;
+
+    /** Actividades del profesor consultado */
+    @Param({"30", "10000"})
+    private int actividades;
+
+    private IndiceHorario.Instantanea indice;
+    private int profesor;
+    /** Actividades del profesor consultado, tal y como las devolvía el repositorio */
+    private List<Actividad> delProfesor;
+
+    @Setup
+    public void preparar() {
+        Aula aula = new Aula(1L, "LAB", "Laboratorio");
+        Asignatura fisica = new Asignatura(1L, "FyQ2", "Física y Química", "ESO", "2");
+        Asignatura reunion = new Asignatura(2L, "REUN", "Reunión", "OTR", "");
+        List<Grupo> grupos = List.of(new Grupo(1L, "1A", "1º ESO A", false, null));
+
+        List<Profesor> profesores = new ArrayList<>();
+        List<Actividad> leidas = new ArrayList<>();
+        for (int p = 0; p < PROFESORES; p++) {
+            Profesor docente = new Profesor((long) p + 1, "Profesor " + p, "P" + p, "Física",
+                    "profesor" + p + "@instituto.edu", null);
+            profesores.add(docente);
+            // El profesor del medio es el consultado; el resto tiene un horario normal
+            int total = p == PROFESORES / 2 ? actividades : 30;
+            int porDia = (total + IndiceHorario.DIAS - 1) / IndiceHorario.DIAS;
+            for (int i = 0; i < total; i++) {
+                int dia = i / porDia + 1;
+                int hora = i % porDia + 1;
+                boolean otra = i % 6 == 5;
+                TramoHorario tramo = new TramoHorario((long) (dia * 100_000 + hora), dia, hora,
+                        LocalTime.of(8, 0), LocalTime.of(9, 0));
+                leidas.add(new Actividad(null, docente, tramo, otra ? reunion : fisica, aula,
+                        otra ? TipoActividad.OTRA : TipoActividad.CLASE, otra ? List.of() : grupos));
+            }
+        }
+        indice = new IndiceHorario.Instantanea(profesores, leidas);
+        long consultado = (long) PROFESORES / 2 + 1;
+        profesor = indice.posicion(consultado);
+        delProfesor = leidas.stream()
+                .filter(a -> a.getProfesor().getId() == consultado)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<List<ActividadDto>> semanaCompleta() {
+        return indice.semana(profesor, null);
+    }
+
+    @Benchmark
+    public List<List<ActividadDto>> semanaSinOtras() {
+        return indice.semana(profesor, TipoActividad.OTRA);
+    }
+
+    @Benchmark
+    public List<List<ActividadDto>> semanaCompletaAnterior() {
+        return semanaAnterior(delProfesor, false);
+    }
+
+    @Benchmark
+    public List<List<ActividadDto>> semanaSinOtrasAnterior() {
+        return semanaAnterior(delProfesor, true);
+    }
+
+    /**
+     * Copia del antiguo HorarioService.buildHorarioPorDias: una pasada completa por día
+     */
+    private static List<List<ActividadDto>> semanaAnterior(List<Actividad> actividades, boolean excluirOtras) {
+        List<List<ActividadDto>> semana = new ArrayList<>(IndiceHorario.DIAS);
+
+        for (int i = 1; i <= 5; i++) {
+            int dia = i;
+            List<ActividadDto> actividadesDia = actividades.stream()
+                    .filter(a -> a.getTramo().getDiaSemana() == dia)
+                    .filter(a -> !excluirOtras || a.getTipo() != TipoActividad.OTRA)
+                    .map(a -> new ActividadDto(
+                            a.getTramo().getHoraDia(),
+                            a.getTipo().name(),
+                            a.getAsignatura().getNombre(),
+                            a.getGrupos().isEmpty() ? null : a.getGrupos().get(0).getNombre(),
+                            a.getAula().getNombre(),
+                            a.getAula().getAbreviatura()
+                    ))
+                    .sorted(Comparator.comparingInt(ActividadDto::getHora))
+                    .collect(Collectors.toList());
+            semana.add(actividadesDia);
+        }
+        return semana;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IndiceHorarioBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package es.iesjandula.timetable.service;
+
+import es.iesjandula.timetable.dto.ActividadDto;
+import es.iesjandula.timetable.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reparto por días de {@link IndiceHorario.Instantanea#semana}: días vacíos,
+ * primer y último día de la semana y exclusión de las actividades OTRA.
+ */
+class IndiceHorarioTest {
+
+    private final Aula aula = new Aula(1L, "LAB", "Laboratorio");
+    private final Asignatura fisica = new Asignatura(1L, "FyQ2", "Física y Química", "ESO", "2");
+    private final Asignatura reunion = new Asignatura(2L, "REUN", "Reunión", "OTR", "");
+
+    private IndiceHorario.Instantanea indice;
+
+    @BeforeEach
+    void preparar() {
+        Profesor anaya = new Profesor(1L, "Anaya, Ana", "AAN", "Física", "ana@instituto.edu", null);
+        Profesor bravo = new Profesor(2L, "Bravo, Blas", "BBL", "Física", "blas@instituto.edu", null);
+        Profesor curie = new Profesor(3L, "Curie, Marie", "CME", "Física", "marie@instituto.edu", null);
+
+        // Anaya ocupa la primera celda del índice y Curie la última (viernes);
+        // Bravo no tiene actividades
+        List<Actividad> actividades = new ArrayList<>();
+        actividades.add(actividad(anaya, 1, 1, TipoActividad.CLASE));
+        actividades.add(actividad(anaya, 1, 2, TipoActividad.OTRA));
+        actividades.add(actividad(curie, 1, 1, TipoActividad.CLASE));
+        actividades.add(actividad(curie, 1, 3, TipoActividad.OTRA));
+        actividades.add(actividad(curie, 5, 1, TipoActividad.OTRA));
+        actividades.add(actividad(curie, 5, 2, TipoActividad.CLASE));
+
+        indice = new IndiceHorario.Instantanea(List.of(anaya, bravo, curie), actividades);
+    }
+
+    @Test
+    void semanaCompletaConDiasVacios() {
+        List<List<ActividadDto>> semana = indice.semana(indice.posicion(3L), null);
+
+        assertEquals(List.of(2, 0, 0, 0, 2), tamanos(semana));
+        assertEquals(List.of(1, 3), horas(semana.get(0)));
+        assertEquals(List.of(1, 2), horas(semana.get(4)));
+    }
+
+    @Test
+    void semanaSinOtrasEnPrimerYUltimoDia() {
+        List<List<ActividadDto>> semana = indice.semana(indice.posicion(3L), TipoActividad.OTRA);
+
+        assertEquals(List.of(1, 0, 0, 0, 1), tamanos(semana));
+        assertEquals(List.of(1), horas(semana.get(0)));
+        assertEquals(List.of(2), horas(semana.get(4)));
+        semana.forEach(dia -> dia.forEach(a -> assertEquals("CLASE", a.getTipo())));
+
+        assertEquals(List.of(1, 0, 0, 0, 0), tamanos(indice.semana(indice.posicion(1L), TipoActividad.OTRA)));
+    }
+
+    @Test
+    void profesorSinActividades() {
+        int bravo = indice.posicion(2L);
+
+        assertEquals(List.of(0, 0, 0, 0, 0), tamanos(indice.semana(bravo, null)));
+        assertEquals(List.of(0, 0, 0, 0, 0), tamanos(indice.semana(bravo, TipoActividad.OTRA)));
+    }
+
+    @Test
+    void coincideConLasActividadesDeCadaDia() {
+        for (int p = 0; p < indice.profesores(); p++) {
+            List<List<ActividadDto>> completa = indice.semana(p, null);
+            List<List<ActividadDto>> sinOtras = indice.semana(p, TipoActividad.OTRA);
+            for (int dia = 1; dia <= IndiceHorario.DIAS; dia++) {
+                assertEquals(indice.actividades(p, dia), completa.get(dia - 1));
+                assertEquals(indice.actividades(p, dia, TipoActividad.OTRA, false), sinOtras.get(dia - 1));
+            }
+        }
+        assertTrue(indice.semana(indice.posicion(1L), null).get(4).isEmpty());
+    }
+
+    private Actividad actividad(Profesor profesor, int dia, int hora, TipoActividad tipo) {
+        TramoHorario tramo = new TramoHorario((long) (dia * 10 + hora), dia, hora,
+                LocalTime.of(7 + hora, 0), LocalTime.of(8 + hora, 0));
+        return new Actividad(null, profesor, tramo, tipo == TipoActividad.OTRA ? reunion : fisica, aula, tipo, List.of());
+    }
+
+    private static List<Integer> tamanos(List<List<ActividadDto>> semana) {
+        return semana.stream().map(List::size).toList();
+    }
+
+    private static List<Integer> horas(List<ActividadDto> dia) {
+        return dia.stream().map(ActividadDto::getHora).toList();
+    }
+}